@@ -5,6 +5,9 @@ import android.app.Application;
 import com.dale.utils.AppException;
 import com.dale.utils.MMKVUtil;
 import com.dale.utils.TopActivityManager;
+import com.dale.utils.cache.CacheRegistry;
+import com.dale.utils.image.BitmapPool;
+import com.dale.utils.image.TileCache;
 
 
 public final class LibApplication {
@@ -21,6 +24,9 @@ public final class LibApplication {
         Thread.setDefaultUncaughtExceptionHandler(AppException.getAppExceptionHandler(sApplication));
         TopActivityManager.getInstance().init(sApplication);
         MMKVUtil.init(app);
+        CacheRegistry.getInstance().register(app);
+        app.registerComponentCallbacks(BitmapPool.getInstance());
+        app.registerComponentCallbacks(TileCache.getInstance());
     }
 
     public static Application getApp() {
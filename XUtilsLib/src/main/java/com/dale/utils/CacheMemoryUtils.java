@@ -1,13 +1,43 @@
 package com.dale.utils;
 
 
+import android.app.ActivityManager;
+import android.content.Context;
+
 import androidx.annotation.NonNull;
-import androidx.collection.LruCache;
+import androidx.annotation.VisibleForTesting;
 
 import com.dale.constant.CacheConstants;
+import com.dale.constant.LibApplication;
+import com.dale.utils.cache.CacheExecutors;
+import com.dale.utils.cache.CacheRegistry;
+import com.dale.utils.cache.CacheSnapshot;
+import com.dale.utils.cache.CacheStats;
+import com.dale.utils.cache.ConcurrentLruCache;
+import com.dale.utils.cache.EvictionPolicy;
+import com.dale.utils.cache.LruMemoryCache;
+import com.dale.utils.cache.MemoryCache;
+import com.dale.utils.cache.Ticker;
+import com.dale.utils.cache.TimingWheel;
+import com.dale.utils.cache.TinyLfuCache;
+import com.dale.utils.cache.Weigher;
+import com.dale.utils.cache.Weighers;
 
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 缓存工具类
@@ -15,17 +45,78 @@ import java.util.Map;
 public final class CacheMemoryUtils implements CacheConstants {
 
     private static final int DEFAULT_MAX_COUNT = 256;
+    private static final long SWEEP_TICK_MILLIS = 1000;
+    private static final int RESTORE_BATCH = 32;
+    private static final String SNAPSHOT_PREFIX = "snapshot_";
+
+    private static final SnapshotFilter SERIALIZABLE_FILTER = new SnapshotFilter() {
+        @Override
+        public boolean accept(String key, Object value) {
+            return value instanceof Serializable;
+        }
+    };
 
-    private static final Map<String, CacheMemoryUtils> CACHE_MAP = new HashMap<>();
+    private static volatile Ticker sTicker = Ticker.SYSTEM;
 
     private final String mCacheKey;
-    private final LruCache<String, CacheValue> mMemoryCache;
+    private final MemoryCache<String, CacheValue> mMemoryCache;
+    private final boolean mWeighted;
+    private volatile int mPriority = CacheRegistry.PRIORITY_NORMAL;
+
+    private volatile TimingWheel<CacheValue> mTimingWheel;
+    private ScheduledFuture<?> mSweepFuture;
+    private volatile OnExpiredListener mExpiredListener;
+
+    private final ConcurrentHashMap<String, LoadTask> mLoadingTasks = new ConcurrentHashMap<>();
+    private volatile long mRefreshAfterWriteMillis = -1;
+    private volatile CacheStats mStats;
+    private volatile SnapshotFilter mSnapshotFilter;
+
+    /**
+     * 缓存过期监听
+     */
+    public interface OnExpiredListener {
+        /**
+         * 在过期清理线程或调用 get 的线程回调，不要执行耗时操作
+         *
+         * @param key   缓存的键
+         * @param value 过期的值
+         */
+        void onExpired(String key, Object value);
+    }
 
 
     public static CacheMemoryUtils getInstance() {
         return getInstance(DEFAULT_MAX_COUNT);
     }
 
+    /**
+     * 选择写入快照的缓存
+     */
+    public interface SnapshotFilter {
+        /**
+         * 在后台线程回调
+         *
+         * @param key   缓存的键
+         * @param value 缓存的值
+         * @return 是否写入快照，值还需要能被序列化
+         */
+        boolean accept(String key, Object value);
+    }
+
+    /**
+     * 缓存未命中时的加载器
+     *
+     * @param <T> 值类型
+     */
+    public interface Loader<T> {
+        /**
+         * @param key 缓存的键
+         * @return 加载到的值，返回 {@code null} 时不缓存
+         */
+        T load(@NonNull String key) throws Exception;
+    }
+
     /**
      * @param maxCount 缓存的最大计数
      */
@@ -38,22 +129,110 @@ public final class CacheMemoryUtils implements CacheConstants {
      * @param maxCount 缓存的最大计数
      */
     public static CacheMemoryUtils getInstance(final String cacheKey, final int maxCount) {
-        CacheMemoryUtils cache = CACHE_MAP.get(cacheKey);
+        return obtain(cacheKey, EvictionPolicy.LRU, maxCount, 1, null);
+    }
+
+    /**
+     * @param cacheKey 缓存的键
+     * @param maxCount 缓存的最大计数
+     * @param policy   淘汰策略，默认为 {@link EvictionPolicy#LRU}
+     */
+    public static CacheMemoryUtils getInstance(final String cacheKey, final int maxCount, @NonNull final EvictionPolicy policy) {
+        return obtain(cacheKey, policy, maxCount, 1, null);
+    }
+
+    /**
+     * 获取分段加锁的并发缓存，读操作不加锁，适合多个工作线程同时读写的场景
+     *
+     * @param cacheKey         缓存的键
+     * @param maxCount         缓存的最大计数
+     * @param concurrencyLevel 预计的并发线程数
+     */
+    public static CacheMemoryUtils getConcurrentInstance(final String cacheKey, final int maxCount, final int concurrencyLevel) {
+        return obtain(cacheKey, EvictionPolicy.LRU, maxCount, Math.max(2, concurrencyLevel), null);
+    }
+
+    /**
+     * 获取按权重（字节数）淘汰的缓存，权重由 {@link Weighers#AUTO} 计算
+     *
+     * @param cacheKey  缓存的键
+     * @param maxWeight 缓存的最大权重（字节）
+     */
+    public static CacheMemoryUtils getWeightedInstance(final String cacheKey, final int maxWeight) {
+        return getWeightedInstance(cacheKey, maxWeight, Weighers.AUTO);
+    }
+
+    /**
+     * 获取按权重（字节数）淘汰的缓存
+     *
+     * @param cacheKey  缓存的键
+     * @param maxWeight 缓存的最大权重（字节）
+     * @param weigher   缓存值的权重计算
+     */
+    public static CacheMemoryUtils getWeightedInstance(final String cacheKey, final int maxWeight,
+                                                       @NonNull final Weigher<Object> weigher) {
+        return obtain(cacheKey, EvictionPolicy.LRU, maxWeight, 1, weigher);
+    }
+
+    /**
+     * 相同的 cacheKey 只会创建一次，之后的参数不再生效
+     *
+     * @param concurrencyLevel 大于 1 时使用分段并发缓存
+     * @param weigher          为 {@code null} 时按条目数量限制
+     */
+    private static CacheMemoryUtils obtain(final String cacheKey, final EvictionPolicy policy, final int maxWeight,
+                                           final int concurrencyLevel, final Weigher<Object> weigher) {
+        CacheRegistry registry = CacheRegistry.getInstance();
+        CacheMemoryUtils cache = registry.get(cacheKey);
         if (cache == null) {
             synchronized (CacheMemoryUtils.class) {
-                cache = CACHE_MAP.get(cacheKey);
+                cache = registry.get(cacheKey);
                 if (cache == null) {
-                    cache = new CacheMemoryUtils(cacheKey, new LruCache<String, CacheValue>(maxCount));
-                    CACHE_MAP.put(cacheKey, cache);
+                    cache = new CacheMemoryUtils(cacheKey, newMemoryCache(policy, maxWeight, concurrencyLevel, weigher),
+                            weigher != null);
+                    registry.putIfAbsent(cacheKey, cache);
                 }
             }
         }
         return cache;
     }
 
-    private CacheMemoryUtils(String cacheKey, LruCache<String, CacheValue> memoryCache) {
+    private static MemoryCache<String, CacheValue> newMemoryCache(EvictionPolicy policy, int maxWeight,
+                                                                  int concurrencyLevel, Weigher<Object> weigher) {
+        if (policy == EvictionPolicy.TINY_LFU) {
+            return new TinyLfuCache<>(maxWeight);
+        }
+        ValueWeigher valueWeigher = weigher == null ? null : new ValueWeigher(weigher);
+        if (concurrencyLevel > 1) {
+            return new ConcurrentLruCache<>(maxWeight, concurrencyLevel, valueWeigher);
+        }
+        return new LruMemoryCache<>(maxWeight, valueWeigher);
+    }
+
+    /**
+     * 按应用可用堆内存计算缓存的最大权重，用于 {@link #getWeightedInstance(String, int)}
+     *
+     * @param fraction 占 {@link ActivityManager#getMemoryClass()} 的比例，如 0.125f
+     * @return 最大权重（字节）
+     */
+    public static int getMemoryClassBudget(final float fraction) {
+        ActivityManager am = (ActivityManager) LibApplication.getApp().getSystemService(Context.ACTIVITY_SERVICE);
+        long memoryClassBytes = am.getMemoryClass() * 1024L * 1024L;
+        return (int) Math.min(Integer.MAX_VALUE, (long) (memoryClassBytes * fraction));
+    }
+
+    private CacheMemoryUtils(String cacheKey, MemoryCache<String, CacheValue> memoryCache, boolean weighted) {
         mCacheKey = cacheKey;
         mMemoryCache = memoryCache;
+        mWeighted = weighted;
+        mMemoryCache.setEvictionListener(new MemoryCache.EvictionListener<String, CacheValue>() {
+            @Override
+            public void onEvicted(String key, CacheValue value) {
+                unschedule(value);
+                CacheStats stats = mStats;
+                if (stats != null) stats.recordSizeEviction();
+            }
+        });
     }
 
     @Override
@@ -77,9 +256,20 @@ public final class CacheMemoryUtils implements CacheConstants {
      * @param saveTime 缓存的保存时间（秒）。
      */
     public void put(@NonNull final String key, final Object value, int saveTime) {
-        if (value == null) return;
-        long dueTime = saveTime < 0 ? -1 : System.currentTimeMillis() + saveTime * 1000;
-        mMemoryCache.put(key, new CacheValue(dueTime, value));
+        putValue(key, value, saveTime);
+    }
+
+    private CacheValue putValue(String key, Object value, int saveTime) {
+        if (value == null) return null;
+        long now = now();
+        long dueTime = saveTime < 0 ? -1 : now + saveTime * 1000L;
+        CacheValue cacheValue = new CacheValue(key, now, dueTime, value);
+        CacheValue old = mMemoryCache.put(key, cacheValue);
+        unschedule(old);
+        TimingWheel<CacheValue> wheel = mTimingWheel;
+        if (wheel != null && dueTime != -1) wheel.schedule(cacheValue);
+        if (mWeighted) CacheRegistry.getInstance().onWeightChanged();
+        return cacheValue;
     }
 
     /**
@@ -102,14 +292,107 @@ public final class CacheMemoryUtils implements CacheConstants {
      * @return 缓存中的值
      */
     public <T> T get(@NonNull final String key, final T defaultValue) {
-        CacheValue val = mMemoryCache.get(key);
+        CacheValue val = getValue(key);
+        recordAccess(val);
         if (val == null) return defaultValue;
-        if (val.dueTime == -1 || val.dueTime >= System.currentTimeMillis()) {
+        //noinspection unchecked
+        return (T) val.value;
+    }
+
+    /**
+     * 返回缓存中的值，不存在时用 loader 加载并缓存
+     * <p>
+     * 多个线程同时加载同一个键时只有一个线程执行 loader，其余线程等待并得到同一个结果
+     *
+     * @param key    缓存的键
+     * @param loader 加载器
+     * @param <T>    值类型。
+     * @return 缓存中或加载到的值
+     * @throws RuntimeException loader 抛出的异常，受检异常会被包装
+     */
+    public <T> T getOrLoad(@NonNull final String key, @NonNull final Loader<T> loader) {
+        return getOrLoad(key, -1, loader);
+    }
+
+    /**
+     * 返回缓存中的值，不存在时用 loader 加载并缓存
+     * <p>
+     * 多个线程同时加载同一个键时只有一个线程执行 loader，其余线程等待并得到同一个结果
+     *
+     * @param key      缓存的键
+     * @param saveTime 加载到的值的保存时间（秒）。
+     * @param loader   加载器
+     * @param <T>      值类型。
+     * @return 缓存中或加载到的值
+     * @throws RuntimeException      loader 抛出的异常，受检异常会被包装
+     * @throws IllegalStateException loader 中加载同一个键
+     */
+    public <T> T getOrLoad(@NonNull final String key, final int saveTime, @NonNull final Loader<T> loader) {
+        CacheValue val = getValue(key);
+        recordAccess(val);
+        if (val != null) {
+            refreshIfNeeded(key, val, saveTime, loader);
             //noinspection unchecked
             return (T) val.value;
         }
-        mMemoryCache.remove(key);
-        return defaultValue;
+        LoadTask task = new LoadTask(key, saveTime, loader, false);
+        LoadTask running = mLoadingTasks.putIfAbsent(key, task);
+        if (running == null) {
+            task.run();
+            running = task;
+        } else if (running.mOwner == Thread.currentThread()) {
+            // 等待自己会一直阻塞
+            throw new IllegalStateException("recursive load: " + key);
+        }
+        //noinspection unchecked
+        return (T) getResult(running);
+    }
+
+    /**
+     * 异步返回缓存中的值，不存在时在 executor 中用 loader 加载并缓存，同一个键同时只会加载一次
+     *
+     * @param key      缓存的键
+     * @param saveTime 加载到的值的保存时间（秒）。
+     * @param loader   加载器
+     * @param executor 执行加载的线程池，为 {@code null} 时使用 {@link CacheExecutors#loader()}
+     * @param <T>      值类型。
+     * @return 缓存中或加载到的值，加载失败时 {@link Future#get()} 抛出 {@link ExecutionException}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Future<T> getAsync(@NonNull final String key, final int saveTime, @NonNull final Loader<T> loader,
+                                  final Executor executor) {
+        final CacheValue val = getValue(key);
+        recordAccess(val);
+        if (val != null) {
+            refreshIfNeeded(key, val, saveTime, loader);
+            FutureTask<Object> done = new FutureTask<>(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return val.value;
+                }
+            });
+            done.run();
+            return (Future<T>) (Future<?>) done;
+        }
+        LoadTask task = new LoadTask(key, saveTime, loader, false);
+        LoadTask running = mLoadingTasks.putIfAbsent(key, task);
+        if (running == null) {
+            (executor == null ? CacheExecutors.loader() : executor).execute(task);
+            running = task;
+        }
+        return (Future<T>) (Future<?>) running;
+    }
+
+    /**
+     * 设置写入后多久刷新，只对 {@link #getOrLoad} 和 {@link #getAsync} 生效
+     * <p>
+     * 读取到超过刷新时间的值时，仍返回旧值，同时在 {@link CacheExecutors#loader()} 中重新加载一次；
+     * 与过期不同，旧值在刷新完成前一直可用
+     *
+     * @param seconds 刷新时间（秒），小于 0 时不刷新
+     */
+    public void setRefreshAfterWrite(final int seconds) {
+        mRefreshAfterWriteMillis = seconds < 0 ? -1 : seconds * 1000L;
     }
 
     /**
@@ -118,35 +401,463 @@ public final class CacheMemoryUtils implements CacheConstants {
      * @return 缓存数量
      */
     public int getCacheCount() {
-        return mMemoryCache.size();
+        return mMemoryCache.count();
     }
 
     /**
-     * 删除指定key缓存
+     * 返回缓存的总权重，未指定权重时等于缓存数量
+     *
+     * @return 总权重
+     */
+    public long getWeightedSize() {
+        return mMemoryCache.weightedSize();
+    }
+
+    /**
+     * 返回缓存的最大权重，未指定权重时等于最大缓存数量
+     *
+     * @return 最大权重
+     */
+    public long getMaxWeight() {
+        return mMemoryCache.maxWeight();
+    }
+
+    /**
+     * @return 是否按权重（字节）计算，即通过 {@link #getWeightedInstance} 创建，只有这类缓存计入
+     * {@link CacheRegistry#setMemoryBudget(long)} 的预算
+     */
+    public boolean isWeighted() {
+        return mWeighted;
+    }
+
+    /**
+     * 设置内存紧张时的淘汰优先级，低优先级的缓存先被淘汰、保留得更少
+     *
+     * @param priority {@link CacheRegistry#PRIORITY_LOW}、{@link CacheRegistry#PRIORITY_NORMAL}
+     *                 或 {@link CacheRegistry#PRIORITY_HIGH}
+     */
+    public void setPriority(final int priority) {
+        if (priority < CacheRegistry.PRIORITY_LOW || priority > CacheRegistry.PRIORITY_HIGH) {
+            throw new IllegalArgumentException("priority: " + priority);
+        }
+        mPriority = priority;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * 淘汰最久未使用的缓存，直到总权重不超过 size，被淘汰的缓存计入容量淘汰
+     *
+     * @param size 目标权重，未指定权重时为缓存数量
+     */
+    public void trimToSize(final long size) {
+        mMemoryCache.trimToWeight(Math.max(0, size));
+    }
+
+    /**
+     * 删除指定key缓存，正在进行的加载和刷新的结果不再写入缓存
      *
      * @param key 缓存的键
      * @return {@code true}: success<br>{@code false}: fail
      */
     public Object remove(@NonNull final String key) {
+        LoadTask task = mLoadingTasks.remove(key);
+        if (task != null) task.mInvalidated = true;
         CacheValue remove = mMemoryCache.remove(key);
         if (remove == null) return null;
+        unschedule(remove);
+        CacheStats stats = mStats;
+        if (stats != null) stats.recordExplicitRemoval();
         return remove.value;
     }
 
     /**
-     * 清理所有的缓存
+     * 清理所有的缓存，正在进行的加载和刷新的结果不再写入缓存
      */
     public void clear() {
-        mMemoryCache.evictAll();
+        for (LoadTask task : mLoadingTasks.values()) {
+            task.mInvalidated = true;
+            mLoadingTasks.remove(task.mKey, task);
+        }
+        mMemoryCache.clear();
+        TimingWheel<CacheValue> wheel = mTimingWheel;
+        if (wheel != null) wheel.clear();
+    }
+
+    /**
+     * 设置缓存过期监听，后台清理和读取时发现的过期都会回调
+     */
+    public void setOnExpiredListener(final OnExpiredListener listener) {
+        mExpiredListener = listener;
+    }
+
+    /**
+     * 开启后台过期清理，带保存时间的缓存到期后约 1 秒内被删除，不再等到读取时才删除
+     * <p>
+     * 开启之前写入的缓存仍在读取时删除
+     */
+    public synchronized void startExpirySweeper() {
+        if (mTimingWheel != null) return;
+        mTimingWheel = new TimingWheel<>(SWEEP_TICK_MILLIS, now());
+        mSweepFuture = CacheExecutors.scheduler().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, SWEEP_TICK_MILLIS, SWEEP_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭后台过期清理
+     */
+    public synchronized void stopExpirySweeper() {
+        if (mTimingWheel == null) return;
+        mSweepFuture.cancel(false);
+        mSweepFuture = null;
+        mTimingWheel.clear();
+        mTimingWheel = null;
+    }
+
+    /**
+     * 开启统计，统计默认关闭，开启后每次读写多几次无锁的计数
+     */
+    public void recordStats() {
+        if (mStats != null) return;
+        synchronized (this) {
+            if (mStats == null) mStats = new CacheStats();
+        }
+    }
+
+    /**
+     * @return 统计快照，未开启统计时返回 {@code null}
+     */
+    public CacheStats.Snapshot getStats() {
+        CacheStats stats = mStats;
+        return stats == null ? null : stats.snapshot();
+    }
+
+    /**
+     * 所有开启了统计的缓存实例的统计快照，可用于打印日志或调试页面
+     *
+     * @return 缓存的键与统计快照
+     */
+    public static Map<String, CacheStats.Snapshot> getAllStats() {
+        Map<String, CacheStats.Snapshot> result = new LinkedHashMap<>();
+        for (CacheMemoryUtils cache : CacheRegistry.getInstance().getAll()) {
+            CacheStats.Snapshot snapshot = cache.getStats();
+            if (snapshot != null) result.put(cache.mCacheKey, snapshot);
+        }
+        return result;
+    }
+
+    /**
+     * 开启快照，所有 {@link Serializable} 的值都写入快照
+     *
+     * @see #enableSnapshot(SnapshotFilter)
+     */
+    public void enableSnapshot() {
+        enableSnapshot(SERIALIZABLE_FILTER);
+    }
+
+    /**
+     * 开启快照：应用进入后台时，选中的缓存连同剩余保存时间写入 {@link FileUtils#getDir(String)}
+     * （{@link FileUtils#PREFERENCE}）下的文件；进程重启后再次调用本方法时，在 {@link CacheExecutors#loader()}
+     * 中分批恢复，已有的键不会被覆盖
+     * <p>
+     * 快照只恢复一次，恢复开始后文件即被删除，下次进入后台时重新写入
+     *
+     * @param filter 选择写入快照的缓存
+     */
+    public void enableSnapshot(@NonNull final SnapshotFilter filter) {
+        boolean restore;
+        synchronized (this) {
+            restore = mSnapshotFilter == null;
+            mSnapshotFilter = filter;
+        }
+        if (restore) CacheExecutors.loader().execute(new RestoreTask());
+    }
+
+    public boolean isSnapshotEnabled() {
+        return mSnapshotFilter != null;
+    }
+
+    /**
+     * 立即写入快照，进入后台时由 {@link CacheRegistry} 在 {@link CacheExecutors#writer()} 中调用，不要在主线程调用
+     */
+    public void saveSnapshot() {
+        SnapshotFilter filter = mSnapshotFilter;
+        File file = getSnapshotFile();
+        if (filter == null || file == null) return;
+        long now = now();
+        List<CacheSnapshot.Entry> entries = new ArrayList<>();
+        for (CacheValue val : mMemoryCache.snapshot().values()) {
+            if (val.dueTime != -1 && val.dueTime <= now) continue;
+            if (!filter.accept(val.key, val.value)) continue;
+            entries.add(new CacheSnapshot.Entry(val.key, val.value, val.dueTime == -1 ? -1 : val.dueTime - now));
+        }
+        if (entries.isEmpty()) {
+            FileUtils.delete(file);
+            return;
+        }
+        try {
+            CacheSnapshot.write(file, entries);
+        } catch (IOException e) {
+            LogUtils.e("CacheMemoryUtils save snapshot failed: " + mCacheKey, e);
+        }
+    }
+
+    private File getSnapshotFile() {
+        String dir = FileUtils.getDir(FileUtils.PREFERENCE);
+        return dir == null ? null : new File(dir, SNAPSHOT_PREFIX + EncodeUtils.urlEncode(mCacheKey));
+    }
+
+    /**
+     * 从快照恢复一条缓存，键已存在时不覆盖
+     */
+    private void restore(CacheSnapshot.Entry entry) {
+        long now = now();
+        long dueTime = entry.ttlMillis < 0 ? -1 : now + entry.ttlMillis;
+        CacheValue cacheValue = new CacheValue(entry.key, now, dueTime, entry.value);
+        if (mMemoryCache.putIfAbsent(entry.key, cacheValue) != null) return;
+        TimingWheel<CacheValue> wheel = mTimingWheel;
+        if (wheel != null && dueTime != -1) wheel.schedule(cacheValue);
+        if (mWeighted) CacheRegistry.getInstance().onWeightChanged();
+    }
+
+    /**
+     * @return 未过期的缓存，过期的缓存会被删除
+     */
+    private CacheValue getValue(String key) {
+        CacheValue val = mMemoryCache.get(key);
+        if (val == null) return null;
+        if (val.dueTime == -1 || val.dueTime >= now()) {
+            return val;
+        }
+        if (mMemoryCache.remove(key, val)) {
+            unschedule(val);
+            notifyExpired(val);
+        }
+        return null;
+    }
+
+    private void refreshIfNeeded(String key, CacheValue val, int saveTime, Loader<?> loader) {
+        long refreshAfterWrite = mRefreshAfterWriteMillis;
+        if (refreshAfterWrite < 0 || now() - val.writeTime < refreshAfterWrite) return;
+        if (mLoadingTasks.containsKey(key)) return;
+        LoadTask task = new LoadTask(key, saveTime, loader, true);
+        if (mLoadingTasks.putIfAbsent(key, task) == null) {
+            CacheExecutors.loader().execute(task);
+        }
+    }
+
+    private static Object getResult(Future<Object> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    // 加载由其他线程执行，中断只影响等待，等待结束后恢复中断状态
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new RuntimeException(cause);
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    @VisibleForTesting
+    void sweep() {
+        TimingWheel<CacheValue> wheel = mTimingWheel;
+        if (wheel == null) return;
+        List<CacheValue> expired = wheel.advance(now());
+        for (CacheValue value : expired) {
+            if (mMemoryCache.remove(value.key, value)) {
+                notifyExpired(value);
+            }
+        }
+    }
+
+    private void unschedule(CacheValue value) {
+        TimingWheel<CacheValue> wheel = mTimingWheel;
+        if (wheel != null && value != null && value.dueTime != -1) wheel.cancel(value);
+    }
+
+    private void recordAccess(CacheValue val) {
+        CacheStats stats = mStats;
+        if (stats == null) return;
+        if (val == null) {
+            stats.recordMiss();
+        } else {
+            stats.recordHit();
+        }
+    }
+
+    private void notifyExpired(CacheValue value) {
+        CacheStats stats = mStats;
+        if (stats != null) stats.recordExpiration();
+        OnExpiredListener listener = mExpiredListener;
+        if (listener != null) listener.onExpired(value.key, value.value);
+    }
+
+    /**
+     * 替换所有实例的时钟，为 {@code null} 时恢复为 {@link Ticker#SYSTEM}
+     */
+    @VisibleForTesting
+    static void setTicker(Ticker ticker) {
+        sTicker = ticker == null ? Ticker.SYSTEM : ticker;
+    }
+
+    private static long now() {
+        return sTicker.read();
     }
 
-    private static final class CacheValue {
+    /**
+     * 每次恢复 {@link #RESTORE_BATCH} 条后重新提交自己，不长时间占用加载线程
+     */
+    private final class RestoreTask implements Runnable {
+        private CacheSnapshot.Reader mReader;
+
+        @Override
+        public void run() {
+            boolean resubmitted = false;
+            try {
+                if (mReader == null) {
+                    File file = getSnapshotFile();
+                    if (file == null || !file.exists()) return;
+                    mReader = CacheSnapshot.open(file);
+                    // 已打开的文件仍可读取，删除后恢复期间写入的新快照不会被误删
+                    FileUtils.delete(file);
+                }
+                for (int i = 0; i < RESTORE_BATCH; i++) {
+                    CacheSnapshot.Entry entry = mReader.next();
+                    if (entry == null) return;
+                    restore(entry);
+                }
+                CacheExecutors.loader().execute(this);
+                resubmitted = true;
+            } catch (IOException | RuntimeException e) {
+                LogUtils.e("CacheMemoryUtils restore snapshot failed: " + mCacheKey, e);
+            } finally {
+                // 快照文件已删除，不再继续时必须关闭
+                if (!resubmitted && mReader != null) mReader.close();
+            }
+        }
+    }
+
+    /**
+     * 加载任务，结束后从正在加载的表中移除自己
+     */
+    private final class LoadTask extends FutureTask<Object> {
+        final String mKey;
+        /** 加载期间键被 remove 或 clear，结果不再写入缓存 */
+        volatile boolean mInvalidated;
+        /** 正在执行加载的线程，用于发现 loader 中加载同一个键 */
+        volatile Thread mOwner;
+
+        LoadTask(String key, int saveTime, Loader<?> loader, boolean refresh) {
+            this(key, new LoadCallable(key, saveTime, loader, refresh));
+        }
+
+        private LoadTask(String key, LoadCallable callable) {
+            super(callable);
+            mKey = key;
+            callable.mTask = this;
+        }
+
+        @Override
+        public void run() {
+            mOwner = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                mOwner = null;
+            }
+        }
+
+        @Override
+        protected void done() {
+            mLoadingTasks.remove(mKey, this);
+        }
+    }
+
+    private final class LoadCallable implements Callable<Object> {
+        private final String mKey;
+        private final int mSaveTime;
+        private final Loader<?> mLoader;
+        private final boolean mRefresh;
+        LoadTask mTask;
+
+        LoadCallable(String key, int saveTime, Loader<?> loader, boolean refresh) {
+            mKey = key;
+            mSaveTime = saveTime;
+            mLoader = loader;
+            mRefresh = refresh;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            if (!mRefresh) {
+                // 抢到加载权之前，别的线程可能刚加载完并移除了任务
+                CacheValue cached = getValue(mKey);
+                if (cached != null) return cached.value;
+            }
+            CacheStats stats = mStats;
+            long start = System.nanoTime();
+            Object value;
+            try {
+                value = mLoader.load(mKey);
+            } catch (Exception e) {
+                if (stats != null) stats.recordLoadFailure(System.nanoTime() - start);
+                throw e;
+            }
+            if (stats != null) stats.recordLoadSuccess(System.nanoTime() - start);
+            if (mTask.mInvalidated) return value;
+            CacheValue cacheValue = putValue(mKey, value, mSaveTime);
+            // 写入前后恰好被 remove 或 clear 时，删除刚写入的值
+            if (cacheValue != null && mTask.mInvalidated && mMemoryCache.remove(mKey, cacheValue)) {
+                unschedule(cacheValue);
+            }
+            return value;
+        }
+    }
+
+    private static final class ValueWeigher implements Weigher<CacheValue> {
+        private final Weigher<Object> mWeigher;
+
+        ValueWeigher(Weigher<Object> weigher) {
+            mWeigher = weigher;
+        }
+
+        @Override
+        public int weigh(CacheValue value) {
+            return mWeigher.weigh(value.value);
+        }
+    }
+
+    private static final class CacheValue extends TimingWheel.Node {
+        final String key;
+        final long writeTime;
         long dueTime;
         Object value;
 
-        CacheValue(long dueTime, Object value) {
+        CacheValue(String key, long writeTime, long dueTime, Object value) {
+            this.key = key;
+            this.writeTime = writeTime;
             this.dueTime = dueTime;
             this.value = value;
         }
+
+        @Override
+        protected long getDueTime() {
+            return dueTime;
+        }
     }
 }
\ No newline at end of file
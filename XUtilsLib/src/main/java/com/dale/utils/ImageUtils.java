@@ -24,6 +24,9 @@ import androidx.annotation.IntRange;
 import androidx.core.content.ContextCompat;
 
 import com.dale.constant.LibApplication;
+import com.dale.utils.image.BitmapPool;
+import com.dale.utils.image.ByteArrayPool;
+import com.dale.utils.image.PooledBufferedInputStream;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -33,6 +36,10 @@ import java.io.InputStream;
 
 public final class ImageUtils {
 
+    /** 解码流时先解码尺寸，允许读取的最大字节数 */
+    private static final int STREAM_MARK_LIMIT = 5 << 20;
+    private static final int DECODE_TEMP_STORAGE_SIZE = 16 << 10;
+
     /**
      * Bitmap 转字节
      *
@@ -152,7 +159,7 @@ public final class ImageUtils {
      */
     public static Bitmap getBitmap(final File file) {
         if (file == null) return null;
-        return BitmapFactory.decodeFile(file.getAbsolutePath());
+        return getBitmap(file.getAbsolutePath(), Integer.MAX_VALUE, Integer.MAX_VALUE);
     }
 
     /**
@@ -165,12 +172,7 @@ public final class ImageUtils {
      */
     public static Bitmap getBitmap(final File file, final int maxWidth, final int maxHeight) {
         if (file == null) return null;
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(file.getAbsolutePath(), options);
-        options.inSampleSize = calculateInSampleSize(options, maxWidth, maxHeight);
-        options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+        return getBitmap(file.getAbsolutePath(), maxWidth, maxHeight);
     }
 
     /**
@@ -180,7 +182,7 @@ public final class ImageUtils {
      * @return bitmap
      */
     public static Bitmap getBitmap(final String filePath) {
-        return BitmapFactory.decodeFile(filePath);
+        return getBitmap(filePath, Integer.MAX_VALUE, Integer.MAX_VALUE);
     }
 
     /**
@@ -197,7 +199,12 @@ public final class ImageUtils {
         BitmapFactory.decodeFile(filePath, options);
         options.inSampleSize = calculateInSampleSize(options, maxWidth, maxHeight);
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(filePath, options);
+        return decode(options, new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeFile(filePath, options);
+            }
+        });
     }
 
     /**
@@ -220,12 +227,9 @@ public final class ImageUtils {
      * @return bitmap
      */
     public static Bitmap getBitmap(final InputStream is, final int maxWidth, final int maxHeight) {
-        if (is == null) return null;
-        byte[] bytes = input2Byte(is);
-        return getBitmap(bytes, 0, maxWidth, maxHeight);
+        return decodeStream(is, maxWidth, maxHeight, null, false);
     }
 
-
     /**
      * Return bitmap.
      *
@@ -245,7 +249,99 @@ public final class ImageUtils {
         BitmapFactory.decodeByteArray(data, offset, data.length, options);
         options.inSampleSize = calculateInSampleSize(options, maxWidth, maxHeight);
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeByteArray(data, offset, data.length, options);
+        return decode(options, new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeByteArray(data, offset, data.length, options);
+            }
+        });
+    }
+
+    /**
+     * 按目标尺寸精确解码：先以 2 的幂采样到不小于目标的尺寸，再由解码器在同一次解码中缩放到目标尺寸，
+     * 不需要再调用 {@link #scale} 复制一份
+     *
+     * @param filePath  文件路径
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度.
+     * @param config    位图的 Config，不透明的图片可用 RGB_565 减少一半内存，为 {@code null} 时使用 ARGB_8888
+     * @return 保持宽高比、恰好放入 maxWidth * maxHeight 的位图，可能与目标相差 1 像素；原图更小时不放大
+     */
+    public static Bitmap getScaledBitmap(final String filePath,
+                                         final int maxWidth,
+                                         final int maxHeight,
+                                         final Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filePath, options);
+        setTargetSize(options, maxWidth, maxHeight, config, true);
+        return decode(options, new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeFile(filePath, options);
+            }
+        });
+    }
+
+    /**
+     * 按目标尺寸精确解码，见 {@link #getScaledBitmap(String, int, int, Bitmap.Config)}
+     *
+     * @param file      The file.
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度.
+     * @param config    位图的 Config，为 {@code null} 时使用 ARGB_8888
+     * @return bitmap
+     */
+    public static Bitmap getScaledBitmap(final File file,
+                                         final int maxWidth,
+                                         final int maxHeight,
+                                         final Bitmap.Config config) {
+        if (file == null) return null;
+        return getScaledBitmap(file.getAbsolutePath(), maxWidth, maxHeight, config);
+    }
+
+    /**
+     * 按目标尺寸精确解码，见 {@link #getScaledBitmap(String, int, int, Bitmap.Config)}
+     *
+     * @param is        The input stream.
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度.
+     * @param config    位图的 Config，为 {@code null} 时使用 ARGB_8888
+     * @return bitmap
+     */
+    public static Bitmap getScaledBitmap(final InputStream is,
+                                         final int maxWidth,
+                                         final int maxHeight,
+                                         final Bitmap.Config config) {
+        return decodeStream(is, maxWidth, maxHeight, config, true);
+    }
+
+    /**
+     * 按目标尺寸精确解码，见 {@link #getScaledBitmap(String, int, int, Bitmap.Config)}
+     *
+     * @param data      The data.
+     * @param offset    The offset.
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度.
+     * @param config    位图的 Config，为 {@code null} 时使用 ARGB_8888
+     * @return bitmap
+     */
+    public static Bitmap getScaledBitmap(final byte[] data,
+                                         final int offset,
+                                         final int maxWidth,
+                                         final int maxHeight,
+                                         final Bitmap.Config config) {
+        if (data.length == 0) return null;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, offset, data.length, options);
+        setTargetSize(options, maxWidth, maxHeight, config, true);
+        return decode(options, new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeByteArray(data, offset, data.length, options);
+            }
+        });
     }
 
     /**
@@ -257,7 +353,7 @@ public final class ImageUtils {
     public static Bitmap getBitmap(@DrawableRes final int resId) {
         Drawable drawable = ContextCompat.getDrawable(LibApplication.getApp(), resId);
         Canvas canvas = new Canvas();
-        Bitmap bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(),
+        Bitmap bitmap = BitmapPool.getInstance().get(drawable.getIntrinsicWidth(),
                 drawable.getIntrinsicHeight(),
                 Bitmap.Config.ARGB_8888);
         canvas.setBitmap(bitmap);
@@ -283,7 +379,12 @@ public final class ImageUtils {
         BitmapFactory.decodeResource(resources, resId, options);
         options.inSampleSize = calculateInSampleSize(options, maxWidth, maxHeight);
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeResource(resources, resId, options);
+        return decode(options, new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeResource(resources, resId, options);
+            }
+        });
     }
 
 
@@ -313,7 +414,7 @@ public final class ImageUtils {
                                final int newHeight,
                                final boolean recycle) {
         Bitmap ret = Bitmap.createScaledBitmap(src, newWidth, newHeight, true);
-        if (recycle && !src.isRecycled() && ret != src) src.recycle();
+        if (recycle && !src.isRecycled() && ret != src) release(src);
         return ret;
     }
 
@@ -346,7 +447,7 @@ public final class ImageUtils {
         Matrix matrix = new Matrix();
         matrix.setScale(scaleWidth, scaleHeight);
         Bitmap ret = Bitmap.createBitmap(src, 0, 0, src.getWidth(), src.getHeight(), matrix, true);
-        if (recycle && !src.isRecycled() && ret != src) src.recycle();
+        if (recycle && !src.isRecycled() && ret != src) release(src);
         return ret;
     }
 
@@ -386,10 +487,21 @@ public final class ImageUtils {
         Matrix matrix = new Matrix();
         matrix.setRotate(degrees, px, py);
         Bitmap ret = Bitmap.createBitmap(src, 0, 0, src.getWidth(), src.getHeight(), matrix, true);
-        if (recycle && !src.isRecycled() && ret != src) src.recycle();
+        if (recycle && !src.isRecycled() && ret != src) release(src);
         return ret;
     }
 
+    /**
+     * 把不再使用的位图放回 {@link BitmapPool}，之后的解码和变换可以复用它的内存；不能复用时直接回收。
+     * 放回后不能再使用该位图
+     *
+     * @param bitmap 位图
+     * @return 是否放入了池中
+     */
+    public static boolean release(final Bitmap bitmap) {
+        return BitmapPool.getInstance().put(bitmap);
+    }
+
     /**
      * 返回旋转的度数
      *
@@ -472,7 +584,7 @@ public final class ImageUtils {
         int height = src.getHeight();
         int size = Math.min(width, height);
         Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        Bitmap ret = Bitmap.createBitmap(width, height, src.getConfig());
+        Bitmap ret = BitmapPool.getInstance().get(width, height, src.getConfig());
         float center = size / 2f;
         RectF rectF = new RectF(0, 0, width, height);
         rectF.inset((width - size) / 2f, (height - size) / 2f);
@@ -494,7 +606,7 @@ public final class ImageUtils {
             float radius = center - borderSize / 2f;
             canvas.drawCircle(width / 2f, height / 2f, radius, paint);
         }
-        if (recycle && !src.isRecycled() && ret != src) src.recycle();
+        if (recycle && !src.isRecycled() && ret != src) release(src);
         return ret;
     }
 
@@ -558,7 +670,7 @@ public final class ImageUtils {
         int width = src.getWidth();
         int height = src.getHeight();
         Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        Bitmap ret = Bitmap.createBitmap(width, height, src.getConfig());
+        Bitmap ret = BitmapPool.getInstance().get(width, height, src.getConfig());
         BitmapShader shader = new BitmapShader(src, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
         paint.setShader(shader);
         Canvas canvas = new Canvas(ret);
@@ -574,7 +686,7 @@ public final class ImageUtils {
             paint.setStrokeCap(Paint.Cap.ROUND);
             canvas.drawRoundRect(rectF, radius, radius, paint);
         }
-        if (recycle && !src.isRecycled() && ret != src) src.recycle();
+        if (recycle && !src.isRecycled() && ret != src) release(src);
         return ret;
     }
 
@@ -777,7 +889,7 @@ public final class ImageUtils {
      * @param maxHeight 最大高度.
      * @return the sample size
      */
-    private static int calculateInSampleSize(final BitmapFactory.Options options,
+    static int calculateInSampleSize(final BitmapFactory.Options options,
                                              final int maxWidth,
                                              final int maxHeight) {
         int height = options.outHeight;
@@ -791,25 +903,141 @@ public final class ImageUtils {
         return inSampleSize;
     }
 
-    private static byte[] input2Byte(final InputStream is) {
+    /**
+     * 设置正式解码的参数
+     *
+     * @param options   已解码出尺寸
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度.
+     * @param config    位图的 Config，为 {@code null} 时不修改
+     * @param exact     是否精确缩放到目标尺寸，否则只以 2 的幂采样
+     */
+    private static void setTargetSize(final BitmapFactory.Options options,
+                                      final int maxWidth,
+                                      final int maxHeight,
+                                      final Bitmap.Config config,
+                                      final boolean exact) {
+        if (exact) {
+            setExactSize(options, maxWidth, maxHeight);
+        } else {
+            options.inSampleSize = calculateInSampleSize(options, maxWidth, maxHeight);
+        }
+        if (config != null) options.inPreferredConfig = config;
+        options.inJustDecodeBounds = false;
+    }
+
+    /**
+     * 以不小于目标尺寸的最大 2 的幂采样，再通过 inDensity/inTargetDensity 让解码器缩放到目标尺寸
+     *
+     * @param options   已解码出尺寸
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度.
+     */
+    static void setExactSize(final BitmapFactory.Options options,
+                             final int maxWidth,
+                             final int maxHeight) {
+        int width = options.outWidth;
+        int height = options.outHeight;
+        options.inSampleSize = 1;
+        options.inScaled = false;
+        if (width <= 0 || height <= 0) return;
+        float widthScale = (float) maxWidth / width;
+        float heightScale = (float) maxHeight / height;
+        float scale = Math.min(widthScale, heightScale);
+        if (scale >= 1f) return;
+        int inSampleSize = 1;
+        while (inSampleSize * 2 * scale <= 1f) {
+            inSampleSize <<= 1;
+        }
+        options.inSampleSize = inSampleSize;
+        // 按受限的一边计算缩放比例，密度都是整数，比例没有误差
+        boolean byWidth = widthScale <= heightScale;
+        int sampled = (byWidth ? width : height) / inSampleSize;
+        int target = Math.max(1, byWidth ? maxWidth : maxHeight);
+        if (sampled > target) {
+            options.inScaled = true;
+            options.inDensity = sampled;
+            options.inTargetDensity = target;
+        }
+    }
+
+    /**
+     * 解码，{@link BitmapPool} 中有合适的位图时复用它的内存
+     *
+     * @param options 已解码出尺寸并设置了 inSampleSize
+     * @param decoder 解码
+     * @return bitmap
+     */
+    private static Bitmap decode(final BitmapFactory.Options options, final Decoder decoder) {
+        BitmapPool pool = BitmapPool.getInstance();
+        pool.prepare(options);
+        Bitmap ret;
+        try {
+            ret = decoder.decode(options);
+        } catch (IllegalArgumentException e) {
+            // 复用的位图不满足解码的要求，不复用重试
+            if (options.inBitmap == null) throw e;
+            pool.onDecodeFailed(options);
+            ret = decoder.decode(options);
+        }
+        if (ret == null) {
+            pool.onDecodeFailed(options);
+        } else if (options.inScaled && options.inDensity > 0) {
+            // 缩放解码后位图的密度为 inTargetDensity，恢复为屏幕密度，避免绘制时再次缩放
+            ret.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+        }
+        return ret;
+    }
+
+    /**
+     * 解码流，先在 mark 范围内解码出尺寸再 reset，不把整个流读入内存
+     *
+     * @param exact 是否精确缩放到目标尺寸，见 {@link #setExactSize}
+     */
+    private static Bitmap decodeStream(final InputStream is,
+                                       final int maxWidth,
+                                       final int maxHeight,
+                                       final Bitmap.Config config,
+                                       final boolean exact) {
         if (is == null) return null;
+        ByteArrayPool arrayPool = ByteArrayPool.getInstance();
+        final PooledBufferedInputStream in = new PooledBufferedInputStream(is, arrayPool);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inTempStorage = arrayPool.get(DECODE_TEMP_STORAGE_SIZE);
         try {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            byte[] b = new byte[1024];
-            int len;
-            while ((len = is.read(b, 0, 1024)) != -1) {
-                os.write(b, 0, len);
-            }
-            return os.toByteArray();
+            in.mark(STREAM_MARK_LIMIT);
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(in, null, options);
+            in.reset();
+            // 正式解码时不再扩大缓冲区，复用位图失败时只能回到已缓冲的头部重试
+            in.fixMarkLimit();
+            setTargetSize(options, maxWidth, maxHeight, config, exact);
+            return decode(options, new Decoder() {
+                @Override
+                public Bitmap decode(BitmapFactory.Options options) {
+                    try {
+                        in.reset();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        return null;
+                    }
+                    return BitmapFactory.decodeStream(in, null, options);
+                }
+            });
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         } finally {
+            arrayPool.put(options.inTempStorage);
             try {
-                is.close();
+                in.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
     }
+
+    private interface Decoder {
+        Bitmap decode(BitmapFactory.Options options);
+    }
 }
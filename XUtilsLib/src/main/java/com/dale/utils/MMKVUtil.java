@@ -3,24 +3,65 @@ package com.dale.utils;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.google.gson.Gson;
+import com.dale.utils.mmkv.BinaryCodec;
+import com.dale.utils.mmkv.GsonCodec;
+import com.dale.utils.mmkv.KeyValueStore;
+import com.dale.utils.mmkv.LogKeyValueStore;
+import com.dale.utils.mmkv.MMKVKeyValueStore;
+import com.dale.utils.mmkv.MMKVNamespace;
+import com.dale.utils.mmkv.Migration;
+import com.dale.utils.mmkv.ObjectCodec;
+import com.dale.utils.mmkv.OnKeyChangedListener;
+import com.dale.utils.mmkv.TlvCodec;
 import com.tencent.mmkv.MMKV;
 
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
+/**
+ * MMKV 工具类，静态方法读写 {@code init} 打开的默认文件；各模块可用 {@link #of(String)} 取得独立的命名空间，
+ * 键多的模块不会拖慢其他模块的 allKeys、count 和 trim
+ */
 public final class MMKVUtil {
 
-    private static MMKV INSTANCE;
+    /** 与 MMKV 默认文件的 mmapID 相同 */
+    private static final String DEFAULT_NAME = "mmkv.default";
+    private static volatile MMKVNamespace sDefault;
+    /** 已打开的命名空间，键为 mmapID */
+    private static final ConcurrentHashMap<String, MMKVNamespace> NAMESPACES = new ConcurrentHashMap<>();
+    /** {@link #configure(String, int, String)} 登记的、尚未打开的命名空间配置 */
+    private static final ConcurrentHashMap<String, NamespaceConfig> CONFIGS = new ConcurrentHashMap<>();
+    private static volatile KeyValueStore.Factory sStoreFactory;
+    private static volatile ObjectCodec sObjectCodec = new GsonCodec();
+    private static volatile BinaryCodec sBinaryCodec = new TlvCodec();
 
     private MMKVUtil() {
     }
 
 
+    /**
+     * 无法得知 mmkv 的模式，{@link #enableObjectCache(int)} 按多进程处理
+     */
     public static void init(MMKV mmkv) {
-        INSTANCE = mmkv;
+        setDefault(mmkv.mmapID(), new MMKVKeyValueStore(mmkv), true);
+    }
+
+    /**
+     * 使用其他的底层存储作为默认文件，如在 JVM 单元测试中使用 {@link LogKeyValueStore}；
+     * {@link #of(String)} 的存储由 {@link #setStoreFactory(KeyValueStore.Factory)} 决定
+     *
+     * @param multiProcess 是否为多进程模式，无法确定时传 {@code true}
+     */
+    public static void init(@NonNull KeyValueStore store, boolean multiProcess) {
+        setDefault(DEFAULT_NAME, store, multiProcess);
     }
 
     public static void init(Context context) {
@@ -33,7 +74,8 @@ public final class MMKVUtil {
 
     public static void init(int mode, Context context, String cryptKey) {
         MMKV.initialize(context);
-        INSTANCE = MMKV.defaultMMKV(mode, cryptKey);
+        MMKV mmkv = MMKV.defaultMMKV(mode, cryptKey);
+        setDefault(mmkv.mmapID(), new MMKVKeyValueStore(mmkv), (mode & MMKV.MULTI_PROCESS_MODE) != 0);
     }
 
     public static void initWithMmap(Context context, String mmapID) {
@@ -46,163 +88,425 @@ public final class MMKVUtil {
 
     public static void initWithMmap(Context context, String mmapID, int mode, String cryptKey) {
         MMKV.initialize(context);
-        INSTANCE = MMKV.mmkvWithID(mmapID, mode, cryptKey);
+        setDefault(mmapID, new MMKVKeyValueStore(MMKV.mmkvWithID(mmapID, mode, cryptKey)),
+                (mode & MMKV.MULTI_PROCESS_MODE) != 0);
+    }
+
+    /**
+     * 替换默认文件，原默认文件的对象缓存与异步写入设置沿用到新文件
+     */
+    private static synchronized void setDefault(String name, KeyValueStore store, boolean multiProcess) {
+        MMKVNamespace old = sDefault;
+        MMKVNamespace namespace = new MMKVNamespace(name, store, multiProcess);
+        if (old != null) {
+            if (old.getObjectCacheMaxCount() > 0) namespace.enableObjectCache(old.getObjectCacheMaxCount());
+            if (old.isAsyncWrite()) {
+                old.disableAsyncWrite();
+                namespace.enableAsyncWrite();
+            }
+        }
+        NAMESPACES.put(namespace.getName(), namespace);
+        sDefault = namespace;
+    }
+
+    /**
+     * 登记命名空间的模式和加密密钥，需在第一次 {@link #of(String)} 之前调用
+     *
+     * @param name     命名空间，即 mmapID
+     * @param mode     {@link MMKV#SINGLE_PROCESS_MODE} 或 {@link MMKV#MULTI_PROCESS_MODE}
+     * @param cryptKey 加密密钥，不加密时传 {@code null}
+     */
+    public static void configure(@NonNull String name, int mode, @Nullable String cryptKey) {
+        if (NAMESPACES.containsKey(name)) {
+            throw new IllegalStateException("namespace already opened: " + name);
+        }
+        CONFIGS.put(name, new NamespaceConfig(mode, cryptKey));
+    }
+
+    /**
+     * 取得命名空间，第一次调用时按 {@link #configure(String, int, String)} 登记的配置打开，
+     * 未登记时为单进程、不加密；需先调用 {@code init} 初始化 MMKV
+     *
+     * @param name 命名空间，即 mmapID
+     */
+    @NonNull
+    public static MMKVNamespace of(@NonNull String name) {
+        MMKVNamespace namespace = NAMESPACES.get(name);
+        if (namespace != null) return namespace;
+        defaultNamespace();
+        synchronized (MMKVUtil.class) {
+            namespace = NAMESPACES.get(name);
+            if (namespace != null) return namespace;
+            NamespaceConfig config = CONFIGS.remove(name);
+            int mode = config == null ? MMKV.SINGLE_PROCESS_MODE : config.mode;
+            String cryptKey = config == null ? null : config.cryptKey;
+            KeyValueStore.Factory factory = sStoreFactory;
+            KeyValueStore store = factory == null
+                    ? new MMKVKeyValueStore(MMKV.mmkvWithID(name, mode, cryptKey))
+                    : factory.open(name, mode, cryptKey);
+            namespace = new MMKVNamespace(name, store, (mode & MMKV.MULTI_PROCESS_MODE) != 0);
+            NAMESPACES.put(name, namespace);
+            return namespace;
+        }
     }
 
-    public static MMKV mmkv() {
-        if (INSTANCE == null) {
+    /**
+     * 设置 {@link #of(String)} 打开命名空间时使用的底层存储，只影响之后打开的命名空间；
+     * 为 {@code null} 时使用 MMKV
+     */
+    public static void setStoreFactory(@Nullable KeyValueStore.Factory factory) {
+        sStoreFactory = factory;
+    }
+
+    /**
+     * @return 已打开的命名空间，包括默认文件
+     */
+    @NonNull
+    public static List<MMKVNamespace> getOpenedNamespaces() {
+        return new ArrayList<>(NAMESPACES.values());
+    }
+
+    @NonNull
+    public static MMKVNamespace defaultNamespace() {
+        MMKVNamespace namespace = sDefault;
+        if (namespace == null) {
             throw new RuntimeException("请调用MMKVUtil.init()方法初始化MMKV");
         }
-        return INSTANCE;
+        return namespace;
+    }
+
+    /**
+     * 开启默认文件的对象缓存，见 {@link MMKVNamespace#enableObjectCache(int)}
+     *
+     * @param maxCount 缓存的最大计数
+     */
+    public static void enableObjectCache(int maxCount) {
+        defaultNamespace().enableObjectCache(maxCount);
+    }
+
+    public static void disableObjectCache() {
+        defaultNamespace().disableObjectCache();
+    }
+
+    /**
+     * 设置 {@link #putObject(String, Object)} 与 {@link #getObject(String, Type)} 使用的编解码，
+     * 默认为 {@link GsonCodec}；替换后已保存的数据仍按新的编解码读取，格式需要兼容
+     */
+    public static void setObjectCodec(@NonNull ObjectCodec codec) {
+        sObjectCodec = codec;
+        invalidateObjectCaches();
+    }
+
+    @NonNull
+    public static ObjectCodec getObjectCodec() {
+        return sObjectCodec;
+    }
+
+    /**
+     * 设置 {@link #putBinaryObject(String, Object)} 与 {@link #getBinaryObject(String, Type)} 使用的编解码，
+     * 默认为 {@link TlvCodec}
+     */
+    public static void setBinaryCodec(@NonNull BinaryCodec codec) {
+        sBinaryCodec = codec;
+        invalidateObjectCaches();
+    }
+
+    @NonNull
+    public static BinaryCodec getBinaryCodec() {
+        return sBinaryCodec;
+    }
+
+    public static MMKV mmkv() {
+        return defaultNamespace().mmkv();
     }
 
     public static void put(String key, boolean value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     public static boolean getBoolean(String key) {
-        return getBoolean(key, false);
+        return defaultNamespace().getBoolean(key);
     }
 
     public static boolean getBoolean(String key, boolean defaultValue) {
-        return mmkv().decodeBool(key, defaultValue);
+        return defaultNamespace().getBoolean(key, defaultValue);
     }
 
     public static void put(String key, int value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     public static int getInt(String key) {
-        return getInt(key, 0);
+        return defaultNamespace().getInt(key);
     }
 
     public static int getInt(String key, int defaultValue) {
-        return mmkv().decodeInt(key, defaultValue);
+        return defaultNamespace().getInt(key, defaultValue);
     }
 
     public static void put(String key, long value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     public static long getLong(String key) {
-        return getLong(key, 0L);
+        return defaultNamespace().getLong(key);
     }
 
     public static long getLong(String key, long defaultValue) {
-        return mmkv().decodeLong(key, defaultValue);
+        return defaultNamespace().getLong(key, defaultValue);
     }
 
     public static void put(String key, float value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     public static float getFloat(String key) {
-        return getFloat(key, 0.0F);
+        return defaultNamespace().getFloat(key);
     }
 
     public static float getFloat(String key, float defaultValue) {
-        return mmkv().decodeFloat(key, defaultValue);
+        return defaultNamespace().getFloat(key, defaultValue);
     }
 
     public static void put(String key, double value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     public static double getDouble(String key) {
-        return getDouble(key, 0.0D);
+        return defaultNamespace().getDouble(key);
     }
 
     public static double getDouble(String key, double defaultValue) {
-        return mmkv().decodeDouble(key, defaultValue);
+        return defaultNamespace().getDouble(key, defaultValue);
     }
 
     public static void put(String key, String value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     public static void putObject(String key, Object obj) {
-        if (obj == null) {
-            return;
-        }
-        put(key, new Gson().toJson(obj));
+        defaultNamespace().putObject(key, obj);
     }
 
     @Nullable
     public static String getString(String key) {
-        return getString(key, (String) null);
+        return defaultNamespace().getString(key);
     }
 
     @Nullable
     public static <T> T getObject(String key, Type type) {
-        String cache = getString(key, null);
-        if (cache == null) return null;
-        return new Gson().fromJson(cache, type);
+        return defaultNamespace().getObject(key, type);
+    }
+
+    /**
+     * 以二进制写入对象，比 {@link #putObject(String, Object)} 的 JSON 更小、读取更快；
+     * 两者的数据格式不同，需用 {@link #getBinaryObject(String, Type)} 读取
+     */
+    public static void putBinaryObject(String key, Object obj) {
+        defaultNamespace().putBinaryObject(key, obj);
+    }
+
+    @Nullable
+    public static <T> T getBinaryObject(String key, Type type) {
+        return defaultNamespace().getBinaryObject(key, type);
     }
 
     @Nullable
     public static String getString(String key, String defaultValue) {
-        return mmkv().decodeString(key, defaultValue);
+        return defaultNamespace().getString(key, defaultValue);
     }
 
     public static void put(String key, Set<String> value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     @Nullable
     public static Set<String> getStringSet(String key) {
-        return getStringSet(key, (Set) null);
+        return defaultNamespace().getStringSet(key);
     }
 
     @Nullable
     public static Set<String> getStringSet(String key, Set<String> defaultValue) {
-        return mmkv().decodeStringSet(key, defaultValue);
+        return defaultNamespace().getStringSet(key, defaultValue);
     }
 
     public static void put(String key, byte[] value) {
-        mmkv().encode(key, value);
+        defaultNamespace().put(key, value);
     }
 
     @Nullable
     public static byte[] decodeBytes(String key) {
-        return mmkv().decodeBytes(key);
+        return defaultNamespace().decodeBytes(key);
     }
 
     public static String[] getAllKeys() {
-        return mmkv().allKeys();
+        return defaultNamespace().getAllKeys();
     }
 
     public static long getCount() {
-        return mmkv().count();
+        return defaultNamespace().getCount();
     }
 
     public static long getTotalSize() {
-        return mmkv().totalSize();
+        return defaultNamespace().getTotalSize();
+    }
+
+    public static long getActualSize() {
+        return defaultNamespace().getActualSize();
+    }
+
+    public static void trim() {
+        defaultNamespace().trim();
     }
 
     public static void clearAll() {
-        mmkv().clearAll();
+        defaultNamespace().clearAll();
+    }
+
+    /**
+     * 开启默认文件的异步写入，见 {@link MMKVNamespace#enableAsyncWrite()}
+     */
+    public static void enableAsyncWrite() {
+        defaultNamespace().enableAsyncWrite();
+    }
+
+    public static void disableAsyncWrite() {
+        defaultNamespace().disableAsyncWrite();
+    }
+
+    /**
+     * 在当前线程把默认文件异步队列中的修改写入 MMKV；各命名空间需分别调用 {@link MMKVNamespace#flush()}
+     */
+    public static void flush() {
+        defaultNamespace().flush();
     }
 
     public static void sync() {
-        mmkv().sync();
+        defaultNamespace().sync();
     }
 
     public static boolean containsKey(String key) {
-        return mmkv().containsKey(key);
+        return defaultNamespace().containsKey(key);
     }
 
     public static void removeValueForKey(String key) {
-        mmkv().removeValueForKey(key);
+        defaultNamespace().removeValueForKey(key);
     }
 
     public static void removeValuesForKeys(String[] keys) {
-        mmkv().removeValuesForKeys(keys);
+        defaultNamespace().removeValuesForKeys(keys);
     }
 
     public static void importFromSP(SharedPreferences sharedPreferences) {
-        mmkv().importFromSharedPreferences(sharedPreferences);
+        defaultNamespace().importFromSP(sharedPreferences);
     }
 
+    /**
+     * 设置默认文件的数据版本和迁移步骤，见 {@link MMKVNamespace#setSchema(int, Migration...)}
+     */
+    public static void setSchema(int version, @NonNull Migration... migrations) {
+        defaultNamespace().setSchema(version, migrations);
+    }
 
-}
+    public static int getSchemaVersion() {
+        return defaultNamespace().getSchemaVersion();
+    }
+
+    /**
+     * 在后台分批迁移默认文件，见 {@link MMKVNamespace#migrateInBackground(int, long)}
+     */
+    public static void migrateInBackground(int batchSize, long intervalMillis) {
+        defaultNamespace().migrateInBackground(batchSize, intervalMillis);
+    }
+
+    /**
+     * 默认文件开启大值模式，见 {@link MMKVNamespace#enableLargeValues(int, int)}
+     */
+    public static void enableLargeValues(int threshold, int chunkSize) {
+        defaultNamespace().enableLargeValues(threshold, chunkSize);
+    }
+
+    public static void disableLargeValues() {
+        defaultNamespace().disableLargeValues();
+    }
+
+    /**
+     * 以流的形式读取默认文件中字符串的 UTF-8 字节，见 {@link MMKVNamespace#openStream(String)}
+     */
+    @Nullable
+    public static InputStream openStream(String key) {
+        return defaultNamespace().openStream(key);
+    }
+
+    /**
+     * 在后台构建默认文件的有序键索引，见 {@link MMKVNamespace#enableKeyIndex()}
+     */
+    public static void enableKeyIndex() {
+        defaultNamespace().enableKeyIndex();
+    }
+
+    /**
+     * @return 默认文件中以 prefix 开头的键，按字典序排列
+     */
+    @NonNull
+    public static List<String> keysWithPrefix(@NonNull String prefix) {
+        return defaultNamespace().keysWithPrefix(prefix);
+    }
+
+    /**
+     * 分页遍历默认文件中以 prefix 开头的键，见 {@link MMKVNamespace#keysWithPrefix(String, String, int)}
+     */
+    @NonNull
+    public static List<String> keysWithPrefix(@NonNull String prefix, @Nullable String startAfter, int limit) {
+        return defaultNamespace().keysWithPrefix(prefix, startAfter, limit);
+    }
 
+    public static int removeByPrefix(@NonNull String prefix) {
+        return defaultNamespace().removeByPrefix(prefix);
+    }
+
+    /**
+     * 监听通过本类对默认文件中 key 的写入和删除，同一帧内的多次写入合并为一次回调，在主线程回调
+     */
+    public static void observe(@NonNull String key, @NonNull OnKeyChangedListener listener) {
+        defaultNamespace().observe(key, listener);
+    }
+
+    /**
+     * @param executor 回调所在的线程池，为 {@code null} 时在主线程回调
+     */
+    public static void observe(@NonNull String key, @NonNull OnKeyChangedListener listener, @Nullable Executor executor) {
+        defaultNamespace().observe(key, listener, executor);
+    }
+
+    /**
+     * 监听默认文件中以 prefix 开头的所有键，在主线程回调
+     */
+    public static void observePrefix(@NonNull String prefix, @NonNull OnKeyChangedListener listener) {
+        defaultNamespace().observePrefix(prefix, listener);
+    }
+
+    public static void observePrefix(@NonNull String prefix, @NonNull OnKeyChangedListener listener, @Nullable Executor executor) {
+        defaultNamespace().observePrefix(prefix, listener, executor);
+    }
+
+    public static void removeObserver(@NonNull OnKeyChangedListener listener) {
+        defaultNamespace().removeObserver(listener);
+    }
+
+    private static void invalidateObjectCaches() {
+        for (MMKVNamespace namespace : NAMESPACES.values()) {
+            namespace.invalidateObjectCache();
+        }
+    }
+
+    private static final class NamespaceConfig {
+        final int mode;
+        final String cryptKey;
+
+        NamespaceConfig(int mode, String cryptKey) {
+            this.mode = mode;
+            this.cryptKey = cryptKey;
+        }
+    }
+}
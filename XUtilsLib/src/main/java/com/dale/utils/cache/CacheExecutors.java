@@ -0,0 +1,98 @@
+package com.dale.utils.cache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存后台任务使用的线程
+ */
+public final class CacheExecutors {
+
+    private static volatile ScheduledExecutorService sScheduler;
+    private static volatile ExecutorService sLoader;
+    private static volatile ExecutorService sWriter;
+
+    private CacheExecutors() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    /**
+     * 所有缓存共用的单线程定时器，用于过期清理等轻量的周期任务，任务中不要执行耗时操作
+     */
+    public static ScheduledExecutorService scheduler() {
+        ScheduledExecutorService scheduler = sScheduler;
+        if (scheduler == null) {
+            synchronized (CacheExecutors.class) {
+                scheduler = sScheduler;
+                if (scheduler == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new CacheThreadFactory("cache-scheduler"));
+                    executor.setRemoveOnCancelPolicy(true);
+                    sScheduler = scheduler = executor;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * 所有缓存共用的加载线程池，用于异步加载和后台刷新，空闲 30 秒后线程退出
+     */
+    public static ExecutorService loader() {
+        ExecutorService loader = sLoader;
+        if (loader == null) {
+            synchronized (CacheExecutors.class) {
+                loader = sLoader;
+                if (loader == null) {
+                    int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new CacheThreadFactory("cache-loader"));
+                    executor.allowCoreThreadTimeOut(true);
+                    sLoader = loader = executor;
+                }
+            }
+        }
+        return loader;
+    }
+
+    /**
+     * 所有缓存共用的单线程写入队列，任务按提交顺序执行，用于持久化存储的延迟写入
+     */
+    public static ExecutorService writer() {
+        ExecutorService writer = sWriter;
+        if (writer == null) {
+            synchronized (CacheExecutors.class) {
+                writer = sWriter;
+                if (writer == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new CacheThreadFactory("cache-writer"));
+                    executor.allowCoreThreadTimeOut(true);
+                    sWriter = writer = executor;
+                }
+            }
+        }
+        return writer;
+    }
+
+    static final class CacheThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mIndex = new AtomicInteger();
+
+        CacheThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mIndex.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
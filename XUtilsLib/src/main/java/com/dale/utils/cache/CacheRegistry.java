@@ -0,0 +1,214 @@
+package com.dale.utils.cache;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import com.dale.utils.CacheMemoryUtils;
+import com.dale.utils.TopActivityManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 所有 {@link CacheMemoryUtils} 实例的注册表
+ * <p>
+ * 1. 按 cacheKey 并发查找实例；<br>
+ * 2. 按权重（字节）计算的实例共享一个内存预算，总和超出时按优先级从低到高淘汰；<br>
+ * 3. 注册 {@link ComponentCallbacks2}，内存紧张时按等级和优先级缩减所有缓存；<br>
+ * 4. 应用进入后台时写入开启了快照的缓存，见 {@link CacheMemoryUtils#enableSnapshot()}。
+ */
+public final class CacheRegistry implements ComponentCallbacks2 {
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    /** 优先级对保留比例的系数，低优先级保留得更少 */
+    private static final float[] PRIORITY_FACTOR = {0.5f, 1f, 1.5f};
+    private static final long BUDGET_CHECK_DELAY_MILLIS = 100;
+
+    private final ConcurrentHashMap<String, CacheMemoryUtils> mCaches = new ConcurrentHashMap<>();
+    private final AtomicBoolean mBudgetCheckScheduled = new AtomicBoolean();
+    private volatile long mMemoryBudget;
+    private volatile boolean mRegistered;
+
+    private final Runnable mSaveSnapshots = new Runnable() {
+        @Override
+        public void run() {
+            for (CacheMemoryUtils cache : mCaches.values()) {
+                if (cache.isSnapshotEnabled()) cache.saveSnapshot();
+            }
+        }
+    };
+
+    private final Runnable mBudgetCheck = new Runnable() {
+        @Override
+        public void run() {
+            mBudgetCheckScheduled.set(false);
+            enforceBudget();
+        }
+    };
+
+    public static CacheRegistry getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private static final class SingletonHolder {
+        static final CacheRegistry INSTANCE = new CacheRegistry();
+    }
+
+    private CacheRegistry() {
+    }
+
+    /**
+     * 注册内存回调和前后台监听，{@link com.dale.constant.LibApplication#init} 中已调用
+     */
+    public void register(@NonNull Context context) {
+        if (mRegistered) return;
+        synchronized (this) {
+            if (mRegistered) return;
+            context.getApplicationContext().registerComponentCallbacks(this);
+            TopActivityManager.getInstance().addListener(new TopActivityManager.OnAppStatusChangedListener() {
+                @Override
+                public void onForeground() {
+                }
+
+                @Override
+                public void onBackground() {
+                    CacheExecutors.writer().execute(mSaveSnapshots);
+                }
+            });
+            mRegistered = true;
+        }
+    }
+
+    public CacheMemoryUtils get(String cacheKey) {
+        return mCaches.get(cacheKey);
+    }
+
+    /**
+     * @return 已存在的实例，不存在时放入 cache 并返回 {@code null}
+     */
+    public CacheMemoryUtils putIfAbsent(String cacheKey, CacheMemoryUtils cache) {
+        return mCaches.putIfAbsent(cacheKey, cache);
+    }
+
+    public Collection<CacheMemoryUtils> getAll() {
+        return mCaches.values();
+    }
+
+    /**
+     * 设置按权重计算的缓存（{@link CacheMemoryUtils#getWeightedInstance}）共享的内存预算
+     *
+     * @param bytes 预算（字节），小于等于 0 时不限制
+     */
+    public void setMemoryBudget(long bytes) {
+        mMemoryBudget = bytes;
+        onWeightChanged();
+    }
+
+    public long getMemoryBudget() {
+        return mMemoryBudget;
+    }
+
+    /**
+     * @return 按权重计算的缓存的总权重（字节）
+     */
+    public long getWeightedSize() {
+        long total = 0;
+        for (CacheMemoryUtils cache : mCaches.values()) {
+            if (cache.isWeighted()) total += cache.getWeightedSize();
+        }
+        return total;
+    }
+
+    /**
+     * 按权重计算的缓存写入后调用，合并短时间内的多次写入后在后台检查预算
+     */
+    public void onWeightChanged() {
+        if (mMemoryBudget <= 0 || mBudgetCheckScheduled.get()) return;
+        if (mBudgetCheckScheduled.compareAndSet(false, true)) {
+            CacheExecutors.scheduler().schedule(mBudgetCheck, BUDGET_CHECK_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 总权重超出预算时，从低优先级开始，同一优先级内按各自权重等比例淘汰
+     */
+    public void enforceBudget() {
+        long budget = mMemoryBudget;
+        if (budget <= 0) return;
+        long excess = getWeightedSize() - budget;
+        for (int priority = PRIORITY_LOW; priority <= PRIORITY_HIGH && excess > 0; priority++) {
+            List<CacheMemoryUtils> caches = new ArrayList<>();
+            long levelSize = 0;
+            for (CacheMemoryUtils cache : mCaches.values()) {
+                if (cache.isWeighted() && cache.getPriority() == priority) {
+                    caches.add(cache);
+                    levelSize += cache.getWeightedSize();
+                }
+            }
+            if (levelSize == 0) continue;
+            double fraction = Math.min(1.0, (double) excess / levelSize);
+            for (CacheMemoryUtils cache : caches) {
+                long size = cache.getWeightedSize();
+                cache.trimToSize((long) (size * (1 - fraction)));
+            }
+            excess -= Math.min(excess, levelSize);
+        }
+    }
+
+    /**
+     * 按内存等级缩减所有缓存
+     *
+     * @param level {@link ComponentCallbacks2} 中的 TRIM_MEMORY_* 常量
+     */
+    public void trim(int level) {
+        float retain = retainFraction(level);
+        if (retain >= 1f) return;
+        for (CacheMemoryUtils cache : mCaches.values()) {
+            if (retain <= 0f) {
+                cache.clear();
+                continue;
+            }
+            int priority = Math.max(PRIORITY_LOW, Math.min(PRIORITY_HIGH, cache.getPriority()));
+            float fraction = Math.min(1f, retain * PRIORITY_FACTOR[priority]);
+            if (fraction < 1f) cache.trimToSize((long) (cache.getWeightedSize() * fraction));
+        }
+    }
+
+    /**
+     * @return 普通优先级缓存的保留比例
+     */
+    private static float retainFraction(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE) return 0f;
+        if (level >= TRIM_MEMORY_MODERATE) return 0.25f;
+        if (level >= TRIM_MEMORY_BACKGROUND) return 0.5f;
+        if (level >= TRIM_MEMORY_UI_HIDDEN) return 0.75f;
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL) return 0.25f;
+        if (level >= TRIM_MEMORY_RUNNING_LOW) return 0.5f;
+        if (level >= TRIM_MEMORY_RUNNING_MODERATE) return 0.9f;
+        return 1f;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trim(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+}
@@ -0,0 +1,300 @@
+package com.dale.utils.cache;
+
+import com.dale.utils.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 内存缓存快照的文件格式
+ * <p>
+ * 头部为魔数、版本和写入时的系统时间，之后逐条写入键、剩余保存时间和值。String、byte[] 和基本类型的包装类
+ * 直接写入，其余 {@link Serializable} 的值单独序列化并记录长度，读取时某一条失败（如类已被删除）只跳过该条。
+ */
+public final class CacheSnapshot {
+
+    private static final int MAGIC = 0x43534E50;
+    private static final int VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+    /** {@link DataOutputStream#writeUTF(String)} 能写入的最大字节数 */
+    private static final int MAX_KEY_UTF_LENGTH = 65535;
+
+    private static final int END = 0;
+    private static final int TYPE_SERIALIZABLE = 1;
+    private static final int TYPE_STRING = 2;
+    private static final int TYPE_BYTES = 3;
+    private static final int TYPE_INT = 4;
+    private static final int TYPE_LONG = 5;
+    private static final int TYPE_BOOLEAN = 6;
+    private static final int TYPE_FLOAT = 7;
+    private static final int TYPE_DOUBLE = 8;
+
+    private CacheSnapshot() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    /**
+     * 快照中的一条缓存
+     */
+    public static final class Entry {
+        public final String key;
+        public final Object value;
+        /** 剩余保存时间（毫秒），-1 表示永久 */
+        public final long ttlMillis;
+
+        public Entry(String key, Object value, long ttlMillis) {
+            this.key = key;
+            this.value = value;
+            this.ttlMillis = ttlMillis;
+        }
+    }
+
+    /**
+     * 先写临时文件再改名，进程被杀时不会留下写了一半的快照；
+     * UTF-8 超过 {@link #MAX_KEY_UTF_LENGTH} 字节的键和无法序列化的值会被跳过
+     *
+     * @return 实际写入的条数
+     */
+    public static int write(File file, List<Entry> entries) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        int written = 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            for (Entry entry : entries) {
+                if (writeEntry(out, entry)) written++;
+            }
+            out.writeByte(END);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) throw new IOException("rename failed: " + file);
+            return written;
+        } finally {
+            closeQuietly(out);
+            FileUtils.delete(temp);
+        }
+    }
+
+    /**
+     * @return 逐条读取的 Reader，文件格式不对时抛出 {@link IOException}
+     */
+    public static Reader open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) throw new IOException("bad snapshot: " + file);
+            long savedTime = in.readLong();
+            return new Reader(in, Math.max(0, System.currentTimeMillis() - savedTime));
+        } catch (IOException e) {
+            closeQuietly(in);
+            throw e;
+        }
+    }
+
+    /**
+     * 逐条读取快照，剩余保存时间已减去快照写入后经过的时间
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream mIn;
+        private final long mElapsedMillis;
+        private boolean mEnd;
+
+        Reader(DataInputStream in, long elapsedMillis) {
+            mIn = in;
+            mElapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * @return 下一条未过期的缓存，读完时返回 {@code null}
+         */
+        public Entry next() throws IOException {
+            while (!mEnd) {
+                int type = mIn.readUnsignedByte();
+                if (type == END) {
+                    mEnd = true;
+                    break;
+                }
+                String key = mIn.readUTF();
+                long ttl = mIn.readLong();
+                Object value = readValue(mIn, type);
+                if (ttl != -1) {
+                    ttl -= mElapsedMillis;
+                    if (ttl <= 0) continue;
+                }
+                if (value != null) return new Entry(key, value, ttl);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(mIn);
+        }
+    }
+
+    private static boolean writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        // writeUTF 写不下时会抛出 UTFDataFormatException，整个快照都会作废
+        if (utfLength(entry.key) > MAX_KEY_UTF_LENGTH) return false;
+        Object value = entry.value;
+        int type;
+        byte[] serialized = null;
+        if (value instanceof String) {
+            type = TYPE_STRING;
+        } else if (value instanceof byte[]) {
+            type = TYPE_BYTES;
+        } else if (value instanceof Integer) {
+            type = TYPE_INT;
+        } else if (value instanceof Long) {
+            type = TYPE_LONG;
+        } else if (value instanceof Boolean) {
+            type = TYPE_BOOLEAN;
+        } else if (value instanceof Float) {
+            type = TYPE_FLOAT;
+        } else if (value instanceof Double) {
+            type = TYPE_DOUBLE;
+        } else if (value instanceof Serializable) {
+            type = TYPE_SERIALIZABLE;
+            // 先序列化到内存，字段中有不可序列化的对象时不会弄坏文件
+            serialized = serialize(value);
+            if (serialized == null) return false;
+        } else {
+            return false;
+        }
+        out.writeByte(type);
+        out.writeUTF(entry.key);
+        out.writeLong(entry.ttlMillis);
+        switch (type) {
+            case TYPE_STRING:
+                writeBytes(out, ((String) value).getBytes("UTF-8"));
+                break;
+            case TYPE_BYTES:
+                writeBytes(out, (byte[]) value);
+                break;
+            case TYPE_INT:
+                out.writeInt((Integer) value);
+                break;
+            case TYPE_LONG:
+                out.writeLong((Long) value);
+                break;
+            case TYPE_BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case TYPE_FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case TYPE_DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            default:
+                writeBytes(out, serialized);
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * @return 值，无法反序列化时返回 {@code null}
+     */
+    private static Object readValue(DataInputStream in, int type) throws IOException {
+        switch (type) {
+            case TYPE_STRING:
+                return new String(readBytes(in), "UTF-8");
+            case TYPE_BYTES:
+                return readBytes(in);
+            case TYPE_INT:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_SERIALIZABLE:
+                return deserialize(readBytes(in));
+            default:
+                throw new IOException("unknown type: " + type);
+        }
+    }
+
+    /**
+     * @return {@link DataOutputStream#writeUTF(String)} 写入的字节数，不含长度
+     */
+    private static long utfLength(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c <= 0x07FF) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) throw new IOException("bad length: " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = null;
+        try {
+            oos = new ObjectOutputStream(bos);
+            oos.writeObject(value);
+            oos.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(oos);
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        ObjectInputStream ois = null;
+        try {
+            ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            return ois.readObject();
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            return null;
+        } finally {
+            closeQuietly(ois);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.dale.utils.cache;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * 缓存统计，记录命中、未命中、按原因分类的移除次数以及加载的次数和耗时
+ * <p>
+ * 计数使用 {@link StripedCounter}，记录操作不加锁
+ */
+public final class CacheStats {
+
+    private final StripedCounter mHits = new StripedCounter();
+    private final StripedCounter mMisses = new StripedCounter();
+    private final StripedCounter mSizeEvictions = new StripedCounter();
+    private final StripedCounter mExpirations = new StripedCounter();
+    private final StripedCounter mExplicitRemovals = new StripedCounter();
+    private final StripedCounter mLoadSuccesses = new StripedCounter();
+    private final StripedCounter mLoadFailures = new StripedCounter();
+    private final LatencyHistogram mLoadTime = new LatencyHistogram();
+
+    public void recordHit() {
+        mHits.increment();
+    }
+
+    public void recordMiss() {
+        mMisses.increment();
+    }
+
+    /**
+     * 容量不足被淘汰
+     */
+    public void recordSizeEviction() {
+        mSizeEvictions.increment();
+    }
+
+    /**
+     * 到期被删除
+     */
+    public void recordExpiration() {
+        mExpirations.increment();
+    }
+
+    /**
+     * 调用 remove 删除
+     */
+    public void recordExplicitRemoval() {
+        mExplicitRemovals.increment();
+    }
+
+    public void recordLoadSuccess(long loadNanos) {
+        mLoadSuccesses.increment();
+        mLoadTime.record(loadNanos);
+    }
+
+    public void recordLoadFailure(long loadNanos) {
+        mLoadFailures.increment();
+        mLoadTime.record(loadNanos);
+    }
+
+    public void reset() {
+        mHits.reset();
+        mMisses.reset();
+        mSizeEvictions.reset();
+        mExpirations.reset();
+        mExplicitRemovals.reset();
+        mLoadSuccesses.reset();
+        mLoadFailures.reset();
+        mLoadTime.reset();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * 某一时刻的统计快照
+     */
+    public static final class Snapshot {
+        public final long hitCount;
+        public final long missCount;
+        public final long sizeEvictionCount;
+        public final long expirationCount;
+        public final long explicitRemovalCount;
+        public final long loadSuccessCount;
+        public final long loadFailureCount;
+        public final LatencyHistogram.Snapshot loadTime;
+
+        Snapshot(CacheStats stats) {
+            hitCount = stats.mHits.sum();
+            missCount = stats.mMisses.sum();
+            sizeEvictionCount = stats.mSizeEvictions.sum();
+            expirationCount = stats.mExpirations.sum();
+            explicitRemovalCount = stats.mExplicitRemovals.sum();
+            loadSuccessCount = stats.mLoadSuccesses.sum();
+            loadFailureCount = stats.mLoadFailures.sum();
+            loadTime = stats.mLoadTime.snapshot();
+        }
+
+        public long requestCount() {
+            return hitCount + missCount;
+        }
+
+        /**
+         * @return 命中率，没有请求时为 1
+         */
+        public double hitRate() {
+            long requestCount = requestCount();
+            return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "hit=%d miss=%d hitRate=%.1f%% evict(size=%d expired=%d explicit=%d) "
+                            + "load(ok=%d fail=%d mean=%.2fms p99<%.2fms)",
+                    hitCount, missCount, hitRate() * 100, sizeEvictionCount, expirationCount, explicitRemovalCount,
+                    loadSuccessCount, loadFailureCount, loadTime.getMeanNanos() / 1e6,
+                    loadTime.getPercentileNanos(0.99) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.dale.utils.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分段 LRU 内存缓存
+ * <p>
+ * 条目按键的哈希分散到多个相互独立的 LRU 段中，写操作只锁住所在的段；
+ * 读操作直接查询 {@link ConcurrentHashMap}，不加锁，只在段锁空闲时顺带调整访问顺序，
+ * 因此淘汰顺序是近似 LRU。总权重在所有段之间统一计算，超出时优先淘汰超过平均额度的段中最久未访问的条目，
+ * 键在各段之间分布不均时也能放下 maxWeight 的条目。
+ */
+public class ConcurrentLruCache<K, V> implements MemoryCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private final Segment<K, V>[] mSegments;
+    private final int mSegmentMask;
+    private final long mMaxWeight;
+    /** 所有段的权重之和 */
+    private final AtomicLong mWeight = new AtomicLong();
+    private volatile EvictionListener<K, V> mEvictionListener;
+
+    /**
+     * @param maxCount         缓存的最大计数
+     * @param concurrencyLevel 预计的并发线程数，会向上取整为 2 的幂作为分段数
+     */
+    public ConcurrentLruCache(int maxCount, int concurrencyLevel) {
+        this(maxCount, concurrencyLevel, null);
+    }
+
+    /**
+     * 单个条目的权重超过最大权重时会被立即淘汰
+     *
+     * @param maxWeight        缓存的最大权重
+     * @param concurrencyLevel 预计的并发线程数，会向上取整为 2 的幂作为分段数
+     * @param weigher          权重计算，为 {@code null} 时每个条目权重为 1
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache(long maxWeight, int concurrencyLevel, Weigher<? super V> weigher) {
+        if (maxWeight <= 0) throw new IllegalArgumentException("maxWeight <= 0");
+        if (concurrencyLevel <= 0) throw new IllegalArgumentException("concurrencyLevel <= 0");
+        int segmentCount = 1;
+        // 段数不超过最大权重，每个段的平均额度至少为 1
+        while (segmentCount < concurrencyLevel && segmentCount < MAX_SEGMENTS && (long) segmentCount << 1 <= maxWeight) {
+            segmentCount <<= 1;
+        }
+        mSegments = new Segment[segmentCount];
+        mSegmentMask = segmentCount - 1;
+        mMaxWeight = maxWeight;
+        long capacity = maxWeight / segmentCount;
+        long remainder = maxWeight % segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            mSegments[i] = new Segment<>(this, i, i < remainder ? capacity + 1 : capacity, weigher);
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("key == null || value == null");
+        return segmentFor(key).put(key, value);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("key == null || value == null");
+        return segmentFor(key).putIfAbsent(key, value);
+    }
+
+    @Override
+    public V remove(K key) {
+        return segmentFor(key).remove(key);
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        return segmentFor(key).remove(key, value);
+    }
+
+    @Override
+    public int count() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            count += segment.mCount;
+        }
+        return count;
+    }
+
+    @Override
+    public long weightedSize() {
+        return mWeight.get();
+    }
+
+    @Override
+    public long maxWeight() {
+        return mMaxWeight;
+    }
+
+    @Override
+    public void trimToWeight(long maxWeight) {
+        evictTo(Math.max(0, maxWeight), null, null);
+    }
+
+    /**
+     * 每个段内按访问顺序排列，段与段之间不保证顺序
+     */
+    @Override
+    public Map<K, V> snapshot() {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (Segment<K, V> segment : mSegments) {
+            segment.copyTo(result);
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : mSegments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        mEvictionListener = listener;
+    }
+
+    /**
+     * @return 分段数
+     */
+    public int getSegmentCount() {
+        return mSegments.length;
+    }
+
+    /**
+     * 先从超过平均额度（按 target 等比例缩减）的段中淘汰，仍然超出时再从其余段中淘汰。
+     * 每次只持有一个段的锁，与写操作之间不会死锁。
+     *
+     * @param start   从该段开始，为 {@code null} 时从第一个段开始
+     * @param exclude 不淘汰的节点，即刚写入的条目
+     */
+    private void evictTo(long target, Segment<K, V> start, Node<K, V> exclude) {
+        if (mWeight.get() <= target) return;
+        double fraction = Math.min(1, (double) target / mMaxWeight);
+        int first = start == null ? 0 : start.mIndex;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < mSegments.length; i++) {
+                if (mWeight.get() <= target) return;
+                Segment<K, V> segment = mSegments[(first + i) & mSegmentMask];
+                segment.evict(target, pass == 0 ? (long) (segment.mCapacity * fraction) : 0, exclude);
+            }
+        }
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        // 与 ConcurrentHashMap 内部的取模错开，避免同一段内的键在段内哈希表中聚集
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return mSegments[h & mSegmentMask];
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int weight;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Segment<K, V> extends ReentrantLock {
+
+        private final ConcurrentLruCache<K, V> mOwner;
+        private final int mIndex;
+        /** 平均额度，淘汰时优先从超出额度的段中淘汰 */
+        private final long mCapacity;
+        private final Weigher<? super V> mWeigher;
+        private final ConcurrentHashMap<K, Node<K, V>> mMap;
+        /** 哨兵节点，head.next 为最久未访问的节点，head.prev 为最近访问的节点 */
+        private final Node<K, V> mHead = new Node<>(null, null, 0);
+        volatile int mCount;
+        volatile long mWeight;
+
+        Segment(ConcurrentLruCache<K, V> owner, int index, long capacity, Weigher<? super V> weigher) {
+            mOwner = owner;
+            mIndex = index;
+            mCapacity = capacity;
+            mWeigher = weigher;
+            mMap = new ConcurrentHashMap<>((int) Math.min(capacity, 1024), 0.75f, 1);
+            mHead.prev = mHead;
+            mHead.next = mHead;
+        }
+
+        V get(K key) {
+            Node<K, V> node = mMap.get(key);
+            if (node == null) return null;
+            // 拿不到锁说明该段正在写，放弃本次重排，读操作不等待
+            if (tryLock()) {
+                try {
+                    if (node.prev != null) {
+                        unlink(node);
+                        linkLast(node);
+                    }
+                } finally {
+                    unlock();
+                }
+            }
+            return node.value;
+        }
+
+        V put(K key, V value) {
+            return put(key, value, false);
+        }
+
+        V putIfAbsent(K key, V value) {
+            Node<K, V> current = mMap.get(key);
+            if (current != null) return current.value;
+            return put(key, value, true);
+        }
+
+        private V put(K key, V value, boolean onlyIfAbsent) {
+            int weight = mWeigher == null ? 1 : mWeigher.weigh(value);
+            if (weight < 0) throw new IllegalStateException("Negative weight: " + key + "=" + value);
+            Node<K, V> node = new Node<>(key, value, weight);
+            Node<K, V> old;
+            lock();
+            try {
+                if (onlyIfAbsent) {
+                    Node<K, V> current = mMap.get(key);
+                    if (current != null) return current.value;
+                }
+                if (weight > mOwner.mMaxWeight) {
+                    // 放不下的条目不挤出其他条目，替换旧值后直接淘汰
+                    old = mMap.remove(key);
+                    if (old != null) detach(old);
+                    EvictionListener<K, V> listener = mOwner.mEvictionListener;
+                    if (listener != null) listener.onEvicted(key, value);
+                    return old == null ? null : old.value;
+                }
+                old = mMap.put(key, node);
+                if (old != null) {
+                    unlink(old);
+                    mWeight -= old.weight;
+                    mOwner.mWeight.addAndGet(-old.weight);
+                } else {
+                    mCount++;
+                }
+                linkLast(node);
+                mWeight += weight;
+                mOwner.mWeight.addAndGet(weight);
+            } finally {
+                unlock();
+            }
+            mOwner.evictTo(mOwner.mMaxWeight, this, node);
+            return old == null ? null : old.value;
+        }
+
+        /**
+         * 在总权重超过 target 且本段权重超过 floor 时，从最久未访问的条目开始淘汰，遇到 exclude 时停止
+         */
+        void evict(long target, long floor, Node<K, V> exclude) {
+            lock();
+            try {
+                while (mOwner.mWeight.get() > target && mWeight > floor
+                        && mHead.next != mHead && mHead.next != exclude) {
+                    Node<K, V> eldest = mHead.next;
+                    mMap.remove(eldest.key, eldest);
+                    detach(eldest);
+                    EvictionListener<K, V> listener = mOwner.mEvictionListener;
+                    if (listener != null) listener.onEvicted(eldest.key, eldest.value);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        V remove(K key) {
+            if (!mMap.containsKey(key)) return null;
+            lock();
+            try {
+                Node<K, V> node = mMap.remove(key);
+                if (node == null) return null;
+                detach(node);
+                return node.value;
+            } finally {
+                unlock();
+            }
+        }
+
+        boolean remove(K key, V value) {
+            Node<K, V> node = mMap.get(key);
+            if (node == null || node.value != value) return false;
+            lock();
+            try {
+                if (!mMap.remove(key, node)) return false;
+                detach(node);
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        void copyTo(Map<K, V> result) {
+            lock();
+            try {
+                for (Node<K, V> node = mHead.next; node != mHead; node = node.next) {
+                    result.put(node.key, node.value);
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        void clear() {
+            lock();
+            try {
+                mMap.clear();
+                // 断开所有节点，防止并发读拿到旧节点后又把它接回链表
+                while (mHead.next != mHead) {
+                    unlink(mHead.next);
+                }
+                mCount = 0;
+                mOwner.mWeight.addAndGet(-mWeight);
+                mWeight = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 从链表中移除已从 mMap 中删除的节点，并扣除计数和权重
+         */
+        private void detach(Node<K, V> node) {
+            unlink(node);
+            mCount--;
+            mWeight -= node.weight;
+            mOwner.mWeight.addAndGet(-node.weight);
+        }
+
+        private void linkLast(Node<K, V> node) {
+            Node<K, V> last = mHead.prev;
+            node.prev = last;
+            node.next = mHead;
+            last.next = node;
+            mHead.prev = node;
+        }
+
+        private void unlink(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+}
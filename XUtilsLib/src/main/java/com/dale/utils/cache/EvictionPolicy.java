@@ -0,0 +1,16 @@
+package com.dale.utils.cache;
+
+/**
+ * 缓存的淘汰策略
+ */
+public enum EvictionPolicy {
+    /**
+     * 淘汰最久未访问的条目，默认策略
+     */
+    LRU,
+    /**
+     * W-TinyLFU，按访问频率决定新条目能否进入缓存，适合有大量一次性访问（如列表滑动扫描）的场景，
+     * 见 {@link TinyLfuCache}
+     */
+    TINY_LFU
+}
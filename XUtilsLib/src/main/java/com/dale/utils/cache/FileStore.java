@@ -0,0 +1,113 @@
+package com.dale.utils.cache;
+
+import androidx.annotation.Nullable;
+
+import com.dale.utils.EncodeUtils;
+import com.dale.utils.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 基于文件目录的持久化存储，每个键一个文件，适合较大的值
+ */
+public class FileStore implements PersistentStore {
+
+    private static final String CHARSET = "UTF-8";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDir;
+
+    /**
+     * @param name 目录名，位于 {@link FileUtils#getDir(String)} 下，目录无法创建时抛出 {@link IllegalStateException}
+     */
+    public FileStore(String name) {
+        this(dirOf(name));
+    }
+
+    public FileStore(File dir) {
+        mDir = dir;
+    }
+
+    @Nullable
+    @Override
+    public String read(String key) {
+        File file = fileOf(key);
+        if (!file.exists()) return null;
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            ByteArrayOutputStream os = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                os.write(buffer, 0, len);
+            }
+            return os.toString(CHARSET);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(is);
+        }
+    }
+
+    @Override
+    public void write(String key, String data) {
+        if (!FileUtils.createOrExistsDir(mDir)) return;
+        File file = fileOf(key);
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(temp);
+            os.write(data.getBytes(CHARSET));
+            os.close();
+            os = null;
+            // 先写临时文件再改名，进程被杀时不会留下写了一半的文件
+            if (!temp.renameTo(file)) {
+                FileUtils.delete(temp);
+            }
+        } catch (IOException e) {
+            FileUtils.delete(temp);
+        } finally {
+            closeQuietly(os);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        FileUtils.delete(fileOf(key));
+    }
+
+    @Override
+    public void clear() {
+        File[] files = mDir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            FileUtils.delete(file);
+        }
+    }
+
+    private static File dirOf(String name) {
+        String dir = FileUtils.getDir(name);
+        if (dir == null) throw new IllegalStateException("cache dir unavailable: " + name);
+        return new File(dir);
+    }
+
+    private File fileOf(String key) {
+        return new File(mDir, EncodeUtils.urlEncode(key));
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
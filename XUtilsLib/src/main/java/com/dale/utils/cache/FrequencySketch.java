@@ -0,0 +1,98 @@
+package com.dale.utils.cache;
+
+/**
+ * 4 位计数器的 Count-Min Sketch，用于估算键最近的访问频率
+ * <p>
+ * 每个 long 存 16 个计数器，分为 4 组。每个键按 4 个不同的哈希选出 4 个 long，在第 i 个 long 中使用
+ * 由键的哈希选定的那一组里的第 i 个计数器，取 4 个计数器的最小值作为频率，计数器最大为 15。
+ * 累计增加次数达到 10 倍容量时所有计数器减半，使旧的热点逐渐冷却。
+ * 非线程安全，由调用方加锁。
+ */
+final class FrequencySketch {
+
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] mTable;
+    private final int mTableMask;
+    private final int mSampleSize;
+    private int mSize;
+
+    /**
+     * @param maximumSize 缓存的最大条目数
+     */
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.min(Math.max(8, maximumSize), 1 << 29);
+        int tableSize = Integer.highestOneBit(capacity - 1) << 1;
+        mTable = new long[tableSize];
+        mTableMask = tableSize - 1;
+        mSampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return 估算的访问频率，0~15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((mTable[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 访问频率加一，计数器已满时不再增加
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++mSize == mSampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((mTable[i] & mask) != mask) {
+            mTable[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        int oddCount = 0;
+        for (int i = 0; i < mTable.length; i++) {
+            oddCount += Long.bitCount(mTable[i] & ONE_MASK);
+            mTable[i] = (mTable[i] >>> 1) & RESET_MASK;
+        }
+        // 奇数计数器减半时丢掉的 0.5 也从总数中扣除
+        mSize = (mSize >>> 1) - (oddCount >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & mTableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,103 @@
+package com.dale.utils.cache;
+
+/**
+ * 以 int 为键的内存缓存，键扩展为 long 后存入 {@link LongKeyMemoryCache}，同样命中时不分配对象
+ */
+public final class IntKeyMemoryCache {
+
+    private final LongKeyMemoryCache mCache;
+
+    /**
+     * @param maxCount 缓存的最大计数
+     */
+    public IntKeyMemoryCache(int maxCount) {
+        mCache = new LongKeyMemoryCache(maxCount);
+    }
+
+    /**
+     * @param maxCount 缓存的最大计数
+     * @param ticker   计算保存时间的时钟
+     */
+    public IntKeyMemoryCache(int maxCount, Ticker ticker) {
+        mCache = new LongKeyMemoryCache(maxCount, ticker);
+    }
+
+    /**
+     * @param key   缓存的键
+     * @param value 缓存的值
+     */
+    public void put(final int key, final Object value) {
+        mCache.put(key, value, -1);
+    }
+
+    /**
+     * @param key      缓存的键
+     * @param value    缓存的值
+     * @param saveTime 缓存的保存时间（秒）。
+     */
+    public void put(final int key, final Object value, int saveTime) {
+        mCache.put(key, value, saveTime);
+    }
+
+    /**
+     * 返回缓存中的值
+     *
+     * @param key 缓存的键
+     * @param <T> 值类型。
+     * @return 缓存中的值
+     */
+    public <T> T get(final int key) {
+        return mCache.get(key, null);
+    }
+
+    /**
+     * 返回缓存中的值
+     *
+     * @param key          缓存的键
+     * @param defaultValue 缓存不存在时的默认值。
+     * @param <T>          值类型。
+     * @return 缓存中的值
+     */
+    public <T> T get(final int key, final T defaultValue) {
+        return mCache.get(key, defaultValue);
+    }
+
+    /**
+     * 删除指定key缓存
+     *
+     * @param key 缓存的键
+     * @return 被删除的值，不存在时为 {@code null}
+     */
+    public Object remove(final int key) {
+        return mCache.remove(key);
+    }
+
+    /**
+     * 返回缓存数量
+     *
+     * @return 缓存数量
+     */
+    public int getCacheCount() {
+        return mCache.getCacheCount();
+    }
+
+    public int getMaxCount() {
+        return mCache.getMaxCount();
+    }
+
+    /**
+     * 淘汰最久未使用的缓存，直到数量不超过 count
+     *
+     * @param count 目标数量
+     */
+    public void trimToSize(final int count) {
+        mCache.trimToSize(count);
+    }
+
+    /**
+     * 清理所有的缓存
+     */
+    public void clear() {
+        mCache.clear();
+    }
+}
@@ -0,0 +1,92 @@
+package com.dale.utils.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按 2 的幂分桶的耗时直方图，第 i 个桶记录 [2^i, 2^(i+1)) 纳秒的样本
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+    private final StripedCounter mTotalNanos = new StripedCounter();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        mBuckets.incrementAndGet(bucketOf(nanos));
+        mTotalNanos.add(nanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = mBuckets.get(i);
+        }
+        return new Snapshot(counts, mTotalNanos.sum());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mBuckets.set(i, 0);
+        }
+        mTotalNanos.reset();
+    }
+
+    private static int bucketOf(long nanos) {
+        return nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static final class Snapshot {
+        private final long[] mCounts;
+        private final long mTotalNanos;
+        private final long mCount;
+
+        Snapshot(long[] counts, long totalNanos) {
+            mCounts = counts;
+            mTotalNanos = totalNanos;
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            mCount = count;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        public long getMeanNanos() {
+            return mCount == 0 ? 0 : mTotalNanos / mCount;
+        }
+
+        /**
+         * @param percentile 百分位，如 0.99
+         * @return 所在桶的上界（纳秒），精度为 2 倍
+         */
+        public long getPercentileNanos(double percentile) {
+            if (mCount == 0) return 0;
+            long rank = (long) Math.ceil(percentile * mCount);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * @return 每个桶的样本数，下标 i 对应 [2^i, 2^(i+1)) 纳秒
+         */
+        public long[] getCounts() {
+            return mCounts.clone();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.dale.utils.cache;
+
+import java.util.Arrays;
+
+/**
+ * 以 long 为键的内存缓存，淘汰（LRU）和保存时间的语义与 {@link com.dale.utils.CacheMemoryUtils} 相同
+ * <p>
+ * 按数字 id 查找时不必先转成 String：键保存在开放寻址（线性探测）的 long 数组中，
+ * 条目的值、过期时间和 LRU 链表都是按条目下标访问的平行数组，容量在构造时一次分配。
+ * 命中、写入已存在的键和淘汰都不分配对象。
+ * <p>
+ * 所有读写共用一把锁。
+ */
+public final class LongKeyMemoryCache {
+
+    private static final int NIL = -1;
+
+    private final Ticker mTicker;
+    private final int mMaxCount;
+    /** 哈希槽 -> 条目下标 + 1，0 表示空槽 */
+    private final int[] mTable;
+    private final int mMask;
+
+    private final long[] mKeys;
+    private final Object[] mValues;
+    private final long[] mDueTimes;
+    private final int[] mPrev;
+    private final int[] mNext;
+
+    /** 最久未访问的条目 */
+    private int mHead = NIL;
+    private int mTail = NIL;
+    /** 删除后空出的条目，用 mNext 串起来 */
+    private int mFree = NIL;
+    /** 从未使用过的条目从这里开始 */
+    private int mUnused;
+    private int mCount;
+
+    /**
+     * @param maxCount 缓存的最大计数
+     */
+    public LongKeyMemoryCache(int maxCount) {
+        this(maxCount, Ticker.SYSTEM);
+    }
+
+    /**
+     * @param maxCount 缓存的最大计数
+     * @param ticker   计算保存时间的时钟
+     */
+    public LongKeyMemoryCache(int maxCount, Ticker ticker) {
+        if (maxCount <= 0) throw new IllegalArgumentException("maxCount <= 0");
+        mTicker = ticker;
+        mMaxCount = maxCount;
+        // 装载因子不超过 0.5，探测链保持很短
+        int tableSize = Integer.highestOneBit(Math.max(2, maxCount) * 2 - 1) << 1;
+        mTable = new int[tableSize];
+        mMask = tableSize - 1;
+        mKeys = new long[maxCount];
+        mValues = new Object[maxCount];
+        mDueTimes = new long[maxCount];
+        mPrev = new int[maxCount];
+        mNext = new int[maxCount];
+    }
+
+    /**
+     * @param key   缓存的键
+     * @param value 缓存的值
+     */
+    public void put(final long key, final Object value) {
+        put(key, value, -1);
+    }
+
+    /**
+     * @param key      缓存的键
+     * @param value    缓存的值
+     * @param saveTime 缓存的保存时间（秒）。
+     */
+    public synchronized void put(final long key, final Object value, int saveTime) {
+        if (value == null) return;
+        long dueTime = saveTime < 0 ? -1 : now() + saveTime * 1000L;
+        int slot = findSlot(key);
+        int index = mTable[slot] - 1;
+        if (index == NIL) {
+            index = allocate();
+            // 淘汰可能移动了探测链上的槽，重新查找空槽
+            slot = findSlot(key);
+            mTable[slot] = index + 1;
+            mKeys[index] = key;
+            linkLast(index);
+            mCount++;
+        } else {
+            moveToLast(index);
+        }
+        mValues[index] = value;
+        mDueTimes[index] = dueTime;
+    }
+
+    /**
+     * 返回缓存中的值
+     *
+     * @param key 缓存的键
+     * @param <T> 值类型。
+     * @return 缓存中的值
+     */
+    public <T> T get(final long key) {
+        return get(key, null);
+    }
+
+    /**
+     * 返回缓存中的值
+     *
+     * @param key          缓存的键
+     * @param defaultValue 缓存不存在时的默认值。
+     * @param <T>          值类型。
+     * @return 缓存中的值
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(final long key, final T defaultValue) {
+        int slot = findSlot(key);
+        int index = mTable[slot] - 1;
+        if (index == NIL) return defaultValue;
+        long dueTime = mDueTimes[index];
+        if (dueTime != -1 && dueTime < now()) {
+            removeAt(slot, index);
+            return defaultValue;
+        }
+        moveToLast(index);
+        return (T) mValues[index];
+    }
+
+    /**
+     * 删除指定key缓存
+     *
+     * @param key 缓存的键
+     * @return 被删除的值，不存在时为 {@code null}
+     */
+    public synchronized Object remove(final long key) {
+        int slot = findSlot(key);
+        int index = mTable[slot] - 1;
+        if (index == NIL) return null;
+        Object value = mValues[index];
+        removeAt(slot, index);
+        return value;
+    }
+
+    /**
+     * 返回缓存数量，包括已过期但尚未被读取删除的缓存
+     *
+     * @return 缓存数量
+     */
+    public synchronized int getCacheCount() {
+        return mCount;
+    }
+
+    public int getMaxCount() {
+        return mMaxCount;
+    }
+
+    /**
+     * 淘汰最久未使用的缓存，直到数量不超过 count
+     *
+     * @param count 目标数量
+     */
+    public synchronized void trimToSize(final int count) {
+        while (mCount > Math.max(0, count)) {
+            removeAt(findSlot(mKeys[mHead]), mHead);
+        }
+    }
+
+    /**
+     * 清理所有的缓存
+     */
+    public synchronized void clear() {
+        Arrays.fill(mTable, 0);
+        Arrays.fill(mValues, null);
+        mHead = NIL;
+        mTail = NIL;
+        mFree = NIL;
+        mUnused = 0;
+        mCount = 0;
+    }
+
+    /**
+     * @return 键所在的槽，或探测链上第一个空槽
+     */
+    private int findSlot(long key) {
+        int slot = hash(key) & mMask;
+        while (true) {
+            int entry = mTable[slot];
+            if (entry == 0 || mKeys[entry - 1] == key) return slot;
+            slot = (slot + 1) & mMask;
+        }
+    }
+
+    /**
+     * @return 可用的条目下标，满了就淘汰最久未访问的条目
+     */
+    private int allocate() {
+        if (mFree != NIL) {
+            int index = mFree;
+            mFree = mNext[index];
+            return index;
+        }
+        if (mUnused < mMaxCount) return mUnused++;
+        int eldest = mHead;
+        removeAt(findSlot(mKeys[eldest]), eldest);
+        // removeAt 把它放进了空闲链表
+        mFree = mNext[eldest];
+        return eldest;
+    }
+
+    private void removeAt(int slot, int index) {
+        deleteSlot(slot);
+        unlink(index);
+        mValues[index] = null;
+        mNext[index] = mFree;
+        mFree = index;
+        mCount--;
+    }
+
+    /**
+     * 线性探测的删除：把后面探测链上的条目往前移，不留墓碑
+     */
+    private void deleteSlot(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mMask;
+            int entry = mTable[slot];
+            if (entry == 0) break;
+            int home = hash(mKeys[entry - 1]) & mMask;
+            // home 循环地落在 (hole, slot] 之间时，条目留在原处仍能被找到
+            boolean reachable = hole <= slot ? hole < home && home <= slot : hole < home || home <= slot;
+            if (reachable) continue;
+            mTable[hole] = entry;
+            hole = slot;
+        }
+        mTable[hole] = 0;
+    }
+
+    private void linkLast(int index) {
+        mPrev[index] = mTail;
+        mNext[index] = NIL;
+        if (mTail == NIL) {
+            mHead = index;
+        } else {
+            mNext[mTail] = index;
+        }
+        mTail = index;
+    }
+
+    private void unlink(int index) {
+        int prev = mPrev[index];
+        int next = mNext[index];
+        if (prev == NIL) {
+            mHead = next;
+        } else {
+            mNext[prev] = next;
+        }
+        if (next == NIL) {
+            mTail = prev;
+        } else {
+            mPrev[next] = prev;
+        }
+    }
+
+    private void moveToLast(int index) {
+        if (index == mTail) return;
+        unlink(index);
+        linkLast(index);
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private long now() {
+        return mTicker.read();
+    }
+}
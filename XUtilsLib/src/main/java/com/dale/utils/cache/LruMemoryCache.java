@@ -0,0 +1,148 @@
+package com.dale.utils.cache;
+
+import androidx.collection.LruCache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 {@link LruCache} 的内存缓存，所有读写共用一把锁
+ * <p>
+ * 权重在写入时计算一次并随条目保存，值在写入后变化（集合增长、Bitmap 被回收）不会影响删除时扣减的权重。
+ */
+public class LruMemoryCache<K, V> implements MemoryCache<K, V> {
+
+    private final LruCache<K, Entry<V>> mCache;
+    private final Weigher<? super V> mWeigher;
+    private final AtomicInteger mCount = new AtomicInteger();
+    private volatile EvictionListener<K, V> mEvictionListener;
+
+    /**
+     * @param maxCount 缓存的最大计数
+     */
+    public LruMemoryCache(int maxCount) {
+        this(maxCount, null);
+    }
+
+    /**
+     * @param maxWeight 缓存的最大权重
+     * @param weigher   权重计算，为 {@code null} 时每个条目权重为 1
+     */
+    public LruMemoryCache(int maxWeight, Weigher<? super V> weigher) {
+        mWeigher = weigher;
+        mCache = new LruCache<K, Entry<V>>(maxWeight) {
+            @Override
+            protected int sizeOf(K key, Entry<V> entry) {
+                return entry.weight;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, K key, Entry<V> oldEntry, Entry<V> newEntry) {
+                // newEntry 不为空说明是被 put 替换，条目数不变
+                if (newEntry == null) mCount.decrementAndGet();
+                EvictionListener<K, V> listener = mEvictionListener;
+                if (evicted && listener != null) listener.onEvicted(key, oldEntry.value);
+            }
+        };
+    }
+
+    @Override
+    public V get(K key) {
+        return valueOf(mCache.get(key));
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int weight = mWeigher == null ? 1 : mWeigher.weigh(value);
+        if (weight < 0) throw new IllegalStateException("Negative weight: " + key + "=" + value);
+        Entry<V> old = mCache.put(key, new Entry<>(value, weight));
+        if (old == null) mCount.incrementAndGet();
+        return valueOf(old);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        synchronized (mCache) {
+            Entry<V> current = mCache.get(key);
+            if (current != null) return current.value;
+            put(key, value);
+            return null;
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        return valueOf(mCache.remove(key));
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        // LruCache 内部同样以自身为锁，get 与 remove 之间不会被其他写操作插入
+        synchronized (mCache) {
+            if (valueOf(mCache.get(key)) != value) return false;
+            mCache.remove(key);
+            return true;
+        }
+    }
+
+    @Override
+    public int count() {
+        return mWeigher == null ? mCache.size() : Math.max(0, mCount.get());
+    }
+
+    @Override
+    public long weightedSize() {
+        return mCache.size();
+    }
+
+    @Override
+    public long maxWeight() {
+        return mCache.maxSize();
+    }
+
+    @Override
+    public void trimToWeight(long maxWeight) {
+        mCache.trimToSize((int) Math.max(0, Math.min(maxWeight, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public Map<K, V> snapshot() {
+        Map<K, Entry<V>> entries = mCache.snapshot();
+        Map<K, V> snapshot = new LinkedHashMap<>(entries.size() * 4 / 3 + 1);
+        for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().value);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public void clear() {
+        // evictAll 在 LruCache 中会按淘汰回调，这里逐个删除以区分容量淘汰
+        for (K key : mCache.snapshot().keySet()) {
+            mCache.remove(key);
+        }
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        mEvictionListener = listener;
+    }
+
+    private static <V> V valueOf(Entry<V> entry) {
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * 值与写入时计算的权重
+     */
+    private static final class Entry<V> {
+        final V value;
+        final int weight;
+
+        Entry(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.dale.utils.cache;
+
+import androidx.annotation.Nullable;
+
+import com.dale.utils.MMKVUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 {@link MMKVUtil} 的持久化存储，键加上前缀与其他数据隔开
+ */
+public class MMKVStore implements PersistentStore {
+
+    private final String mPrefix;
+
+    /**
+     * @param name 存储名，作为键的前缀
+     */
+    public MMKVStore(String name) {
+        mPrefix = name + ":";
+    }
+
+    @Nullable
+    @Override
+    public String read(String key) {
+        return MMKVUtil.getString(mPrefix + key);
+    }
+
+    @Override
+    public void write(String key, String data) {
+        MMKVUtil.put(mPrefix + key, data);
+    }
+
+    @Override
+    public void remove(String key) {
+        MMKVUtil.removeValueForKey(mPrefix + key);
+    }
+
+    @Override
+    public void clear() {
+        String[] allKeys = MMKVUtil.getAllKeys();
+        if (allKeys == null) return;
+        List<String> keys = new ArrayList<>();
+        for (String key : allKeys) {
+            if (key.startsWith(mPrefix)) keys.add(key);
+        }
+        if (!keys.isEmpty()) MMKVUtil.removeValuesForKeys(keys.toArray(new String[0]));
+    }
+}
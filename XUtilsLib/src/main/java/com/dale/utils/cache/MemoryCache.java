@@ -0,0 +1,93 @@
+package com.dale.utils.cache;
+
+import java.util.Map;
+
+/**
+ * 内存缓存的存储结构，{@link com.dale.utils.CacheMemoryUtils} 通过该接口访问底层缓存
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public interface MemoryCache<K, V> {
+
+    /**
+     * @param key 缓存的键
+     * @return 缓存中的值，不存在时返回 {@code null}
+     */
+    V get(K key);
+
+    /**
+     * @param key   缓存的键
+     * @param value 缓存的值
+     * @return 被替换的旧值
+     */
+    V put(K key, V value);
+
+    /**
+     * 仅当键不存在时写入
+     *
+     * @param key   缓存的键
+     * @param value 缓存的值
+     * @return 已存在的值，写入成功时返回 {@code null}
+     */
+    V putIfAbsent(K key, V value);
+
+    /**
+     * @param key 缓存的键
+     * @return 被删除的值
+     */
+    V remove(K key);
+
+    /**
+     * 仅当键当前对应的值就是 {@code value} 时删除
+     *
+     * @param key   缓存的键
+     * @param value 期望的值，按引用比较
+     * @return 是否删除成功
+     */
+    boolean remove(K key, V value);
+
+    /**
+     * @return 缓存条目数量
+     */
+    int count();
+
+    /**
+     * @return 当前所有条目的权重之和，未指定 {@link Weigher} 时等于条目数量
+     */
+    long weightedSize();
+
+    /**
+     * @return 最大权重
+     */
+    long maxWeight();
+
+    /**
+     * 淘汰最久未访问（或最不常用）的条目，直到总权重不超过 {@code maxWeight}，不改变最大权重
+     *
+     * @param maxWeight 目标权重
+     */
+    void trimToWeight(long maxWeight);
+
+    /**
+     * @return 所有条目的副本，能确定访问顺序时按从最久未访问到最近访问排列
+     */
+    Map<K, V> snapshot();
+
+    /**
+     * 清理所有的缓存
+     */
+    void clear();
+
+    /**
+     * 设置容量淘汰的监听，主动删除、替换和 {@link #clear()} 不会回调
+     */
+    void setEvictionListener(EvictionListener<K, V> listener);
+
+    /**
+     * 容量淘汰监听
+     */
+    interface EvictionListener<K, V> {
+        void onEvicted(K key, V value);
+    }
+}
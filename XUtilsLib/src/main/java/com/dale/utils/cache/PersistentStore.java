@@ -0,0 +1,21 @@
+package com.dale.utils.cache;
+
+import androidx.annotation.Nullable;
+
+/**
+ * {@link TieredCache} 的二级持久化存储，只负责按键读写字符串，调用都在后台线程或调用方线程同步执行
+ */
+public interface PersistentStore {
+
+    @Nullable
+    String read(String key);
+
+    void write(String key, String data);
+
+    void remove(String key);
+
+    /**
+     * 删除该存储中的所有数据
+     */
+    void clear();
+}
@@ -0,0 +1,48 @@
+package com.dale.utils.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器，多线程同时累加时分散到不同的槽，避免所有线程竞争同一个变量
+ * <p>
+ * 作用同 {@code java.util.concurrent.atomic.LongAdder}，后者需要 API 24
+ */
+public final class StripedCounter {
+
+    /** 每个槽占 8 个 long（64 字节），相邻槽不在同一条缓存行上 */
+    private static final int PADDING = 8;
+    private static final int STRIPES = Math.max(2, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) << 1);
+
+    private final AtomicLongArray mCells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long x) {
+        mCells.getAndAdd(stripe(), x);
+    }
+
+    /**
+     * @return 所有槽之和，并发累加时不是精确的瞬时值
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += mCells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            mCells.set(i * PADDING, 0);
+        }
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return ((h >>> 16) & (STRIPES - 1)) * PADDING;
+    }
+}
@@ -0,0 +1,24 @@
+package com.dale.utils.cache;
+
+import android.os.SystemClock;
+
+/**
+ * 单调时钟，缓存的保存时间、刷新时间都按它计算；测试时可替换为手动推进的时钟
+ */
+public interface Ticker {
+
+    /**
+     * 使用开机后经过的时间，不受修改系统时间的影响
+     */
+    Ticker SYSTEM = new Ticker() {
+        @Override
+        public long read() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    /**
+     * @return 当前时间（毫秒），只用于计算时间差
+     */
+    long read();
+}
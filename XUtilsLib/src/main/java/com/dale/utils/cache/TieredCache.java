@@ -0,0 +1,270 @@
+package com.dale.utils.cache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.dale.utils.CacheMemoryUtils;
+import com.dale.utils.LogUtils;
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 两级缓存：一级为 {@link CacheMemoryUtils}，二级为 {@link PersistentStore}（MMKV 或文件目录）
+ * <p>
+ * 读取时先查内存，未命中再读二级存储并放入内存；写入时同步写内存，二级存储在
+ * {@link CacheExecutors#writer()} 中延迟写入，同一个键未写入的多次修改只写最后一次。
+ * 写入尚未落盘时读取会直接使用待写入的值，两级的数据始终一致。读取二级存储期间发生的写入、删除或清空
+ * 由写入代数识别，此时读到的值只返回给调用方，不放入内存，不会覆盖新值或把已删除的键加回来。
+ * <p>
+ * 二级存储中的值用 Gson 序列化，过期时间按系统时间保存，以便进程重启后继续生效。
+ */
+public final class TieredCache {
+
+    private static final Gson GSON = new Gson();
+    private static final char SEPARATOR = '\n';
+
+    private final CacheMemoryUtils mMemory;
+    private final PersistentStore mStore;
+    private final ConcurrentHashMap<String, Pending> mPending = new ConcurrentHashMap<>();
+    private final AtomicInteger mPendingClears = new AtomicInteger();
+    private final Object mWriteLock = new Object();
+    /** 写入代数，每次写入、删除和清空加一，由 mWriteLock 保护 */
+    private long mWriteVersion;
+
+    /**
+     * @param name     缓存名
+     * @param maxCount 内存缓存的最大计数
+     * @param store    二级存储
+     */
+    public TieredCache(@NonNull String name, int maxCount, @NonNull PersistentStore store) {
+        mMemory = CacheMemoryUtils.getInstance("tiered_" + name, maxCount);
+        mStore = store;
+    }
+
+    /**
+     * 二级存储使用 {@link com.dale.utils.MMKVUtil}
+     */
+    public static TieredCache withMMKV(@NonNull String name, int maxCount) {
+        return new TieredCache(name, maxCount, new MMKVStore("tiered_" + name));
+    }
+
+    /**
+     * 二级存储使用 {@link com.dale.utils.FileUtils#getDir(String)} 下的目录，目录无法创建时抛出 {@link IllegalStateException}
+     */
+    public static TieredCache withDisk(@NonNull String name, int maxCount) {
+        return new TieredCache(name, maxCount, new FileStore("tiered_" + name));
+    }
+
+    /**
+     * @param key   缓存的键
+     * @param value 缓存的值
+     */
+    public void put(@NonNull String key, Object value) {
+        put(key, value, -1);
+    }
+
+    /**
+     * 写入后不要再修改 value，二级存储在后台序列化
+     *
+     * @param key      缓存的键
+     * @param value    缓存的值
+     * @param saveTime 缓存的保存时间（秒）。
+     */
+    public void put(@NonNull String key, Object value, int saveTime) {
+        if (value == null) return;
+        long dueTime = saveTime < 0 ? -1 : System.currentTimeMillis() + saveTime * 1000L;
+        synchronized (mWriteLock) {
+            mWriteVersion++;
+            mMemory.put(key, value, saveTime);
+            enqueue(key, new Pending(value, dueTime));
+        }
+    }
+
+    /**
+     * 返回缓存中的值，内存未命中时会同步读取二级存储，主线程请使用 {@link #getAsync(String, Type)}
+     *
+     * @param key  缓存的键
+     * @param type 值类型，用于二级存储反序列化
+     * @param <T>  值类型。
+     * @return 缓存中的值
+     */
+    @Nullable
+    public <T> T get(@NonNull String key, @NonNull Type type) {
+        T value = mMemory.get(key);
+        if (value != null) return value;
+        long version;
+        synchronized (mWriteLock) {
+            version = mWriteVersion;
+        }
+        Pending pending = mPending.get(key);
+        if (pending != null) {
+            if (pending.value == null) return null;
+            //noinspection unchecked
+            return promote(key, (T) pending.value, pending.dueTime, version);
+        }
+        // 清空操作尚未落盘，二级存储中都是旧数据
+        if (mPendingClears.get() > 0) return null;
+        String data = mStore.read(key);
+        if (data == null) return null;
+        try {
+            int split = data.indexOf(SEPARATOR);
+            long dueTime = Long.parseLong(data.substring(0, split));
+            if (isExpired(dueTime)) {
+                removeStale(key, version);
+                return null;
+            }
+            return promote(key, GSON.<T>fromJson(data.substring(split + 1), type), dueTime, version);
+        } catch (RuntimeException e) {
+            LogUtils.e("TieredCache read failed: " + key, e);
+            removeStale(key, version);
+            return null;
+        }
+    }
+
+    /**
+     * 内存命中时直接返回，否则在 {@link CacheExecutors#loader()} 中读取二级存储
+     *
+     * @param key  缓存的键
+     * @param type 值类型，用于二级存储反序列化
+     * @param <T>  值类型。
+     * @return 缓存中的值
+     */
+    @NonNull
+    public <T> Future<T> getAsync(@NonNull final String key, @NonNull final Type type) {
+        final T value = mMemory.get(key);
+        FutureTask<T> task = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() {
+                return value != null ? value : TieredCache.this.<T>get(key, type);
+            }
+        });
+        if (value != null) {
+            task.run();
+        } else {
+            CacheExecutors.loader().execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * 同时删除两级缓存
+     *
+     * @param key 缓存的键
+     */
+    public void remove(@NonNull String key) {
+        synchronized (mWriteLock) {
+            mWriteVersion++;
+            mMemory.remove(key);
+            enqueue(key, Pending.REMOVE);
+        }
+    }
+
+    /**
+     * 清理两级的所有缓存
+     */
+    public void clear() {
+        synchronized (mWriteLock) {
+            mWriteVersion++;
+            mMemory.clear();
+            mPendingClears.incrementAndGet();
+            mPending.clear();
+        }
+        CacheExecutors.writer().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mStore.clear();
+                } finally {
+                    mPendingClears.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * 等待之前所有的延迟写入完成，不能在 {@link CacheExecutors#writer()} 中调用
+     */
+    public void flush() {
+        Future<?> barrier = CacheExecutors.writer().submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        try {
+            barrier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+        }
+    }
+
+    /**
+     * 读取开始后没有任何写入时才放入内存，且不覆盖内存中已有的值
+     *
+     * @param version 读取前的写入代数
+     */
+    private <T> T promote(String key, T value, long dueTime, long version) {
+        if (value == null || isExpired(dueTime)) return null;
+        int saveTime = dueTime == -1 ? -1 : (int) ((dueTime - System.currentTimeMillis()) / 1000);
+        synchronized (mWriteLock) {
+            if (mWriteVersion == version && mMemory.get(key) == null) mMemory.put(key, value, saveTime);
+        }
+        return value;
+    }
+
+    /**
+     * 删除二级存储中过期或损坏的值，读取期间该键已被重新写入时不删除
+     */
+    private void removeStale(String key, long version) {
+        synchronized (mWriteLock) {
+            if (mWriteVersion == version) enqueue(key, Pending.REMOVE);
+        }
+    }
+
+    private static boolean isExpired(long dueTime) {
+        return dueTime != -1 && dueTime < System.currentTimeMillis();
+    }
+
+    private void enqueue(final String key, Pending pending) {
+        mPending.put(key, pending);
+        CacheExecutors.writer().execute(new Runnable() {
+            @Override
+            public void run() {
+                Pending latest = mPending.get(key);
+                // 已被后面的任务写入或被 clear 丢弃
+                if (latest == null) return;
+                try {
+                    if (latest.value == null) {
+                        mStore.remove(key);
+                    } else {
+                        mStore.write(key, latest.dueTime + String.valueOf(SEPARATOR) + GSON.toJson(latest.value));
+                    }
+                } catch (RuntimeException e) {
+                    LogUtils.e("TieredCache write failed: " + key, e);
+                } finally {
+                    mPending.remove(key, latest);
+                }
+            }
+        });
+    }
+
+    private static final class Pending {
+        static final Pending REMOVE = new Pending(null, -1);
+
+        /** 为 {@code null} 表示删除 */
+        final Object value;
+        final long dueTime;
+
+        Pending(Object value, long dueTime) {
+            this.value = value;
+            this.dueTime = dueTime;
+        }
+    }
+}
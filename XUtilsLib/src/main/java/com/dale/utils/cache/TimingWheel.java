@@ -0,0 +1,193 @@
+package com.dale.utils.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分层时间轮，用于按到期时间批量找出过期条目
+ * <p>
+ * 共 {@link #LEVELS} 层，每层 {@link #WHEEL_SIZE} 个槽，第 n 层每个槽跨度为 64^n 个 tick。
+ * 添加、取消都是 O(1)；推进时只访问走过的槽，高层的槽在低层转完一圈时下沉到低层。
+ * 超出最高层跨度的条目先放在最高层，下沉时再重新计算位置。
+ * <p>
+ * 所有时间均为单调时钟的毫秒数，如 {@code SystemClock.elapsedRealtime()}。
+ *
+ * @param <T> 节点类型
+ */
+public final class TimingWheel<T extends TimingWheel.Node> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << SLOT_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long mTickMillis;
+    private final Node[][] mBuckets = new Node[LEVELS][WHEEL_SIZE];
+    private long mCurrentTick;
+    private int mSize;
+
+    /**
+     * @param tickMillis 每个 tick 的毫秒数，即过期检查的精度
+     * @param nowMillis  当前时间
+     */
+    public TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("tickMillis <= 0");
+        mTickMillis = tickMillis;
+        mCurrentTick = nowMillis / tickMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                Node sentinel = new Sentinel();
+                sentinel.mPrev = sentinel;
+                sentinel.mNext = sentinel;
+                mBuckets[level][i] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * 按 {@link Node#getDueTime()} 加入时间轮，已在时间轮中的节点会先被移除
+     */
+    public synchronized void schedule(T node) {
+        if (node.mPrev != null) {
+            unlink(node);
+        } else {
+            mSize++;
+        }
+        // 向上取整，保证节点不会在到期之前被取出
+        node.mDueTick = (node.getDueTime() + mTickMillis - 1) / mTickMillis;
+        // 当前 tick 的槽已经处理过，最早只能落到下一个 tick
+        link(node, mCurrentTick + 1);
+    }
+
+    /**
+     * 从时间轮中移除，节点不在时间轮中时什么也不做
+     */
+    public synchronized void cancel(T node) {
+        if (node.mPrev == null) return;
+        unlink(node);
+        mSize--;
+    }
+
+    /**
+     * 推进到当前时间
+     *
+     * @param nowMillis 当前时间
+     * @return 已到期的节点，这些节点已从时间轮中移除
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> advance(long nowMillis) {
+        long nowTick = nowMillis / mTickMillis;
+        List<T> expired = null;
+        while (mCurrentTick < nowTick) {
+            long tick = ++mCurrentTick;
+            // 从高到低，把转到的高层槽下沉到低层
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((tick >>> (SLOT_BITS * level)) & WHEEL_MASK), tick);
+                }
+            }
+            Node sentinel = mBuckets[0][(int) (tick & WHEEL_MASK)];
+            while (sentinel.mNext != sentinel) {
+                Node node = sentinel.mNext;
+                unlink(node);
+                if (node.getDueTime() > nowMillis) {
+                    // 超出最高层跨度的节点，重新计算位置
+                    link(node, tick + 1);
+                    continue;
+                }
+                mSize--;
+                if (expired == null) expired = new ArrayList<>();
+                expired.add((T) node);
+            }
+        }
+        if (expired == null) return Collections.emptyList();
+        return expired;
+    }
+
+    /**
+     * @return 时间轮中的节点数量
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * 移除所有节点
+     */
+    public synchronized void clear() {
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                Node sentinel = mBuckets[level][i];
+                while (sentinel.mNext != sentinel) {
+                    unlink(sentinel.mNext);
+                }
+            }
+        }
+        mSize = 0;
+    }
+
+    private void cascade(int level, int index, long tick) {
+        Node sentinel = mBuckets[level][index];
+        // 槽内节点的到期 tick 都在 [tick, tick + 64^level) 内，重新放置后一定落到更低的层
+        while (sentinel.mNext != sentinel) {
+            Node node = sentinel.mNext;
+            unlink(node);
+            link(node, tick);
+        }
+    }
+
+    /**
+     * @param baseTick 节点最早可以落到的 tick，早于它的节点放到 baseTick 对应的槽
+     */
+    private void link(Node node, long baseTick) {
+        long dueTick = node.mDueTick;
+        long delta = dueTick - baseTick;
+        if (delta < 0) {
+            dueTick = baseTick;
+            delta = 0;
+        } else if (delta > MAX_DELTA) {
+            dueTick = baseTick + MAX_DELTA;
+            delta = MAX_DELTA;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        Node sentinel = mBuckets[level][(int) ((dueTick >>> (SLOT_BITS * level)) & WHEEL_MASK)];
+        Node last = sentinel.mPrev;
+        node.mPrev = last;
+        node.mNext = sentinel;
+        last.mNext = node;
+        sentinel.mPrev = node;
+    }
+
+    private static void unlink(Node node) {
+        node.mPrev.mNext = node.mNext;
+        node.mNext.mPrev = node.mPrev;
+        node.mPrev = null;
+        node.mNext = null;
+    }
+
+    /**
+     * 时间轮中的节点，链表指针直接放在节点里，取消时不需要查找
+     */
+    public abstract static class Node {
+        Node mPrev;
+        Node mNext;
+        long mDueTick;
+
+        /**
+         * @return 到期时间（单调时钟毫秒数）
+         */
+        protected abstract long getDueTime();
+    }
+
+    private static final class Sentinel extends Node {
+        @Override
+        protected long getDueTime() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.dale.utils.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * W-TinyLFU 淘汰策略的内存缓存
+ * <p>
+ * 新条目先进入占容量 1% 的窗口 LRU；被挤出窗口的条目作为候选者，与主区中最久未访问的条目比较
+ * {@link FrequencySketch} 估算的访问频率，频率高的留下。主区分为试用区和保护区（80%），
+ * 试用区的条目再次命中后晋升到保护区。一次性扫描大量键时，这些键频率低，很难进入主区，
+ * 不会把热点数据挤出缓存。
+ * <p>
+ * 所有读写共用一把锁，按条目数量限制容量。
+ */
+public class TinyLfuCache<K, V> implements MemoryCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final HashMap<K, Node<K, V>> mMap;
+    private final FrequencySketch mSketch;
+    private final int mMaxCount;
+    private final int mMaxWindow;
+    private final int mMaxProtected;
+
+    private final Node<K, V> mWindow = newSentinel();
+    private final Node<K, V> mProbation = newSentinel();
+    private final Node<K, V> mProtected = newSentinel();
+    private int mWindowCount;
+    private int mProtectedCount;
+
+    private volatile EvictionListener<K, V> mEvictionListener;
+
+    /**
+     * @param maxCount 缓存的最大计数
+     */
+    public TinyLfuCache(int maxCount) {
+        if (maxCount <= 0) throw new IllegalArgumentException("maxCount <= 0");
+        mMaxCount = maxCount;
+        mMaxWindow = Math.max(1, maxCount / 100);
+        mMaxProtected = (int) ((maxCount - mMaxWindow) * 0.8f);
+        mMap = new HashMap<>(Math.min(maxCount, 1024));
+        mSketch = new FrequencySketch(maxCount);
+    }
+
+    @Override
+    public synchronized V get(K key) {
+        Node<K, V> node = mMap.get(key);
+        // 未命中也计入频率，使反复请求的新键更容易被接纳
+        mSketch.increment(key);
+        if (node == null) return null;
+        onHit(node);
+        return node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) throw new NullPointerException("key == null || value == null");
+        Node<K, V> evicted;
+        V old;
+        synchronized (this) {
+            Node<K, V> node = mMap.get(key);
+            if (node != null) {
+                old = node.value;
+                if (onlyIfAbsent) return old;
+                node.value = value;
+                onHit(node);
+                return old;
+            }
+            old = null;
+            mSketch.increment(key);
+            node = new Node<>(key, value);
+            node.queue = WINDOW;
+            mMap.put(key, node);
+            linkLast(mWindow, node);
+            mWindowCount++;
+            evicted = evict();
+        }
+        EvictionListener<K, V> listener = mEvictionListener;
+        if (evicted != null && listener != null) listener.onEvicted(evicted.key, evicted.value);
+        return old;
+    }
+
+    @Override
+    public synchronized V remove(K key) {
+        Node<K, V> node = mMap.remove(key);
+        if (node == null) return null;
+        unlinkFromQueue(node);
+        return node.value;
+    }
+
+    @Override
+    public synchronized boolean remove(K key, V value) {
+        Node<K, V> node = mMap.get(key);
+        if (node == null || node.value != value) return false;
+        mMap.remove(key);
+        unlinkFromQueue(node);
+        return true;
+    }
+
+    @Override
+    public synchronized int count() {
+        return mMap.size();
+    }
+
+    @Override
+    public synchronized long weightedSize() {
+        return mMap.size();
+    }
+
+    @Override
+    public long maxWeight() {
+        return mMaxCount;
+    }
+
+    @Override
+    public void trimToWeight(long maxWeight) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        synchronized (this) {
+            // 先淘汰试用区，再淘汰窗口，最后才动保护区
+            while (mMap.size() > maxWeight) {
+                Node<K, V> node = mProbation.next != mProbation ? mProbation.next
+                        : mWindow.next != mWindow ? mWindow.next : mProtected.next;
+                mMap.remove(node.key);
+                unlinkFromQueue(node);
+                evicted.add(node);
+            }
+        }
+        EvictionListener<K, V> listener = mEvictionListener;
+        if (listener == null) return;
+        for (Node<K, V> node : evicted) {
+            listener.onEvicted(node.key, node.value);
+        }
+    }
+
+    /**
+     * 按试用区、窗口、保护区的顺序排列，越靠前越先被淘汰
+     */
+    @Override
+    public synchronized Map<K, V> snapshot() {
+        Map<K, V> result = new LinkedHashMap<>();
+        copyQueue(mProbation, result);
+        copyQueue(mWindow, result);
+        copyQueue(mProtected, result);
+        return result;
+    }
+
+    @Override
+    public synchronized void clear() {
+        mMap.clear();
+        clearQueue(mWindow);
+        clearQueue(mProbation);
+        clearQueue(mProtected);
+        mWindowCount = 0;
+        mProtectedCount = 0;
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener<K, V> listener) {
+        mEvictionListener = listener;
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                unlink(node);
+                linkLast(mWindow, node);
+                break;
+            case PROBATION:
+                unlink(node);
+                node.queue = PROTECTED;
+                linkLast(mProtected, node);
+                mProtectedCount++;
+                // 保护区满了，把最久未访问的降级回试用区
+                if (mProtectedCount > mMaxProtected) {
+                    Node<K, V> demoted = mProtected.next;
+                    unlink(demoted);
+                    mProtectedCount--;
+                    demoted.queue = PROBATION;
+                    linkLast(mProbation, demoted);
+                }
+                break;
+            default:
+                unlink(node);
+                linkLast(mProtected, node);
+                break;
+        }
+    }
+
+    /**
+     * 窗口超出容量时把最老的条目移入试用区，总数超出容量时由频率决定淘汰候选者还是试用区的牺牲者
+     *
+     * @return 被淘汰的节点，一次写入最多淘汰一个
+     */
+    private Node<K, V> evict() {
+        if (mWindowCount <= mMaxWindow) return null;
+        Node<K, V> candidate = mWindow.next;
+        unlink(candidate);
+        mWindowCount--;
+        candidate.queue = PROBATION;
+        linkLast(mProbation, candidate);
+        if (mMap.size() <= mMaxCount) return null;
+
+        Node<K, V> victim = mProbation.next;
+        if (victim == candidate) {
+            // 试用区只有候选者，说明主区全是保护区条目，从保护区淘汰
+            victim = mProtected.next != mProtected ? mProtected.next : candidate;
+        }
+        Node<K, V> evicted = admit(candidate, victim) ? victim : candidate;
+        mMap.remove(evicted.key);
+        unlinkFromQueue(evicted);
+        return evicted;
+    }
+
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+        if (candidate == victim) return false;
+        int candidateFreq = mSketch.frequency(candidate.key);
+        int victimFreq = mSketch.frequency(victim.key);
+        return candidateFreq > victimFreq;
+    }
+
+    private void unlinkFromQueue(Node<K, V> node) {
+        unlink(node);
+        if (node.queue == WINDOW) {
+            mWindowCount--;
+        } else if (node.queue == PROTECTED) {
+            mProtectedCount--;
+        }
+    }
+
+    private static <K, V> Node<K, V> newSentinel() {
+        Node<K, V> sentinel = new Node<>(null, null);
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        return sentinel;
+    }
+
+    private static <K, V> void copyQueue(Node<K, V> sentinel, Map<K, V> result) {
+        for (Node<K, V> node = sentinel.next; node != sentinel; node = node.next) {
+            result.put(node.key, node.value);
+        }
+    }
+
+    private static <K, V> void clearQueue(Node<K, V> sentinel) {
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+    }
+
+    private static <K, V> void linkLast(Node<K, V> sentinel, Node<K, V> node) {
+        Node<K, V> last = sentinel.prev;
+        node.prev = last;
+        node.next = sentinel;
+        last.next = node;
+        sentinel.prev = node;
+    }
+
+    private static <K, V> void unlink(Node<K, V> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        V value;
+        int queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
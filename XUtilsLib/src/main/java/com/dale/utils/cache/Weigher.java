@@ -0,0 +1,15 @@
+package com.dale.utils.cache;
+
+/**
+ * 计算缓存值的权重，通常为占用的字节数
+ *
+ * @param <V> 值类型
+ */
+public interface Weigher<V> {
+
+    /**
+     * @param value 缓存的值
+     * @return 权重，不能为负数
+     */
+    int weigh(V value);
+}
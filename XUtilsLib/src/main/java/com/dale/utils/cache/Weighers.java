@@ -0,0 +1,102 @@
+package com.dale.utils.cache;
+
+import android.graphics.Bitmap;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 常用的 {@link Weigher}，按对象大致占用的字节数计算权重
+ */
+public final class Weighers {
+
+    /**
+     * 无法识别的对象按一个对象头加引用估算
+     */
+    private static final int OBJECT_OVERHEAD = 16;
+
+    private Weighers() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    /**
+     * 每个条目权重为 1，即按条目数量限制
+     */
+    public static final Weigher<Object> SINGLETON = new Weigher<Object>() {
+        @Override
+        public int weigh(Object value) {
+            return 1;
+        }
+    };
+
+    public static final Weigher<byte[]> BYTE_ARRAY = new Weigher<byte[]>() {
+        @Override
+        public int weigh(byte[] value) {
+            return OBJECT_OVERHEAD + value.length;
+        }
+    };
+
+    public static final Weigher<CharSequence> STRING = new Weigher<CharSequence>() {
+        @Override
+        public int weigh(CharSequence value) {
+            return OBJECT_OVERHEAD + (value.length() << 1);
+        }
+    };
+
+    public static final Weigher<Bitmap> BITMAP = new Weigher<Bitmap>() {
+        @Override
+        public int weigh(Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+
+    /**
+     * 集合按元素权重之和计算，元素使用 {@link #AUTO} 计算
+     */
+    public static final Weigher<Collection<?>> COLLECTION = new Weigher<Collection<?>>() {
+        @Override
+        public int weigh(Collection<?> value) {
+            long weight = OBJECT_OVERHEAD;
+            for (Object element : value) {
+                weight += OBJECT_OVERHEAD + AUTO.weigh(element);
+            }
+            return clamp(weight);
+        }
+    };
+
+    /**
+     * Map 按键值权重之和计算，键值使用 {@link #AUTO} 计算
+     */
+    public static final Weigher<Map<?, ?>> MAP = new Weigher<Map<?, ?>>() {
+        @Override
+        public int weigh(Map<?, ?> value) {
+            long weight = OBJECT_OVERHEAD;
+            for (Map.Entry<?, ?> entry : value.entrySet()) {
+                weight += OBJECT_OVERHEAD + AUTO.weigh(entry.getKey()) + AUTO.weigh(entry.getValue());
+            }
+            return clamp(weight);
+        }
+    };
+
+    /**
+     * 根据值的类型选择上面的 Weigher，其余类型按 {@link #OBJECT_OVERHEAD} 计算
+     */
+    public static final Weigher<Object> AUTO = new Weigher<Object>() {
+        @Override
+        public int weigh(Object value) {
+            if (value == null) return 0;
+            if (value instanceof byte[]) return BYTE_ARRAY.weigh((byte[]) value);
+            if (value instanceof CharSequence) return STRING.weigh((CharSequence) value);
+            if (value instanceof Bitmap) return BITMAP.weigh((Bitmap) value);
+            if (value instanceof Collection) return COLLECTION.weigh((Collection<?>) value);
+            if (value instanceof Map) return MAP.weigh((Map<?, ?>) value);
+            if (value instanceof int[]) return OBJECT_OVERHEAD + (((int[]) value).length << 2);
+            if (value instanceof long[]) return OBJECT_OVERHEAD + (((long[]) value).length << 3);
+            return OBJECT_OVERHEAD;
+        }
+    };
+
+    private static int clamp(long weight) {
+        return weight > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) weight;
+    }
+}
@@ -0,0 +1,245 @@
+package com.dale.utils.image;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 可复用的 Bitmap 池，按分配的字节数分桶，总字节数不超过预算，超出时淘汰最久未使用的
+ * <p>
+ * API 19 起 {@link BitmapFactory.Options#inBitmap} 只要求被复用的 Bitmap 可变、分配的字节数不小于解码结果，
+ * 不要求尺寸和 Config 相同，{@link Bitmap#reconfigure} 同理；minSdk 为 21，因此不处理 API 18 及以下
+ * 必须尺寸相同、inSampleSize 为 1 的规则。API 26 起的 {@link Bitmap.Config#HARDWARE} 不可复用。
+ * <p>
+ * 放入池中的 Bitmap 交由池管理，调用方不能再使用。
+ */
+public final class BitmapPool implements ComponentCallbacks2 {
+
+    /** 不复用比需要的大太多的 Bitmap，避免小图长期占用大块内存 */
+    private static final int MAX_SIZE_MULTIPLE = 8;
+
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> mBuckets = new TreeMap<>();
+    /** 从最久未使用到最近放入 */
+    private final LinkedHashSet<Bitmap> mOrder = new LinkedHashSet<>();
+    private long mMaxSize;
+    private long mSize;
+    private long mHitCount;
+    private long mMissCount;
+
+    public static BitmapPool getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private static final class SingletonHolder {
+        static final BitmapPool INSTANCE = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * @param maxSize 最多保留的字节数
+     */
+    public BitmapPool(long maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize < 0");
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * 放入池中，不能复用或超出预算时直接回收
+     *
+     * @return 是否放入了池中
+     */
+    public boolean put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return false;
+        int size = bitmap.getAllocationByteCount();
+        synchronized (this) {
+            if (mOrder.contains(bitmap)) return true;
+            if (isReusable(bitmap) && size <= mMaxSize) {
+                ArrayDeque<Bitmap> bucket = mBuckets.get(size);
+                if (bucket == null) {
+                    bucket = new ArrayDeque<>();
+                    mBuckets.put(size, bucket);
+                }
+                bucket.addLast(bitmap);
+                mOrder.add(bitmap);
+                mSize += size;
+                trimToSize(mMaxSize);
+                return true;
+            }
+        }
+        bitmap.recycle();
+        return false;
+    }
+
+    /**
+     * @return 像素已清空的 Bitmap，池中没有合适的时新建
+     */
+    @NonNull
+    public Bitmap get(int width, int height, @Nullable Bitmap.Config config) {
+        Bitmap bitmap = getDirty(width, height, config);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * 与 {@link #get(int, int, Bitmap.Config)} 相同，但不清空像素，用于会完整覆盖所有像素的场景
+     */
+    @NonNull
+    public Bitmap getDirty(int width, int height, @Nullable Bitmap.Config config) {
+        if (config == null) config = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = take(byteCount(width, height, config));
+        if (bitmap == null) return Bitmap.createBitmap(width, height, config);
+        bitmap.reconfigure(width, height, config);
+        return bitmap;
+    }
+
+    /**
+     * 在解码出尺寸后（{@link BitmapFactory.Options#inJustDecodeBounds} 之后）、正式解码前调用，
+     * 设置 {@link BitmapFactory.Options#inMutable}，池中有足够大的 Bitmap 时设置为 {@link BitmapFactory.Options#inBitmap}
+     * <p>
+     * 解码抛出 {@link IllegalArgumentException} 时调用 {@link #onDecodeFailed(BitmapFactory.Options)} 归还后不复用重试。
+     */
+    public void prepare(@NonNull BitmapFactory.Options options) {
+        options.inMutable = true;
+        options.inBitmap = null;
+        if (options.outWidth <= 0 || options.outHeight <= 0) return;
+        Bitmap.Config config = options.inPreferredConfig == null ? Bitmap.Config.ARGB_8888 : options.inPreferredConfig;
+        if (isHardware(config)) return;
+        int sampleSize = Math.max(1, options.inSampleSize);
+        // 不同格式对除不尽的尺寸取整方式不同，按向上取整估算
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+        if (options.inScaled && options.inDensity > 0 && options.inTargetDensity > 0) {
+            // 解码器按 inTargetDensity / inDensity 缩放，四舍五入
+            float scale = (float) options.inTargetDensity / options.inDensity;
+            width = (int) (width * scale + 0.5f);
+            height = (int) (height * scale + 0.5f);
+        }
+        options.inBitmap = take(byteCount(width, height, config));
+    }
+
+    /**
+     * 复用 {@link BitmapFactory.Options#inBitmap} 解码失败时调用，归还并清除 inBitmap
+     */
+    public void onDecodeFailed(@NonNull BitmapFactory.Options options) {
+        Bitmap inBitmap = options.inBitmap;
+        options.inBitmap = null;
+        if (inBitmap != null) put(inBitmap);
+    }
+
+    /**
+     * 淘汰最久未使用的 Bitmap，直到总字节数不超过 size
+     */
+    public synchronized void trimToSize(long size) {
+        Iterator<Bitmap> iterator = mOrder.iterator();
+        while (mSize > size && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            removeFromBucket(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 修改预算，超出时立即淘汰
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize < 0");
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return 池中所有 Bitmap 分配的字节数之和
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public void clear() {
+        trimToSize(0);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(getMaxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    @Nullable
+    private synchronized Bitmap take(int size) {
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = mBuckets.ceilingEntry(size);
+        if (entry == null || entry.getKey() > (long) size * MAX_SIZE_MULTIPLE) {
+            mMissCount++;
+            return null;
+        }
+        Bitmap bitmap = entry.getValue().pollLast();
+        if (entry.getValue().isEmpty()) mBuckets.remove(entry.getKey());
+        mOrder.remove(bitmap);
+        mSize -= entry.getKey();
+        mHitCount++;
+        return bitmap;
+    }
+
+    private void removeFromBucket(Bitmap bitmap) {
+        int size = bitmap.getAllocationByteCount();
+        ArrayDeque<Bitmap> bucket = mBuckets.get(size);
+        if (bucket == null) return;
+        bucket.remove(bitmap);
+        if (bucket.isEmpty()) mBuckets.remove(size);
+        mSize -= size;
+    }
+
+    private static boolean isReusable(Bitmap bitmap) {
+        return bitmap.isMutable() && !isHardware(bitmap.getConfig());
+    }
+
+    private static boolean isHardware(Bitmap.Config config) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE;
+    }
+
+    private static int byteCount(int width, int height, Bitmap.Config config) {
+        return width * height * bytesPerPixel(config);
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.RGBA_F16) return 8;
+        return 4;
+    }
+}
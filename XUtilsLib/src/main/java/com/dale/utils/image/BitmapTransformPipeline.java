@@ -0,0 +1,244 @@
+package com.dale.utils.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.FloatRange;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 合并多个位图变换，一次分配、一次绘制完成
+ * <p>
+ * 依次调用 {@link com.dale.utils.ImageUtils#scale}、{@link com.dale.utils.ImageUtils#rotate}、
+ * {@link com.dale.utils.ImageUtils#toRoundCorner}、{@link com.dale.utils.ImageUtils#addCornerBorder}
+ * 时每一步都会生成一张完整的中间位图。这里把缩放和旋转按调用顺序合并成一个 {@link Matrix}，
+ * 圆角、圆形裁剪通过 {@link BitmapShader} 在同一次绘制中完成，边框画在同一张输出位图上，输出位图从 {@link BitmapPool} 取得。
+ * <p>
+ * 圆角、圆形和边框与链式调用时一样作用在最终输出上，与调用顺序无关。创建后不可变，可在多个线程中复用：
+ * <pre>
+ * BitmapTransformPipeline pipeline = BitmapTransformPipeline.newBuilder()
+ *         .scale(200, 200)
+ *         .rotate(90)
+ *         .roundCorner(16)
+ *         .border(2, Color.WHITE)
+ *         .build();
+ * Bitmap avatar = pipeline.apply(src, true);
+ * </pre>
+ */
+public final class BitmapTransformPipeline {
+
+    private static final int SHAPE_NONE = 0;
+    private static final int SHAPE_ROUND_CORNER = 1;
+    private static final int SHAPE_CIRCLE = 2;
+
+    private final Step[] mSteps;
+    private final int mShape;
+    private final float mCornerRadius;
+    private final int mBorderSize;
+    private final int mBorderColor;
+
+    private BitmapTransformPipeline(Builder builder) {
+        mSteps = builder.mSteps.toArray(new Step[0]);
+        mShape = builder.mShape;
+        mCornerRadius = builder.mCornerRadius;
+        mBorderSize = builder.mBorderSize;
+        mBorderColor = builder.mBorderColor;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @param src 位图的源
+     * @return 变换后的位图，没有任何变换时返回 src
+     */
+    @NonNull
+    public Bitmap apply(@NonNull Bitmap src) {
+        return apply(src, false);
+    }
+
+    /**
+     * @param src     位图的源
+     * @param recycle 如果为true，则把位图的源放回 {@link BitmapPool}
+     * @return 变换后的位图，没有任何变换时返回 src
+     */
+    @NonNull
+    public Bitmap apply(@NonNull Bitmap src, boolean recycle) {
+        if (mSteps.length == 0 && mShape == SHAPE_NONE && mBorderSize <= 0) return src;
+
+        RectF srcRect = new RectF(0, 0, src.getWidth(), src.getHeight());
+        RectF bounds = new RectF(srcRect);
+        Matrix matrix = new Matrix();
+        for (Step step : mSteps) {
+            step.apply(matrix, bounds);
+            matrix.mapRect(bounds, srcRect);
+        }
+        // 与 Bitmap.createBitmap(src, x, y, w, h, matrix, filter) 相同，平移到变换后区域的左上角
+        matrix.postTranslate(-bounds.left, -bounds.top);
+        int width = Math.round(bounds.width());
+        int height = Math.round(bounds.height());
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("transformed size must be > 0: " + width + "x" + height);
+        }
+
+        // 旋转后的空白和裁剪掉的角需要透明
+        boolean needsAlpha = mShape != SHAPE_NONE || !matrix.rectStaysRect();
+        Bitmap.Config config = src.getConfig();
+        if (config == null || (needsAlpha && config == Bitmap.Config.RGB_565)) config = Bitmap.Config.ARGB_8888;
+        Bitmap ret = BitmapPool.getInstance().get(width, height, config);
+        Canvas canvas = new Canvas(ret);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+
+        RectF rect = new RectF(0, 0, width, height);
+        float halfBorderSize = mBorderSize / 2f;
+        if (mShape == SHAPE_NONE) {
+            canvas.drawBitmap(src, matrix, paint);
+        } else {
+            BitmapShader shader = new BitmapShader(src, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            shader.setLocalMatrix(matrix);
+            paint.setShader(shader);
+            Path path = new Path();
+            if (mShape == SHAPE_CIRCLE) {
+                path.addCircle(width / 2f, height / 2f, Math.min(width, height) / 2f, Path.Direction.CW);
+            } else {
+                rect.inset(halfBorderSize, halfBorderSize);
+                path.addRoundRect(rect, mCornerRadius, mCornerRadius, Path.Direction.CW);
+            }
+            if (!matrix.rectStaysRect()) {
+                // CLAMP 会把边缘像素延伸到旋转后的空白处，只绘制原图覆盖的区域
+                Path image = new Path();
+                image.addRect(srcRect, Path.Direction.CW);
+                image.transform(matrix);
+                path.op(image, Path.Op.INTERSECT);
+            }
+            canvas.drawPath(path, paint);
+        }
+
+        if (mBorderSize > 0) {
+            paint.setShader(null);
+            paint.setColor(mBorderColor);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(mBorderSize);
+            if (mShape == SHAPE_CIRCLE) {
+                float radius = Math.min(width, height) / 2f - halfBorderSize;
+                canvas.drawCircle(width / 2f, height / 2f, radius, paint);
+            } else {
+                if (mShape == SHAPE_NONE) rect.inset(halfBorderSize, halfBorderSize);
+                canvas.drawRoundRect(rect, mCornerRadius, mCornerRadius, paint);
+            }
+        }
+        if (recycle && !src.isRecycled() && ret != src) BitmapPool.getInstance().put(src);
+        return ret;
+    }
+
+    /**
+     * 一个几何变换
+     */
+    private abstract static class Step {
+        /**
+         * @param matrix 原图到当前结果的变换，在后面追加
+         * @param bounds 当前结果在变换后坐标中的区域
+         */
+        abstract void apply(Matrix matrix, RectF bounds);
+    }
+
+    public static final class Builder {
+        private final List<Step> mSteps = new ArrayList<>();
+        private int mShape = SHAPE_NONE;
+        private float mCornerRadius;
+        private int mBorderSize;
+        private int mBorderColor;
+
+        private Builder() {
+        }
+
+        /**
+         * 缩放到指定的宽高，见 {@link com.dale.utils.ImageUtils#scale(Bitmap, int, int)}
+         */
+        public Builder scale(@IntRange(from = 1) final int newWidth, @IntRange(from = 1) final int newHeight) {
+            if (newWidth <= 0 || newHeight <= 0) throw new IllegalArgumentException("size must be > 0");
+            mSteps.add(new Step() {
+                @Override
+                void apply(Matrix matrix, RectF bounds) {
+                    matrix.postScale(newWidth / bounds.width(), newHeight / bounds.height());
+                }
+            });
+            return this;
+        }
+
+        /**
+         * 按比例缩放，见 {@link com.dale.utils.ImageUtils#scale(Bitmap, float, float)}
+         */
+        public Builder scale(final float scaleWidth, final float scaleHeight) {
+            mSteps.add(new Step() {
+                @Override
+                void apply(Matrix matrix, RectF bounds) {
+                    matrix.postScale(scaleWidth, scaleHeight);
+                }
+            });
+            return this;
+        }
+
+        /**
+         * 旋转，输出的大小为旋转后的外接矩形，见 {@link com.dale.utils.ImageUtils#rotate(Bitmap, int, float, float)}
+         */
+        public Builder rotate(final int degrees) {
+            if (degrees % 360 == 0) return this;
+            mSteps.add(new Step() {
+                @Override
+                void apply(Matrix matrix, RectF bounds) {
+                    matrix.postRotate(degrees, bounds.centerX(), bounds.centerY());
+                }
+            });
+            return this;
+        }
+
+        /**
+         * 圆角，见 {@link com.dale.utils.ImageUtils#toRoundCorner(Bitmap, float)}
+         */
+        public Builder roundCorner(@FloatRange(from = 0) float radius) {
+            mShape = SHAPE_ROUND_CORNER;
+            mCornerRadius = radius;
+            return this;
+        }
+
+        /**
+         * 居中裁剪为圆形，直径为宽高中较小的一边，超出的部分被裁掉、不会变形；
+         * 与 {@link com.dale.utils.ImageUtils#toRound(Bitmap)} 不同，后者把整张图片压缩进圆形，非正方形的图片会变形
+         */
+        public Builder circle() {
+            mShape = SHAPE_CIRCLE;
+            mCornerRadius = 0;
+            return this;
+        }
+
+        /**
+         * 沿输出的形状绘制边框，见 {@link com.dale.utils.ImageUtils#addCornerBorder(Bitmap, int, int, float)}
+         *
+         * @param borderSize  边框的大小
+         * @param borderColor 边框的颜色
+         */
+        public Builder border(@IntRange(from = 0) int borderSize, @ColorInt int borderColor) {
+            if (borderSize < 0) throw new IllegalArgumentException("borderSize < 0");
+            mBorderSize = borderSize;
+            mBorderColor = borderColor;
+            return this;
+        }
+
+        public BitmapTransformPipeline build() {
+            return new BitmapTransformPipeline(this);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.dale.utils.image;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 解码用的 byte[] 池，按长度分桶，总字节数不超过预算，超出时不再放入
+ */
+public final class ByteArrayPool {
+
+    /** 不复用比需要的大太多的数组 */
+    private static final int MAX_SIZE_MULTIPLE = 8;
+
+    private final TreeMap<Integer, ArrayDeque<byte[]>> mBuckets = new TreeMap<>();
+    private final long mMaxSize;
+    private long mSize;
+
+    public static ByteArrayPool getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private static final class SingletonHolder {
+        static final ByteArrayPool INSTANCE = new ByteArrayPool(4 << 20);
+    }
+
+    /**
+     * @param maxSize 最多保留的字节数
+     */
+    public ByteArrayPool(long maxSize) {
+        if (maxSize < 0) throw new IllegalArgumentException("maxSize < 0");
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @return 长度不小于 minLength 的数组，内容未清空
+     */
+    @NonNull
+    public byte[] get(int minLength) {
+        synchronized (this) {
+            Map.Entry<Integer, ArrayDeque<byte[]>> entry = mBuckets.ceilingEntry(minLength);
+            if (entry != null && entry.getKey() <= (long) minLength * MAX_SIZE_MULTIPLE) {
+                byte[] array = entry.getValue().pollLast();
+                if (entry.getValue().isEmpty()) mBuckets.remove(entry.getKey());
+                mSize -= array.length;
+                return array;
+            }
+        }
+        return new byte[minLength];
+    }
+
+    /**
+     * 归还数组，之后不能再使用
+     */
+    public synchronized void put(@Nullable byte[] array) {
+        if (array == null || array.length == 0 || mSize + array.length > mMaxSize) return;
+        ArrayDeque<byte[]> bucket = mBuckets.get(array.length);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            mBuckets.put(array.length, bucket);
+        }
+        bucket.addLast(array);
+        mSize += array.length;
+    }
+
+    /**
+     * @return 池中数组的字节数之和
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    public synchronized void clear() {
+        mBuckets.clear();
+        mSize = 0;
+    }
+}
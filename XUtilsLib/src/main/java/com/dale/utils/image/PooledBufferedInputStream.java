@@ -0,0 +1,162 @@
+package com.dale.utils.image;
+
+import androidx.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 支持 mark/reset 的缓冲流，缓冲区从 {@link ByteArrayPool} 取得，关闭时归还
+ * <p>
+ * 与 {@link java.io.BufferedInputStream} 相同，缓冲区只在 mark 之后按需扩大，不超过 markLimit；
+ * 没有 mark 时缓冲区大小不变，循环使用。用于先解码尺寸再 reset 正式解码，不需要把整个流读入内存。
+ */
+public final class PooledBufferedInputStream extends FilterInputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 << 10;
+
+    private final ByteArrayPool mPool;
+    private byte[] mBuf;
+    /** 缓冲区中有效数据的长度 */
+    private int mCount;
+    private int mPos;
+    private int mMarkPos = -1;
+    private int mMarkLimit;
+
+    public PooledBufferedInputStream(@NonNull InputStream in, @NonNull ByteArrayPool pool) {
+        super(in);
+        mPool = pool;
+        mBuf = pool.get(DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        checkOpen();
+        if (mPos >= mCount && fill() <= 0) return -1;
+        return mBuf[mPos++] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(@NonNull byte[] b, int off, int len) throws IOException {
+        checkOpen();
+        if (len == 0) return 0;
+        int available = mCount - mPos;
+        if (available <= 0) {
+            // 没有 mark 且请求的长度不小于缓冲区时直接读取，不经过缓冲区
+            if (mMarkPos < 0 && len >= mBuf.length) return in.read(b, off, len);
+            if (fill() <= 0) return -1;
+            available = mCount - mPos;
+        }
+        int n = Math.min(available, len);
+        System.arraycopy(mBuf, mPos, b, off, n);
+        mPos += n;
+        return n;
+    }
+
+    @Override
+    public synchronized long skip(long n) throws IOException {
+        checkOpen();
+        if (n <= 0) return 0;
+        int available = mCount - mPos;
+        if (available <= 0) {
+            if (mMarkPos < 0) return in.skip(n);
+            // 有 mark 时跳过的数据也要读入缓冲区，以便 reset
+            if (fill() <= 0) return 0;
+            available = mCount - mPos;
+        }
+        int skipped = (int) Math.min(available, n);
+        mPos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        checkOpen();
+        return (mCount - mPos) + in.available();
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mMarkLimit = readLimit;
+        mMarkPos = mPos;
+    }
+
+    /**
+     * 把 markLimit 限制为当前缓冲区的大小，之后缓冲区不再扩大；reset 只能回到缓冲区内已有的数据
+     */
+    public synchronized void fixMarkLimit() {
+        mMarkLimit = mBuf.length;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        checkOpen();
+        if (mMarkPos < 0) throw new IOException("mark has been invalidated, markLimit: " + mMarkLimit);
+        mPos = mMarkPos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        byte[] buf;
+        synchronized (this) {
+            buf = mBuf;
+            mBuf = null;
+        }
+        if (buf != null) mPool.put(buf);
+        in.close();
+    }
+
+    /**
+     * 读取更多数据到缓冲区，必要时移动或扩大缓冲区
+     *
+     * @return 读取的字节数，流结束时返回 -1
+     */
+    private int fill() throws IOException {
+        checkOpen();
+        if (mMarkPos < 0 || mPos - mMarkPos >= mMarkLimit) {
+            // 没有 mark 或超出了 markLimit，丢弃缓冲区中的数据
+            mMarkPos = -1;
+            mPos = 0;
+            mCount = 0;
+        } else if (mCount == mBuf.length) {
+            if (mMarkPos > 0) {
+                System.arraycopy(mBuf, mMarkPos, mBuf, 0, mCount - mMarkPos);
+            } else {
+                int newLength = (int) Math.min(Math.max((long) mBuf.length * 2, 1), Math.max(mMarkLimit, mBuf.length));
+                if (newLength == mBuf.length) {
+                    // 缓冲区已达到 markLimit，mark 失效
+                    mMarkPos = -1;
+                    mPos = 0;
+                    mCount = 0;
+                    return readIntoBuffer();
+                }
+                byte[] newBuf = mPool.get(newLength);
+                System.arraycopy(mBuf, 0, newBuf, 0, mCount);
+                mPool.put(mBuf);
+                mBuf = newBuf;
+            }
+            if (mMarkPos > 0) {
+                mPos -= mMarkPos;
+                mCount -= mMarkPos;
+                mMarkPos = 0;
+            }
+        }
+        return readIntoBuffer();
+    }
+
+    private int readIntoBuffer() throws IOException {
+        int n = in.read(mBuf, mCount, mBuf.length - mCount);
+        if (n > 0) mCount += n;
+        return n;
+    }
+
+    private void checkOpen() throws IOException {
+        if (mBuf == null) throw new IOException("stream is closed");
+    }
+}
@@ -0,0 +1,191 @@
+package com.dale.utils.image;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已解码分块的 LRU 缓存，按 (来源, 采样率, 列, 行) 区分，按字节数计算容量
+ * <p>
+ * 被淘汰的分块可能正在被绘制，在主线程放回 {@link BitmapPool}，之后的绘制已不会再取到它。
+ * 同一来源可能同时被多个 {@link TileLoader} 显示，按来源计数，最后一个使用者释放时才删除该来源的分块。
+ */
+public final class TileCache implements ComponentCallbacks2 {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private final LruCache<Key, Bitmap> mCache;
+    /** 各来源的使用者数量，由自身的锁保护 */
+    private final Map<String, Integer> mSourceRefs = new HashMap<>();
+
+    public static TileCache getInstance() {
+        return SingletonHolder.INSTANCE;
+    }
+
+    private static final class SingletonHolder {
+        static final TileCache INSTANCE = new TileCache((int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8));
+    }
+
+    /**
+     * @param maxSize 最多缓存的字节数
+     */
+    public TileCache(int maxSize) {
+        mCache = new LruCache<Key, Bitmap>(maxSize) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, final Bitmap oldValue, Bitmap newValue) {
+                if (oldValue == newValue) return;
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        BitmapPool.getInstance().put(oldValue);
+                    }
+                });
+            }
+        };
+    }
+
+    @Nullable
+    public Bitmap get(@NonNull Key key) {
+        return mCache.get(key);
+    }
+
+    public void put(@NonNull Key key, @NonNull Bitmap tile) {
+        mCache.put(key, tile);
+    }
+
+    public void remove(@NonNull Key key) {
+        mCache.remove(key);
+    }
+
+    /**
+     * 开始显示一个来源，与 {@link #releaseSource(String)} 成对调用
+     */
+    public void acquireSource(@NonNull String source) {
+        synchronized (mSourceRefs) {
+            Integer count = mSourceRefs.get(source);
+            mSourceRefs.put(source, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * 不再显示一个来源，最后一个使用者释放时删除该来源的所有分块
+     */
+    public void releaseSource(@NonNull String source) {
+        synchronized (mSourceRefs) {
+            Integer count = mSourceRefs.get(source);
+            if (count == null) return;
+            if (count > 1) {
+                mSourceRefs.put(source, count - 1);
+                return;
+            }
+            mSourceRefs.remove(source);
+            removeSource(source);
+        }
+    }
+
+    /**
+     * 来源已没有使用者时删除该分块，用于释放之后才解码完成的分块
+     */
+    public void removeIfUnused(@NonNull Key key) {
+        synchronized (mSourceRefs) {
+            if (!mSourceRefs.containsKey(key.source)) mCache.remove(key);
+        }
+    }
+
+    /**
+     * 删除一个来源的所有分块，不论是否仍有使用者，如图片文件已被替换
+     */
+    public void removeSource(@NonNull String source) {
+        List<Key> keys = new ArrayList<>();
+        for (Key key : mCache.snapshot().keySet()) {
+            if (key.source.equals(source)) keys.add(key);
+        }
+        for (Key key : keys) {
+            mCache.remove(key);
+        }
+    }
+
+    /**
+     * @return 所有分块的字节数之和
+     */
+    public int getSize() {
+        return mCache.size();
+    }
+
+    public void clear() {
+        mCache.evictAll();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            mCache.trimToSize(mCache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    /**
+     * 分块的键
+     */
+    public static final class Key {
+        public final String source;
+        public final int sampleSize;
+        public final int column;
+        public final int row;
+
+        public Key(@NonNull String source, int sampleSize, int column, int row) {
+            this.source = source;
+            this.sampleSize = sampleSize;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return sampleSize == key.sampleSize && column == key.column && row == key.row && source.equals(key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = source.hashCode();
+            result = 31 * result + sampleSize;
+            result = 31 * result + column;
+            result = 31 * result + row;
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return source + "@" + sampleSize + "[" + column + "," + row + "]";
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.dale.utils.image;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大图查看器的分块加载：按可见区域和显示比例计算需要的分块，只解码缺少的分块
+ * <p>
+ * 分块在共用的有界线程池中解码，结果放入 {@link TileCache}；移出可见区域的分块如果还没开始解码则取消。
+ * 除解码外的方法都在主线程调用。用法：
+ * <pre>
+ * // 滚动或缩放时
+ * List&lt;TileLoader.Tile&gt; tiles = loader.update(visibleRect, scale);
+ * // 先绘制 loader.decodePreview 得到的预览，再绘制 bitmap 不为空的分块，分块加载完成时回调 onTileLoaded 中 invalidate
+ * </pre>
+ */
+public final class TileLoader {
+
+    /** 分块解码后的边长（像素） */
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static volatile ExecutorService sExecutor;
+
+    private final TiledImageDecoder mDecoder;
+    private final int mTileSize;
+    private final Bitmap.Config mConfig;
+    private final Callback mCallback;
+    private final TileCache mCache;
+    private final Map<TileCache.Key, DecodeTask> mPending = new HashMap<>();
+    private volatile boolean mClosed;
+
+    public TileLoader(@NonNull TiledImageDecoder decoder, @Nullable Callback callback) {
+        this(decoder, DEFAULT_TILE_SIZE, Bitmap.Config.ARGB_8888, callback);
+    }
+
+    /**
+     * @param tileSize 分块解码后的边长（像素）
+     * @param config   分块的 Config，不透明的图片可用 RGB_565 减少一半内存
+     * @param callback 分块加载完成的回调，在主线程执行
+     */
+    public TileLoader(@NonNull TiledImageDecoder decoder, int tileSize,
+                      @Nullable Bitmap.Config config, @Nullable Callback callback) {
+        if (tileSize <= 0) throw new IllegalArgumentException("tileSize <= 0");
+        mDecoder = decoder;
+        mTileSize = tileSize;
+        mConfig = config;
+        mCallback = callback;
+        mCache = TileCache.getInstance();
+        mCache.acquireSource(decoder.getSourceKey());
+    }
+
+    /**
+     * 更新可见区域，取消不再可见的分块，开始解码缺少的分块
+     *
+     * @param visible 原图坐标中的可见区域
+     * @param scale   显示尺寸与原图尺寸的比例
+     * @return 覆盖可见区域的分块，尚未解码的 {@link Tile#bitmap} 为 {@code null}
+     */
+    @MainThread
+    @NonNull
+    public List<Tile> update(@NonNull Rect visible, float scale) {
+        List<Tile> tiles = new ArrayList<>();
+        if (mClosed) return tiles;
+        Rect area = new Rect(visible);
+        if (!area.intersect(0, 0, mDecoder.getWidth(), mDecoder.getHeight())) {
+            cancelExcept(new HashSet<TileCache.Key>());
+            return tiles;
+        }
+        int sampleSize = TiledImageDecoder.sampleSizeFor(scale);
+        int step = mTileSize * sampleSize;
+        Set<TileCache.Key> visibleKeys = new HashSet<>();
+        for (int row = area.top / step; row <= (area.bottom - 1) / step; row++) {
+            for (int column = area.left / step; column <= (area.right - 1) / step; column++) {
+                TileCache.Key key = new TileCache.Key(mDecoder.getSourceKey(), sampleSize, column, row);
+                Rect rect = new Rect(column * step, row * step,
+                        Math.min((column + 1) * step, mDecoder.getWidth()),
+                        Math.min((row + 1) * step, mDecoder.getHeight()));
+                Bitmap bitmap = mCache.get(key);
+                if (bitmap == null && !mPending.containsKey(key)) submit(key, rect);
+                visibleKeys.add(key);
+                tiles.add(new Tile(key, rect, bitmap));
+            }
+        }
+        cancelExcept(visibleKeys);
+        return tiles;
+    }
+
+    /**
+     * 以分块相同的 Config 解码整张图片的预览，不要在主线程调用
+     *
+     * @see TiledImageDecoder#decodePreview(int, int, Bitmap.Config)
+     */
+    @Nullable
+    public Bitmap decodePreview(int maxWidth, int maxHeight) {
+        return mDecoder.decodePreview(maxWidth, maxHeight, mConfig);
+    }
+
+    /**
+     * 取消所有解码并关闭解码器；没有其他 TileLoader 显示同一来源时删除缓存的分块
+     */
+    @MainThread
+    public void close() {
+        if (mClosed) return;
+        mClosed = true;
+        cancelExcept(new HashSet<TileCache.Key>());
+        mCache.releaseSource(mDecoder.getSourceKey());
+        // recycle 会等待进行中的解码完成，放到解码线程执行，不阻塞主线程
+        executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                mDecoder.close();
+            }
+        });
+    }
+
+    private void submit(TileCache.Key key, Rect rect) {
+        DecodeTask task = new DecodeTask(key, rect);
+        mPending.put(key, task);
+        task.mFuture = executor().submit(task);
+    }
+
+    private void cancelExcept(Set<TileCache.Key> keep) {
+        Iterator<Map.Entry<TileCache.Key, DecodeTask>> iterator = mPending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<TileCache.Key, DecodeTask> entry = iterator.next();
+            if (keep.contains(entry.getKey())) continue;
+            // 只取消尚未开始的解码，已开始的解码完成后仍放入缓存
+            entry.getValue().mFuture.cancel(false);
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 分块解码的线程池，线程数不超过 2，{@link android.graphics.BitmapRegionDecoder} 内部串行，更多线程没有意义
+     */
+    private static ExecutorService executor() {
+        ExecutorService executor = sExecutor;
+        if (executor == null) {
+            synchronized (TileLoader.class) {
+                executor = sExecutor;
+                if (executor == null) {
+                    int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger mIndex = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "tile-decoder-" + mIndex.incrementAndGet());
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.NORM_PRIORITY - 1);
+                            return thread;
+                        }
+                    });
+                    pool.allowCoreThreadTimeOut(true);
+                    sExecutor = executor = pool;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private final class DecodeTask implements Runnable {
+        final TileCache.Key mKey;
+        final Rect mRect;
+        Future<?> mFuture;
+
+        DecodeTask(TileCache.Key key, Rect rect) {
+            mKey = key;
+            mRect = rect;
+        }
+
+        @Override
+        public void run() {
+            if (mClosed) return;
+            final Bitmap bitmap = mDecoder.decodeRegion(mRect, mKey.sampleSize, mConfig);
+            final boolean cached = bitmap != null && !mClosed;
+            if (cached) mCache.put(mKey, bitmap);
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mPending.get(mKey) == DecodeTask.this) mPending.remove(mKey);
+                    if (bitmap == null) return;
+                    if (mClosed) {
+                        // 解码期间被关闭，放入缓存的由缓存归还；同一来源仍在显示时留给其他 TileLoader
+                        if (cached) {
+                            mCache.removeIfUnused(mKey);
+                        } else {
+                            BitmapPool.getInstance().put(bitmap);
+                        }
+                    } else if (mCallback != null) {
+                        mCallback.onTileLoaded(mKey);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * 一个分块
+     */
+    public static final class Tile {
+        public final TileCache.Key key;
+        /** 原图坐标中的区域 */
+        public final Rect rect;
+        /** 解码后的位图，宽高为 rect 的 1/sampleSize，尚未解码时为 {@code null} */
+        @Nullable
+        public final Bitmap bitmap;
+
+        Tile(TileCache.Key key, Rect rect, @Nullable Bitmap bitmap) {
+            this.key = key;
+            this.rect = rect;
+            this.bitmap = bitmap;
+        }
+    }
+
+    /**
+     * 分块加载完成的回调
+     */
+    public interface Callback {
+        /**
+         * 在主线程回调，通常在这里 invalidate 后重新调用 {@link #update(Rect, float)}
+         */
+        void onTileLoaded(@NonNull TileCache.Key key);
+    }
+}
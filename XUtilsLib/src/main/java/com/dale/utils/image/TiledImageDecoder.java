@@ -0,0 +1,157 @@
+package com.dale.utils.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基于 {@link BitmapRegionDecoder} 的大图区域解码，只解码需要的区域，用于扫描件、长截图等整图解码会 OOM 的图片
+ * <p>
+ * 区域解码的输出从 {@link BitmapPool} 取得。{@link BitmapRegionDecoder} 内部串行解码，
+ * 多个线程同时调用会依次执行。配合 {@link TileLoader} 按可见区域分块加载。
+ */
+public final class TiledImageDecoder implements Closeable {
+
+    private final String mSourceKey;
+    private final BitmapRegionDecoder mDecoder;
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * @param path 图片文件路径，同时作为 {@link TileCache} 中的来源
+     */
+    @NonNull
+    public static TiledImageDecoder open(@NonNull String path) throws IOException {
+        return new TiledImageDecoder(path, BitmapRegionDecoder.newInstance(path, false));
+    }
+
+    /**
+     * @param sourceKey {@link TileCache} 中区分图片来源的键，如 url
+     * @param is        图片的流，读取完后由调用方关闭
+     */
+    @NonNull
+    public static TiledImageDecoder open(@NonNull String sourceKey, @NonNull InputStream is) throws IOException {
+        return new TiledImageDecoder(sourceKey, BitmapRegionDecoder.newInstance(is, false));
+    }
+
+    private TiledImageDecoder(String sourceKey, BitmapRegionDecoder decoder) throws IOException {
+        if (decoder == null) throw new IOException("unsupported image: " + sourceKey);
+        mSourceKey = sourceKey;
+        mDecoder = decoder;
+        mWidth = decoder.getWidth();
+        mHeight = decoder.getHeight();
+    }
+
+    @NonNull
+    public String getSourceKey() {
+        return mSourceKey;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 解码原图中的一块区域
+     *
+     * @param region     原图坐标中的区域
+     * @param sampleSize 2 的幂，输出的宽高为区域的 1/sampleSize
+     * @param config     输出的 Config，为 {@code null} 时使用 ARGB_8888
+     * @return 区域的位图，解码失败或已关闭时返回 {@code null}
+     */
+    @Nullable
+    public Bitmap decodeRegion(@NonNull Rect region, int sampleSize, @Nullable Bitmap.Config config) {
+        if (config == null) config = Bitmap.Config.ARGB_8888;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = config;
+        options.inMutable = true;
+        // 区域解码不会改变 inBitmap 的尺寸，需要与输出的尺寸完全相同；与 Skia 一致向下取整。
+        // 解码会覆盖所有像素，不需要先清空
+        BitmapPool pool = BitmapPool.getInstance();
+        options.inBitmap = pool.getDirty(Math.max(1, region.width() / sampleSize),
+                Math.max(1, region.height() / sampleSize), config);
+        Bitmap ret;
+        try {
+            ret = mDecoder.decodeRegion(region, options);
+        } catch (IllegalArgumentException e) {
+            pool.onDecodeFailed(options);
+            ret = decodeRegionSafely(region, options);
+        } catch (IllegalStateException e) {
+            // 已关闭
+            pool.onDecodeFailed(options);
+            return null;
+        }
+        if (ret == null) pool.onDecodeFailed(options);
+        return ret;
+    }
+
+    private Bitmap decodeRegionSafely(Rect region, BitmapFactory.Options options) {
+        try {
+            return mDecoder.decodeRegion(region, options);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 以 ARGB_8888 解码预览，见 {@link #decodePreview(int, int, Bitmap.Config)}
+     */
+    @Nullable
+    public Bitmap decodePreview(int maxWidth, int maxHeight) {
+        return decodePreview(maxWidth, maxHeight, null);
+    }
+
+    /**
+     * 以较大的采样率解码整张图片，作为分块加载完成前的预览
+     *
+     * @param maxWidth  最大宽度
+     * @param maxHeight 最大高度
+     * @param config    输出的 Config，为 {@code null} 时使用 ARGB_8888；RGB_565 没有透明通道，只用于不透明的图片
+     */
+    @Nullable
+    public Bitmap decodePreview(int maxWidth, int maxHeight, @Nullable Bitmap.Config config) {
+        int sampleSize = 1;
+        while (mWidth / sampleSize > maxWidth || mHeight / sampleSize > maxHeight) {
+            sampleSize <<= 1;
+        }
+        return decodeRegion(new Rect(0, 0, mWidth, mHeight), sampleSize, config);
+    }
+
+    /**
+     * @param scale 显示尺寸与原图尺寸的比例
+     * @return 不超过 1/scale 的最大的 2 的幂，解码的分辨率不低于显示需要的
+     */
+    public static int sampleSizeFor(float scale) {
+        int sampleSize = 1;
+        if (scale <= 0) return sampleSize;
+        while (sampleSize * 2 * scale <= 1f) {
+            sampleSize <<= 1;
+        }
+        return sampleSize;
+    }
+
+    public boolean isClosed() {
+        return mDecoder.isRecycled();
+    }
+
+    /**
+     * 释放解码器，进行中的解码会先完成
+     */
+    @Override
+    public void close() {
+        mDecoder.recycle();
+    }
+}
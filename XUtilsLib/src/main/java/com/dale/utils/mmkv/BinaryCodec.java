@@ -0,0 +1,31 @@
+package com.dale.utils.mmkv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Type;
+
+/**
+ * {@link com.dale.utils.MMKVUtil#putBinaryObject(String, Object)} 与
+ * {@link com.dale.utils.MMKVUtil#getBinaryObject(String, Type)} 使用的二进制编解码，默认为 {@link TlvCodec}
+ * <p>
+ * 实现需要线程安全。
+ */
+public interface BinaryCodec {
+
+    /**
+     * @param value 要保存的对象
+     * @return 写入 MMKV 的字节
+     */
+    @NonNull
+    byte[] encode(@NonNull Object value);
+
+    /**
+     * @param data 从 MMKV 读出的字节
+     * @param type 对象类型
+     * @param <T>  对象类型
+     * @return 解码后的对象
+     */
+    @Nullable
+    <T> T decode(@NonNull byte[] data, @NonNull Type type);
+}
@@ -0,0 +1,119 @@
+package com.dale.utils.mmkv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+
+/**
+ * 基于 Gson 的 {@link ObjectCodec}，所有调用共用一个 {@link Gson}
+ * <p>
+ * Gson 第一次遇到某个类型时要反射生成 TypeAdapter，之后从内部缓存获取；每次 {@code new Gson()}
+ * 都会丢掉这份缓存。热点类型可以在初始化时通过 {@link #warmUp(Type...)} 提前生成。
+ */
+public final class GsonCodec implements ObjectCodec {
+
+    private final Gson mGson;
+
+    public GsonCodec() {
+        this(new Gson());
+    }
+
+    public GsonCodec(@NonNull Gson gson) {
+        mGson = gson;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @NonNull
+    public Gson getGson() {
+        return mGson;
+    }
+
+    /**
+     * 提前生成类型的 TypeAdapter，可放在后台线程执行
+     *
+     * @param types 热点类型
+     */
+    public void warmUp(@NonNull Type... types) {
+        for (Type type : types) {
+            mGson.getAdapter(TypeToken.get(type));
+        }
+    }
+
+    @NonNull
+    @Override
+    public String encode(@NonNull Object value) {
+        return mGson.toJson(value);
+    }
+
+    @Nullable
+    @Override
+    public <T> T decode(@NonNull String data, @NonNull Type type) {
+        return mGson.fromJson(data, type);
+    }
+
+    /**
+     * 注册自定义 TypeAdapter 并指定预热类型
+     */
+    public static final class Builder {
+        private final GsonBuilder mBuilder = new GsonBuilder();
+        private Type[] mWarmUpTypes = new Type[0];
+
+        private Builder() {
+        }
+
+        /**
+         * @see GsonBuilder#registerTypeAdapter(Type, Object)
+         */
+        public Builder registerTypeAdapter(@NonNull Type type, @NonNull Object typeAdapter) {
+            mBuilder.registerTypeAdapter(type, typeAdapter);
+            return this;
+        }
+
+        /**
+         * @see GsonBuilder#registerTypeHierarchyAdapter(Class, Object)
+         */
+        public Builder registerTypeHierarchyAdapter(@NonNull Class<?> baseType, @NonNull Object typeAdapter) {
+            mBuilder.registerTypeHierarchyAdapter(baseType, typeAdapter);
+            return this;
+        }
+
+        /**
+         * @see GsonBuilder#registerTypeAdapterFactory(TypeAdapterFactory)
+         */
+        public Builder registerTypeAdapterFactory(@NonNull TypeAdapterFactory factory) {
+            mBuilder.registerTypeAdapterFactory(factory);
+            return this;
+        }
+
+        /**
+         * @param types 创建后立即生成 TypeAdapter 的类型
+         */
+        public Builder warmUp(@NonNull Type... types) {
+            mWarmUpTypes = types;
+            return this;
+        }
+
+        /**
+         * 需要更多配置时直接修改 GsonBuilder
+         */
+        @NonNull
+        public GsonBuilder gsonBuilder() {
+            return mBuilder;
+        }
+
+        public GsonCodec build() {
+            GsonCodec codec = new GsonCodec(mBuilder.create());
+            codec.warmUp(mWarmUpTypes);
+            return codec;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.dale.utils.mmkv;
+
+import com.dale.utils.cache.CacheExecutors;
+
+import java.util.HashSet;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 一个命名空间的有序键索引，支持按前缀查找和分页遍历而不复制全部的键
+ * <p>
+ * 先发布索引使之后的写入开始更新它，再用 {@link #start(String[])} 传入当时的全部键，这样两者之间的写入不会遗漏。
+ * 全部的键按 {@link #BUILD_BATCH} 个一批加入索引，每批之间释放锁，后台构建不会长时间阻塞写入；
+ * 查询时若尚未构建完，由查询线程接着构建剩余的批次。构建期间删除的键记为墓碑，之后的批次跳过，
+ * 避免旧的键列表把已删除的键加回来。
+ */
+final class KeyIndex {
+
+    private static final int BUILD_BATCH = 256;
+
+    private final ConcurrentSkipListSet<String> mKeys = new ConcurrentSkipListSet<>();
+    private final Object mBuildLock = new Object();
+    /** 尚未加入索引的键，构建完成后为 {@code null}，由 mBuildLock 保护 */
+    private String[] mPendingKeys;
+    private int mCursor;
+    private Set<String> mRemovedDuringBuild = new HashSet<>();
+    private volatile boolean mStarted;
+    private volatile boolean mReady;
+
+    private final Runnable mBuild = new Runnable() {
+        @Override
+        public void run() {
+            while (buildBatch()) {
+                Thread.yield();
+            }
+        }
+    };
+
+    /**
+     * @param keys 发布索引之后读取的全部键
+     */
+    void start(String[] keys) {
+        synchronized (mBuildLock) {
+            if (!mReady) mPendingKeys = keys == null ? new String[0] : keys;
+            mStarted = true;
+        }
+    }
+
+    boolean isStarted() {
+        return mStarted;
+    }
+
+    void buildInBackground() {
+        if (!mReady) CacheExecutors.loader().execute(mBuild);
+    }
+
+    void add(String key) {
+        if (!mReady) {
+            synchronized (mBuildLock) {
+                if (mRemovedDuringBuild != null) mRemovedDuringBuild.remove(key);
+            }
+        }
+        mKeys.add(key);
+    }
+
+    void remove(String key) {
+        if (!mReady) {
+            synchronized (mBuildLock) {
+                if (mRemovedDuringBuild != null) mRemovedDuringBuild.add(key);
+            }
+        }
+        mKeys.remove(key);
+    }
+
+    void clear() {
+        synchronized (mBuildLock) {
+            mPendingKeys = null;
+            mRemovedDuringBuild = null;
+            mReady = true;
+            mStarted = true;
+        }
+        mKeys.clear();
+    }
+
+    /**
+     * @return 以 prefix 开头的键的有序视图，不复制；索引之后的修改会反映在视图中
+     */
+    NavigableSet<String> withPrefix(String prefix) {
+        ensureReady();
+        if (prefix.isEmpty()) return mKeys;
+        String upper = upperBound(prefix);
+        return upper == null ? mKeys.tailSet(prefix, true) : mKeys.subSet(prefix, true, upper, false);
+    }
+
+    /**
+     * 需在 {@link #start(String[])} 之后调用
+     */
+    private void ensureReady() {
+        while (!mReady) {
+            buildBatch();
+        }
+    }
+
+    /**
+     * @return 是否还有未构建的批次
+     */
+    private boolean buildBatch() {
+        synchronized (mBuildLock) {
+            if (mReady) return false;
+            String[] keys = mPendingKeys;
+            int end = Math.min(mCursor + BUILD_BATCH, keys.length);
+            for (int i = mCursor; i < end; i++) {
+                String key = keys[i];
+                if (!LargeValues.isChunkKey(key) && !mRemovedDuringBuild.contains(key)) mKeys.add(key);
+            }
+            mCursor = end;
+            if (end < keys.length) return true;
+            mPendingKeys = null;
+            mRemovedDuringBuild = null;
+            mReady = true;
+            return false;
+        }
+    }
+
+    /**
+     * @return 大于所有以 prefix 开头的字符串的最小字符串，不存在时返回 {@code null}
+     */
+    private static String upperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) return null;
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+}
@@ -0,0 +1,247 @@
+package com.dale.utils.mmkv;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.dale.utils.cache.CacheExecutors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个命名空间的键监听
+ * <p>
+ * 精确的键用哈希表查找，前缀订阅挂在按字符展开的前缀树上，写入时沿键的字符走一遍即可找到所有匹配的前缀，
+ * 与订阅数量无关。变化的键先记在各订阅上，一帧（{@link #FRAME_MILLIS} 毫秒）后统一派发，
+ * 同一帧内的多次写入对每个订阅只回调一次。
+ */
+final class KeyObservers {
+
+    private static final long FRAME_MILLIS = 16;
+
+    private static final Executor MAIN_EXECUTOR = new Executor() {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            mHandler.post(command);
+        }
+    };
+
+    private final MMKVNamespace mNamespace;
+    private final Map<String, List<Subscription>> mExact = new HashMap<>();
+    private final Node mRoot = new Node();
+    /** 本帧有待派发变化的订阅 */
+    private final Set<Subscription> mDirty = new LinkedHashSet<>();
+    private volatile int mCount;
+    private boolean mFrameScheduled;
+
+    private final Runnable mFrame = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    KeyObservers(MMKVNamespace namespace) {
+        mNamespace = namespace;
+    }
+
+    /**
+     * @param executor 回调所在的线程池，为 {@code null} 时在主线程回调
+     */
+    synchronized void add(String keyOrPrefix, boolean prefix, OnKeyChangedListener listener, Executor executor) {
+        Subscription subscription = new Subscription(listener, executor == null ? MAIN_EXECUTOR : executor);
+        List<Subscription> list;
+        if (prefix) {
+            Node node = mRoot;
+            for (int i = 0; i < keyOrPrefix.length(); i++) {
+                char c = keyOrPrefix.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            if (node.subscriptions == null) node.subscriptions = new ArrayList<>(2);
+            list = node.subscriptions;
+        } else {
+            list = mExact.get(keyOrPrefix);
+            if (list == null) {
+                list = new ArrayList<>(2);
+                mExact.put(keyOrPrefix, list);
+            }
+        }
+        list.add(subscription);
+        mCount++;
+    }
+
+    synchronized void remove(OnKeyChangedListener listener) {
+        Iterator<List<Subscription>> it = mExact.values().iterator();
+        while (it.hasNext()) {
+            List<Subscription> list = it.next();
+            removeFrom(list, listener);
+            if (list.isEmpty()) it.remove();
+        }
+        removeFromTrie(mRoot, listener);
+        Iterator<Subscription> dirty = mDirty.iterator();
+        while (dirty.hasNext()) {
+            if (dirty.next().listener == listener) dirty.remove();
+        }
+    }
+
+    /**
+     * 写入或删除 key 之后调用
+     */
+    void onChanged(String key) {
+        if (mCount == 0) return;
+        synchronized (this) {
+            List<Subscription> exact = mExact.get(key);
+            if (exact != null) {
+                for (Subscription subscription : exact) {
+                    mark(subscription, key);
+                }
+            }
+            Node node = mRoot;
+            for (int i = 0; ; i++) {
+                if (node.subscriptions != null) {
+                    for (Subscription subscription : node.subscriptions) {
+                        mark(subscription, key);
+                    }
+                }
+                if (i == key.length()) break;
+                node = node.children.get(key.charAt(i));
+                if (node == null) break;
+            }
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * 整个命名空间被清空或导入后调用，所有订阅收到空的键集合
+     */
+    void onAllChanged() {
+        if (mCount == 0) return;
+        synchronized (this) {
+            for (List<Subscription> list : mExact.values()) {
+                for (Subscription subscription : list) {
+                    markAll(subscription);
+                }
+            }
+            markAllInTrie(mRoot);
+            scheduleFrame();
+        }
+    }
+
+    private void mark(Subscription subscription, String key) {
+        if (!subscription.all) subscription.keys.add(key);
+        mDirty.add(subscription);
+    }
+
+    private void markAll(Subscription subscription) {
+        subscription.all = true;
+        subscription.keys.clear();
+        mDirty.add(subscription);
+    }
+
+    private void markAllInTrie(Node node) {
+        if (node.subscriptions != null) {
+            for (Subscription subscription : node.subscriptions) {
+                markAll(subscription);
+            }
+        }
+        for (Node child : node.children.values()) {
+            markAllInTrie(child);
+        }
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled || mDirty.isEmpty()) return;
+        mFrameScheduled = true;
+        CacheExecutors.scheduler().schedule(mFrame, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void dispatch() {
+        List<Subscription> subscriptions;
+        List<Set<String>> changes;
+        synchronized (this) {
+            mFrameScheduled = false;
+            subscriptions = new ArrayList<>(mDirty);
+            changes = new ArrayList<>(subscriptions.size());
+            for (Subscription subscription : subscriptions) {
+                changes.add(subscription.all
+                        ? Collections.<String>emptySet()
+                        : Collections.unmodifiableSet(new HashSet<>(subscription.keys)));
+                subscription.keys.clear();
+                subscription.all = false;
+            }
+            mDirty.clear();
+        }
+        for (int i = 0; i < subscriptions.size(); i++) {
+            final Subscription subscription = subscriptions.get(i);
+            final Set<String> keys = changes.get(i);
+            subscription.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (subscription.removed) return;
+                    subscription.listener.onKeysChanged(mNamespace, keys);
+                }
+            });
+        }
+    }
+
+    private void removeFromTrie(Node node, OnKeyChangedListener listener) {
+        if (node.subscriptions != null) {
+            removeFrom(node.subscriptions, listener);
+            if (node.subscriptions.isEmpty()) node.subscriptions = null;
+        }
+        Iterator<Node> it = node.children.values().iterator();
+        while (it.hasNext()) {
+            Node child = it.next();
+            removeFromTrie(child, listener);
+            if (child.subscriptions == null && child.children.isEmpty()) it.remove();
+        }
+    }
+
+    private void removeFrom(List<Subscription> list, OnKeyChangedListener listener) {
+        Iterator<Subscription> it = list.iterator();
+        while (it.hasNext()) {
+            Subscription subscription = it.next();
+            if (subscription.listener == listener) {
+                subscription.removed = true;
+                it.remove();
+                mCount--;
+            }
+        }
+    }
+
+    private static final class Node {
+        final Map<Character, Node> children = new HashMap<>(4);
+        List<Subscription> subscriptions;
+    }
+
+    private static final class Subscription {
+        final OnKeyChangedListener listener;
+        final Executor executor;
+        /** 本帧变化的键，由 KeyObservers 的锁保护 */
+        final Set<String> keys = new HashSet<>();
+        boolean all;
+        /** 移除后已派发但尚未执行的回调不再调用 */
+        volatile boolean removed;
+
+        Subscription(OnKeyChangedListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.dale.utils.mmkv;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Set;
+
+/**
+ * {@link MMKVNamespace} 的底层存储，方法与 MMKV 一致
+ * <p>
+ * 默认为 {@link MMKVKeyValueStore}；{@link LogKeyValueStore} 是纯 Java 实现，不依赖 native 库，
+ * 可在 JVM 单元测试中使用，也可与 MMKV 对比性能。实现需要线程安全。
+ */
+public interface KeyValueStore {
+
+    boolean encode(String key, boolean value);
+
+    boolean encode(String key, int value);
+
+    boolean encode(String key, long value);
+
+    boolean encode(String key, float value);
+
+    boolean encode(String key, double value);
+
+    /**
+     * @param value 为 {@code null} 时删除
+     */
+    boolean encode(String key, @Nullable String value);
+
+    /**
+     * @param value 为 {@code null} 时删除
+     */
+    boolean encode(String key, @Nullable Set<String> value);
+
+    /**
+     * @param value 为 {@code null} 时删除
+     */
+    boolean encode(String key, @Nullable byte[] value);
+
+    boolean decodeBool(String key, boolean defaultValue);
+
+    int decodeInt(String key, int defaultValue);
+
+    long decodeLong(String key, long defaultValue);
+
+    float decodeFloat(String key, float defaultValue);
+
+    double decodeDouble(String key, double defaultValue);
+
+    @Nullable
+    String decodeString(String key, @Nullable String defaultValue);
+
+    @Nullable
+    Set<String> decodeStringSet(String key, @Nullable Set<String> defaultValue);
+
+    @Nullable
+    byte[] decodeBytes(String key);
+
+    boolean containsKey(String key);
+
+    void removeValueForKey(String key);
+
+    void removeValuesForKeys(String[] keys);
+
+    @NonNull
+    String[] allKeys();
+
+    long count();
+
+    /**
+     * @return 文件占用的大小（字节）
+     */
+    long totalSize();
+
+    /**
+     * @return 有效数据的大小（字节）
+     */
+    long actualSize();
+
+    /**
+     * 回收文件中未使用的空间
+     */
+    void trim();
+
+    void clearAll();
+
+    /**
+     * 把修改同步写入磁盘
+     */
+    void sync();
+
+    /**
+     * @return 导入的数量
+     */
+    int importFromSharedPreferences(SharedPreferences sharedPreferences);
+
+    /**
+     * 按命名空间打开存储，见 {@link com.dale.utils.MMKVUtil#setStoreFactory(Factory)}
+     */
+    interface Factory {
+
+        /**
+         * @param name     命名空间
+         * @param mode     {@code MMKV.SINGLE_PROCESS_MODE} 或 {@code MMKV.MULTI_PROCESS_MODE}
+         * @param cryptKey 加密密钥，不加密时为 {@code null}
+         */
+        @NonNull
+        KeyValueStore open(@NonNull String name, int mode, @Nullable String cryptKey);
+    }
+}
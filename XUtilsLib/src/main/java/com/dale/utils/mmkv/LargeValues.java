@@ -0,0 +1,222 @@
+package com.dale.utils.mmkv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 大字符串的压缩与分块，见 {@link MMKVNamespace#enableLargeValues(int, int)}
+ * <p>
+ * 超过阈值的字符串按 UTF-8 编码后用 Deflater 压缩（压缩后没有变小则保存原始字节），再按块大小切分，
+ * 每块保存在 {@code key + '\0' + 代数 + '.' + 序号} 中；原来的键只保存一个以 {@code '\0'} 开头的简短描述，
+ * 记录代数、块数、是否压缩和原始长度。覆盖时新块使用新的代数，先写新块再写描述，最后删除旧块，
+ * 读取方不会读到新旧混合的数据。开启异步写入时大值的这些写入绕过队列直接写入存储，保证落盘的顺序。
+ */
+final class LargeValues {
+
+    /** 分块键中的分隔符，用户的键不要包含该字符 */
+    static final char CHUNK_SEPARATOR = '\0';
+
+    private static final String MARKER = CHUNK_SEPARATOR + "large:";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** 达到该字符数的字符串按大值保存 */
+    final int threshold;
+    /** 每块最多的字节数 */
+    final int chunkSize;
+
+    LargeValues(int threshold, int chunkSize) {
+        if (threshold <= 0) throw new IllegalArgumentException("threshold <= 0");
+        if (chunkSize <= 0) throw new IllegalArgumentException("chunkSize <= 0");
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 分块数据的来源
+     */
+    interface ChunkSource {
+        /**
+         * @return 第 index 块，不存在时返回 {@code null}
+         */
+        byte[] chunk(int index);
+    }
+
+    /**
+     * 大值的描述，保存在原来的键中
+     */
+    static final class Descriptor {
+        final long generation;
+        final int chunkCount;
+        final boolean compressed;
+        /** 原始 UTF-8 字节数 */
+        final int length;
+
+        Descriptor(long generation, int chunkCount, boolean compressed, int length) {
+            this.generation = generation;
+            this.chunkCount = chunkCount;
+            this.compressed = compressed;
+            this.length = length;
+        }
+
+        String encode() {
+            return MARKER + generation + ':' + chunkCount + ':' + (compressed ? 1 : 0) + ':' + length;
+        }
+
+        /**
+         * @return 描述，value 不是大值描述时返回 {@code null}
+         */
+        static Descriptor parse(String value) {
+            if (!isDescriptor(value)) return null;
+            String[] parts = value.substring(MARKER.length()).split(":");
+            if (parts.length != 4) return null;
+            try {
+                return new Descriptor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                        "1".equals(parts[2]), Integer.parseInt(parts[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return 代数不同、其余相同的描述
+         */
+        Descriptor withGeneration(long generation) {
+            return new Descriptor(generation, chunkCount, compressed, length);
+        }
+
+        String chunkKey(String key, int index) {
+            return key + CHUNK_SEPARATOR + generation + '.' + index;
+        }
+    }
+
+    /**
+     * 编码后的大值
+     */
+    static final class Encoded {
+        final Descriptor descriptor;
+        final List<byte[]> chunks;
+
+        Encoded(Descriptor descriptor, List<byte[]> chunks) {
+            this.descriptor = descriptor;
+            this.chunks = chunks;
+        }
+    }
+
+    /**
+     * 读取时只需比较第一个字符，小值的读取几乎没有额外开销
+     */
+    static boolean isDescriptor(String value) {
+        return value != null && !value.isEmpty() && value.charAt(0) == CHUNK_SEPARATOR && value.startsWith(MARKER);
+    }
+
+    static boolean isChunkKey(String key) {
+        return key.indexOf(CHUNK_SEPARATOR) >= 0;
+    }
+
+    /**
+     * @param generation 分块的代数，需与被覆盖的旧值不同
+     */
+    Encoded encode(String value, long generation) {
+        byte[] raw = value.getBytes(UTF_8);
+        byte[] compressed = deflate(raw);
+        boolean useCompressed = compressed.length < raw.length;
+        byte[] data = useCompressed ? compressed : raw;
+        int count = Math.max(1, (data.length + chunkSize - 1) / chunkSize);
+        List<byte[]> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(Arrays.copyOfRange(data, i * chunkSize, Math.min(data.length, (i + 1) * chunkSize)));
+        }
+        return new Encoded(new Descriptor(generation, count, useCompressed, raw.length), chunks);
+    }
+
+    /**
+     * @return 逐块读取并解压的流，缺少某一块时抛出 {@link IOException}
+     */
+    static InputStream open(Descriptor descriptor, ChunkSource source) {
+        InputStream in = new ChunkInputStream(descriptor.chunkCount, source);
+        return descriptor.compressed ? new InflaterInputStream(in) : in;
+    }
+
+    static String readString(Descriptor descriptor, ChunkSource source) throws IOException {
+        InputStream in = open(descriptor, source);
+        try {
+            byte[] data = new byte[descriptor.length];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) throw new IOException("truncated large value");
+                offset += read;
+            }
+            return new String(data, UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 按顺序拼接各块，读到某一块时才从 MMKV 取出
+     */
+    private static final class ChunkInputStream extends InputStream {
+        private final int mCount;
+        private final ChunkSource mSource;
+        private int mIndex;
+        private byte[] mChunk;
+        private int mPosition;
+
+        ChunkInputStream(int count, ChunkSource source) {
+            mCount = count;
+            mSource = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureChunk()) return -1;
+            return mChunk[mPosition++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!ensureChunk()) return -1;
+            int count = Math.min(len, mChunk.length - mPosition);
+            System.arraycopy(mChunk, mPosition, b, off, count);
+            mPosition += count;
+            return count;
+        }
+
+        private boolean ensureChunk() throws IOException {
+            while (mChunk == null || mPosition >= mChunk.length) {
+                if (mIndex >= mCount) return false;
+                mChunk = mSource.chunk(mIndex);
+                if (mChunk == null) throw new IOException("missing chunk " + mIndex);
+                mIndex++;
+                mPosition = 0;
+            }
+            return true;
+        }
+    }
+}
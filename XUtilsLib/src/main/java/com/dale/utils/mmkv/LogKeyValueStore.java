@@ -0,0 +1,623 @@
+package com.dale.utils.mmkv;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.dale.utils.LogUtils;
+import com.dale.utils.cache.CacheExecutors;
+import com.tencent.mmkv.MMKV;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 纯 Java 的 {@link KeyValueStore}：内存映射的追加日志加内存索引，不依赖 native 库
+ * <p>
+ * 每次写入在日志末尾追加一条记录（长度、类型、键、值、CRC），内存中的索引记录每个键最新一条记录的位置，
+ * 读取时直接从映射的内存中解码。记录先写内容、最后写长度，进程被杀时写了一半的记录长度仍为 0，
+ * 重新打开时回放到第一条不完整或 CRC 不符的记录为止。有效数据不到日志一半时在后台压缩：
+ * 持锁复制有效记录，在锁外写入新文件，再持锁补上期间追加的记录并替换原文件。
+ * <p>
+ * 只支持单进程，不支持加密。
+ */
+public final class LogKeyValueStore implements KeyValueStore, Closeable {
+
+    private static final int MAGIC = 0x4B564C47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int PAGE_SIZE = 4096;
+    /** 日志小于该大小时不压缩 */
+    private static final int COMPACT_MIN_BYTES = 64 * 1024;
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte TYPE_REMOVE = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_STRING = 6;
+    private static final byte TYPE_BYTES = 7;
+    private static final byte TYPE_STRING_SET = 8;
+
+    private final File mFile;
+    private final Map<String, Entry> mIndex = new HashMap<>();
+    private final CRC32 mCrc = new CRC32();
+    private final byte[] mPrimitive = new byte[8];
+    private final byte[] mKeyLength = new byte[4];
+    /** 同一时刻只有一次压缩 */
+    private final Object mCompactLock = new Object();
+    private RandomAccessFile mRaf;
+    private MappedByteBuffer mBuffer;
+    private int mCapacity;
+    /** 下一条记录的位置 */
+    private int mEnd;
+    /** 索引中记录的总字节数 */
+    private int mLiveBytes;
+    /** 清空时加一，使进行中的压缩放弃 */
+    private int mGeneration;
+    private boolean mCompactScheduled;
+    private boolean mClosed;
+
+    private final Runnable mCompact = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                compact();
+            } catch (RuntimeException e) {
+                LogUtils.e("compact " + mFile + " failed", e);
+            } finally {
+                synchronized (LogKeyValueStore.this) {
+                    mCompactScheduled = false;
+                }
+            }
+        }
+    };
+
+    /**
+     * 打开或创建日志文件
+     */
+    public LogKeyValueStore(@NonNull File file) {
+        mFile = file;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+        synchronized (this) {
+            open();
+        }
+    }
+
+    /**
+     * @param dir 日志文件所在的目录，每个命名空间一个文件
+     * @return 按命名空间打开 LogKeyValueStore 的工厂，传入加密密钥或 {@link MMKV#MULTI_PROCESS_MODE} 时
+     * 抛出 {@link IllegalArgumentException}
+     */
+    @NonNull
+    public static Factory factory(@NonNull final File dir) {
+        return new Factory() {
+            @NonNull
+            @Override
+            public KeyValueStore open(@NonNull String name, int mode, @Nullable String cryptKey) {
+                if (cryptKey != null) throw new IllegalArgumentException("LogKeyValueStore does not support encryption");
+                // 没有跨进程的锁，多个进程同时追加会互相覆盖
+                if ((mode & MMKV.MULTI_PROCESS_MODE) != 0) {
+                    throw new IllegalArgumentException("LogKeyValueStore does not support multi-process mode");
+                }
+                return new LogKeyValueStore(new File(dir, name + ".kvlog"));
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean encode(String key, boolean value) {
+        mPrimitive[0] = (byte) (value ? 1 : 0);
+        append(TYPE_BOOLEAN, key, mPrimitive, 1);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean encode(String key, int value) {
+        putInt(mPrimitive, 0, value);
+        append(TYPE_INT, key, mPrimitive, 4);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean encode(String key, long value) {
+        putLong(mPrimitive, value);
+        append(TYPE_LONG, key, mPrimitive, 8);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean encode(String key, float value) {
+        putInt(mPrimitive, 0, Float.floatToIntBits(value));
+        append(TYPE_FLOAT, key, mPrimitive, 4);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean encode(String key, double value) {
+        putLong(mPrimitive, Double.doubleToLongBits(value));
+        append(TYPE_DOUBLE, key, mPrimitive, 8);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean encode(String key, @Nullable String value) {
+        if (value == null) {
+            removeValueForKey(key);
+        } else {
+            byte[] bytes = value.getBytes(UTF_8);
+            append(TYPE_STRING, key, bytes, bytes.length);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean encode(String key, @Nullable Set<String> value) {
+        if (value == null) {
+            removeValueForKey(key);
+            return true;
+        }
+        byte[][] items = new byte[value.size()][];
+        int length = 4;
+        int i = 0;
+        for (String item : value) {
+            items[i] = item.getBytes(UTF_8);
+            length += 4 + items[i].length;
+            i++;
+        }
+        byte[] bytes = new byte[length];
+        putInt(bytes, 0, items.length);
+        int position = 4;
+        for (byte[] item : items) {
+            putInt(bytes, position, item.length);
+            System.arraycopy(item, 0, bytes, position + 4, item.length);
+            position += 4 + item.length;
+        }
+        append(TYPE_STRING_SET, key, bytes, bytes.length);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean encode(String key, @Nullable byte[] value) {
+        if (value == null) {
+            removeValueForKey(key);
+        } else {
+            append(TYPE_BYTES, key, value, value.length);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean decodeBool(String key, boolean defaultValue) {
+        Entry entry = find(key, TYPE_BOOLEAN);
+        return entry == null ? defaultValue : mBuffer.get(entry.valueOffset) != 0;
+    }
+
+    @Override
+    public synchronized int decodeInt(String key, int defaultValue) {
+        Entry entry = find(key, TYPE_INT);
+        return entry == null ? defaultValue : mBuffer.getInt(entry.valueOffset);
+    }
+
+    @Override
+    public synchronized long decodeLong(String key, long defaultValue) {
+        Entry entry = find(key, TYPE_LONG);
+        return entry == null ? defaultValue : mBuffer.getLong(entry.valueOffset);
+    }
+
+    @Override
+    public synchronized float decodeFloat(String key, float defaultValue) {
+        Entry entry = find(key, TYPE_FLOAT);
+        return entry == null ? defaultValue : mBuffer.getFloat(entry.valueOffset);
+    }
+
+    @Override
+    public synchronized double decodeDouble(String key, double defaultValue) {
+        Entry entry = find(key, TYPE_DOUBLE);
+        return entry == null ? defaultValue : mBuffer.getDouble(entry.valueOffset);
+    }
+
+    /**
+     * 与 MMKV 一致，以 byte[] 写入的值也可按 UTF-8 读出
+     */
+    @Nullable
+    @Override
+    public synchronized String decodeString(String key, @Nullable String defaultValue) {
+        Entry entry = mIndex.get(key);
+        if (entry == null || (entry.type != TYPE_STRING && entry.type != TYPE_BYTES)) return defaultValue;
+        return new String(read(entry), UTF_8);
+    }
+
+    @Nullable
+    @Override
+    public synchronized Set<String> decodeStringSet(String key, @Nullable Set<String> defaultValue) {
+        Entry entry = find(key, TYPE_STRING_SET);
+        if (entry == null) return defaultValue;
+        byte[] bytes = read(entry);
+        int count = getInt(bytes, 0);
+        Set<String> set = new HashSet<>(Math.max(4, count * 4 / 3 + 1));
+        int position = 4;
+        for (int i = 0; i < count; i++) {
+            int length = getInt(bytes, position);
+            set.add(new String(bytes, position + 4, length, UTF_8));
+            position += 4 + length;
+        }
+        return set;
+    }
+
+    /**
+     * 与 MMKV 一致，以字符串写入的值也可读出 UTF-8 字节
+     */
+    @Nullable
+    @Override
+    public synchronized byte[] decodeBytes(String key) {
+        Entry entry = mIndex.get(key);
+        if (entry == null || (entry.type != TYPE_BYTES && entry.type != TYPE_STRING)) return null;
+        return read(entry);
+    }
+
+    @Override
+    public synchronized boolean containsKey(String key) {
+        return mIndex.containsKey(key);
+    }
+
+    @Override
+    public synchronized void removeValueForKey(String key) {
+        if (mIndex.containsKey(key)) append(TYPE_REMOVE, key, mPrimitive, 0);
+    }
+
+    @Override
+    public synchronized void removeValuesForKeys(String[] keys) {
+        for (String key : keys) {
+            removeValueForKey(key);
+        }
+    }
+
+    @NonNull
+    @Override
+    public synchronized String[] allKeys() {
+        return mIndex.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public synchronized long count() {
+        return mIndex.size();
+    }
+
+    @Override
+    public synchronized long totalSize() {
+        return mCapacity;
+    }
+
+    @Override
+    public synchronized long actualSize() {
+        return mEnd;
+    }
+
+    /**
+     * 在当前线程压缩日志并缩小文件
+     */
+    @Override
+    public void trim() {
+        compact();
+    }
+
+    @Override
+    public synchronized void clearAll() {
+        checkOpen();
+        mIndex.clear();
+        mLiveBytes = 0;
+        mEnd = HEADER_SIZE;
+        mBuffer.putInt(HEADER_SIZE, 0);
+        mGeneration++;
+    }
+
+    @Override
+    public synchronized void sync() {
+        checkOpen();
+        mBuffer.force();
+    }
+
+    @Override
+    public int importFromSharedPreferences(SharedPreferences sharedPreferences) {
+        Map<String, ?> all = sharedPreferences.getAll();
+        int count = 0;
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            Object value = entry.getValue();
+            String key = entry.getKey();
+            if (value instanceof Boolean) {
+                encode(key, (boolean) (Boolean) value);
+            } else if (value instanceof Integer) {
+                encode(key, (int) (Integer) value);
+            } else if (value instanceof Long) {
+                encode(key, (long) (Long) value);
+            } else if (value instanceof Float) {
+                encode(key, (float) (Float) value);
+            } else if (value instanceof String) {
+                encode(key, (String) value);
+            } else if (value instanceof Set) {
+                @SuppressWarnings("unchecked")
+                Set<String> set = (Set<String>) value;
+                encode(key, set);
+            } else {
+                continue;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 同步到磁盘并关闭文件，之后不能再使用
+     */
+    @Override
+    public void close() {
+        synchronized (mCompactLock) {
+            synchronized (this) {
+                if (mClosed) return;
+                mBuffer.force();
+                closeFile();
+                mClosed = true;
+            }
+        }
+    }
+
+    private Entry find(String key, byte type) {
+        Entry entry = mIndex.get(key);
+        return entry == null || entry.type != type ? null : entry;
+    }
+
+    private byte[] read(Entry entry) {
+        byte[] bytes = new byte[entry.valueLength];
+        mBuffer.position(entry.valueOffset);
+        mBuffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * 记录格式：长度（之后的字节数）、类型、键长度、键、值、CRC32（类型到值）
+     */
+    private void append(byte type, String key, byte[] value, int valueLength) {
+        checkOpen();
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int length = 1 + 4 + keyBytes.length + valueLength + 4;
+        int recordSize = 4 + length;
+        int offset = mEnd;
+        // 末尾始终保留 4 字节的 0 作为结束标记
+        ensureCapacity(offset + recordSize + 4);
+        MappedByteBuffer buffer = mBuffer;
+        buffer.position(offset + 4);
+        buffer.put(type);
+        buffer.putInt(keyBytes.length);
+        buffer.put(keyBytes);
+        buffer.put(value, 0, valueLength);
+        putInt(mKeyLength, 0, keyBytes.length);
+        mCrc.reset();
+        mCrc.update(type);
+        mCrc.update(mKeyLength, 0, 4);
+        mCrc.update(keyBytes, 0, keyBytes.length);
+        mCrc.update(value, 0, valueLength);
+        buffer.putInt((int) mCrc.getValue());
+        buffer.putInt(offset + recordSize, 0);
+        // 最后写长度，之前被杀时这条记录不会被回放
+        buffer.putInt(offset, length);
+        mEnd = offset + recordSize;
+        index(key, type, offset, recordSize, offset + 4 + 1 + 4 + keyBytes.length, valueLength);
+        scheduleCompactIfNeeded();
+    }
+
+    private void index(String key, byte type, int offset, int recordSize, int valueOffset, int valueLength) {
+        Entry old;
+        if (type == TYPE_REMOVE) {
+            old = mIndex.remove(key);
+        } else {
+            old = mIndex.put(key, new Entry(type, offset, recordSize, valueOffset, valueLength));
+            mLiveBytes += recordSize;
+        }
+        if (old != null) mLiveBytes -= old.recordSize;
+    }
+
+    private void scheduleCompactIfNeeded() {
+        if (mCompactScheduled || mEnd < COMPACT_MIN_BYTES || mLiveBytes * 2L >= mEnd - HEADER_SIZE) return;
+        mCompactScheduled = true;
+        CacheExecutors.writer().execute(mCompact);
+    }
+
+    private void compact() {
+        synchronized (mCompactLock) {
+            byte[] live;
+            int snapshotEnd;
+            int generation;
+            synchronized (this) {
+                if (mClosed) return;
+                generation = mGeneration;
+                snapshotEnd = mEnd;
+                live = new byte[mLiveBytes];
+                int position = 0;
+                for (Entry entry : mIndex.values()) {
+                    mBuffer.position(entry.offset);
+                    mBuffer.get(live, position, entry.recordSize);
+                    position += entry.recordSize;
+                }
+            }
+            File temp = new File(mFile.getPath() + COMPACT_SUFFIX);
+            RandomAccessFile out = null;
+            try {
+                out = new RandomAccessFile(temp, "rw");
+                out.setLength(0);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(live);
+                synchronized (this) {
+                    if (mClosed || generation != mGeneration) return;
+                    // 补上压缩期间追加的记录
+                    byte[] tail = new byte[mEnd - snapshotEnd];
+                    mBuffer.position(snapshotEnd);
+                    mBuffer.get(tail);
+                    out.write(tail);
+                    out.writeInt(0);
+                    out.getFD().sync();
+                    out.close();
+                    out = null;
+                    closeFile();
+                    if (!temp.renameTo(mFile)) throw new IOException("rename " + temp + " failed");
+                    open();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("compact " + mFile + " failed", e);
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+                if (temp.exists() && !temp.delete()) temp.deleteOnExit();
+                synchronized (this) {
+                    // 改名失败时重新打开原文件
+                    if (!mClosed && mRaf == null) open();
+                }
+            }
+        }
+    }
+
+    /**
+     * 映射文件并回放日志重建索引，需持有本对象的锁
+     */
+    private void open() {
+        try {
+            mRaf = new RandomAccessFile(mFile, "rw");
+            long length = mRaf.length();
+            if (length > Integer.MAX_VALUE) throw new IOException(mFile + " too large");
+            map(roundUp(Math.max((int) length, PAGE_SIZE)));
+        } catch (IOException e) {
+            closeFile();
+            throw new IllegalStateException("open " + mFile + " failed", e);
+        }
+        mIndex.clear();
+        mLiveBytes = 0;
+        if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+            mBuffer.putInt(0, MAGIC);
+            mBuffer.putInt(4, VERSION);
+            mEnd = HEADER_SIZE;
+        } else {
+            mEnd = replay();
+        }
+        ensureCapacity(mEnd + 4);
+        mBuffer.putInt(mEnd, 0);
+    }
+
+    /**
+     * @return 第一条无效记录的位置
+     */
+    private int replay() {
+        MappedByteBuffer buffer = mBuffer;
+        byte[] bytes = new byte[256];
+        int offset = HEADER_SIZE;
+        while (offset + 4 <= mCapacity) {
+            int length = buffer.getInt(offset);
+            if (length < 1 + 4 + 4 || offset + 4 + length > mCapacity) break;
+            if (bytes.length < length) bytes = new byte[Math.max(length, bytes.length * 2)];
+            buffer.position(offset + 4);
+            buffer.get(bytes, 0, length);
+            int keyLength = getInt(bytes, 1);
+            int valueLength = length - 1 - 4 - keyLength - 4;
+            if (keyLength < 0 || valueLength < 0) break;
+            mCrc.reset();
+            mCrc.update(bytes, 0, length - 4);
+            if ((int) mCrc.getValue() != getInt(bytes, length - 4)) break;
+            String key = new String(bytes, 5, keyLength, UTF_8);
+            int recordSize = 4 + length;
+            index(key, bytes[0], offset, recordSize, offset + 4 + 1 + 4 + keyLength, valueLength);
+            offset += recordSize;
+        }
+        return offset;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= mCapacity) return;
+        long capacity = mCapacity;
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) throw new IllegalStateException(mFile + " too large");
+        try {
+            map(roundUp((int) capacity));
+        } catch (IOException e) {
+            throw new IllegalStateException("grow " + mFile + " failed", e);
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        if (mRaf.length() != capacity) mRaf.setLength(capacity);
+        mBuffer = mRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        mCapacity = capacity;
+    }
+
+    private void closeFile() {
+        if (mRaf != null) {
+            try {
+                mRaf.close();
+            } catch (IOException ignored) {
+            }
+        }
+        mRaf = null;
+    }
+
+    private void checkOpen() {
+        if (mClosed) throw new IllegalStateException(mFile + " closed");
+    }
+
+    private static int roundUp(int size) {
+        return (size + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] bytes, long value) {
+        putInt(bytes, 0, (int) (value >>> 32));
+        putInt(bytes, 4, (int) value);
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static final class Entry {
+        final byte type;
+        /** 记录的起始位置 */
+        final int offset;
+        final int recordSize;
+        final int valueOffset;
+        final int valueLength;
+
+        Entry(byte type, int offset, int recordSize, int valueOffset, int valueLength) {
+            this.type = type;
+            this.offset = offset;
+            this.recordSize = recordSize;
+            this.valueOffset = valueOffset;
+            this.valueLength = valueLength;
+        }
+    }
+}
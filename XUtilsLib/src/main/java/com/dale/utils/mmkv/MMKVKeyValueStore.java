@@ -0,0 +1,167 @@
+package com.dale.utils.mmkv;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tencent.mmkv.MMKV;
+
+import java.util.Set;
+
+/**
+ * 基于 MMKV 的 {@link KeyValueStore}，默认的实现
+ */
+public final class MMKVKeyValueStore implements KeyValueStore {
+
+    private final MMKV mMmkv;
+
+    public MMKVKeyValueStore(@NonNull MMKV mmkv) {
+        mMmkv = mmkv;
+    }
+
+    @NonNull
+    public MMKV mmkv() {
+        return mMmkv;
+    }
+
+    @Override
+    public boolean encode(String key, boolean value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean encode(String key, int value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean encode(String key, long value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean encode(String key, float value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean encode(String key, double value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean encode(String key, @Nullable String value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean encode(String key, @Nullable Set<String> value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean encode(String key, @Nullable byte[] value) {
+        return mMmkv.encode(key, value);
+    }
+
+    @Override
+    public boolean decodeBool(String key, boolean defaultValue) {
+        return mMmkv.decodeBool(key, defaultValue);
+    }
+
+    @Override
+    public int decodeInt(String key, int defaultValue) {
+        return mMmkv.decodeInt(key, defaultValue);
+    }
+
+    @Override
+    public long decodeLong(String key, long defaultValue) {
+        return mMmkv.decodeLong(key, defaultValue);
+    }
+
+    @Override
+    public float decodeFloat(String key, float defaultValue) {
+        return mMmkv.decodeFloat(key, defaultValue);
+    }
+
+    @Override
+    public double decodeDouble(String key, double defaultValue) {
+        return mMmkv.decodeDouble(key, defaultValue);
+    }
+
+    @Nullable
+    @Override
+    public String decodeString(String key, @Nullable String defaultValue) {
+        return mMmkv.decodeString(key, defaultValue);
+    }
+
+    @Nullable
+    @Override
+    public Set<String> decodeStringSet(String key, @Nullable Set<String> defaultValue) {
+        return mMmkv.decodeStringSet(key, defaultValue);
+    }
+
+    @Nullable
+    @Override
+    public byte[] decodeBytes(String key) {
+        return mMmkv.decodeBytes(key);
+    }
+
+    @Override
+    public boolean containsKey(String key) {
+        return mMmkv.containsKey(key);
+    }
+
+    @Override
+    public void removeValueForKey(String key) {
+        mMmkv.removeValueForKey(key);
+    }
+
+    @Override
+    public void removeValuesForKeys(String[] keys) {
+        mMmkv.removeValuesForKeys(keys);
+    }
+
+    @NonNull
+    @Override
+    public String[] allKeys() {
+        String[] keys = mMmkv.allKeys();
+        return keys == null ? new String[0] : keys;
+    }
+
+    @Override
+    public long count() {
+        return mMmkv.count();
+    }
+
+    @Override
+    public long totalSize() {
+        return mMmkv.totalSize();
+    }
+
+    @Override
+    public long actualSize() {
+        return mMmkv.actualSize();
+    }
+
+    @Override
+    public void trim() {
+        mMmkv.trim();
+    }
+
+    @Override
+    public void clearAll() {
+        mMmkv.clearAll();
+    }
+
+    @Override
+    public void sync() {
+        mMmkv.sync();
+    }
+
+    @Override
+    public int importFromSharedPreferences(SharedPreferences sharedPreferences) {
+        return mMmkv.importFromSharedPreferences(sharedPreferences);
+    }
+}
@@ -0,0 +1,943 @@
+package com.dale.utils.mmkv;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.dale.utils.LogUtils;
+import com.dale.utils.MMKVUtil;
+import com.dale.utils.TopActivityManager;
+import com.dale.utils.cache.CacheExecutors;
+import com.tencent.mmkv.MMKV;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个存储文件（默认为 MMKV）及其对象缓存、异步写入队列，由 {@link MMKVUtil#of(String)} 按名称取得
+ * <p>
+ * 不同命名空间使用各自的文件，键的数量、{@link #getAllKeys()}、{@link #trim()} 互不影响；
+ * 对象的编解码使用 {@link MMKVUtil#getObjectCodec()} 与 {@link MMKVUtil#getBinaryCodec()}。
+ */
+public final class MMKVNamespace {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** 开启了异步写入的命名空间，应用进入后台时写入 */
+    private static final Set<MMKVNamespace> ASYNC_NAMESPACES = new CopyOnWriteArraySet<>();
+    private static boolean sFlushOnBackground;
+    /** 大值写入与删除按键分段加锁的段数，需为 2 的幂 */
+    private static final int LARGE_VALUE_LOCKS = 16;
+    /**
+     * 大值分块的代数，进程内递增；删除后重新写入的键不会复用旧的代数，
+     * 仍持有旧描述的读取方只会读到缺块而重读，不会读到新旧混合的数据
+     */
+    private static final AtomicLong LARGE_VALUE_GENERATION = new AtomicLong(System.currentTimeMillis());
+
+    private final String mName;
+    private final KeyValueStore mStore;
+    /** 无法确定时按多进程处理，缓存命中前比较原始数据 */
+    private final boolean mMultiProcess;
+    private volatile ObjectCache mObjectCache;
+    private volatile WriteQueue mWriteQueue;
+    private final KeyObservers mObservers = new KeyObservers(this);
+    private volatile KeyIndex mKeyIndex;
+    private volatile LargeValues mLargeValues;
+    private volatile SchemaMigrator mMigrator;
+    /** 同一个键的大值写入与删除互斥，避免并发写入取到相同的代数、删除与写入交错留下无主的分块 */
+    private final Object[] mLargeValueLocks = new Object[LARGE_VALUE_LOCKS];
+
+    /**
+     * @param multiProcess 是否为多进程模式，无法确定时传 {@code true}
+     */
+    public MMKVNamespace(@NonNull String name, @NonNull MMKV mmkv, boolean multiProcess) {
+        this(name, new MMKVKeyValueStore(mmkv), multiProcess);
+    }
+
+    /**
+     * @param store        底层存储，如 JVM 测试中使用 {@link LogKeyValueStore}
+     * @param multiProcess 是否为多进程模式，无法确定时传 {@code true}
+     */
+    public MMKVNamespace(@NonNull String name, @NonNull KeyValueStore store, boolean multiProcess) {
+        mName = name;
+        mStore = store;
+        mMultiProcess = multiProcess;
+        for (int i = 0; i < LARGE_VALUE_LOCKS; i++) {
+            mLargeValueLocks[i] = new Object();
+        }
+    }
+
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return 底层的 MMKV，不是基于 MMKV 的存储时抛出 {@link IllegalStateException}
+     */
+    @NonNull
+    public MMKV mmkv() {
+        if (!(mStore instanceof MMKVKeyValueStore)) {
+            throw new IllegalStateException("namespace " + mName + " is not backed by MMKV");
+        }
+        return ((MMKVKeyValueStore) mStore).mmkv();
+    }
+
+    @NonNull
+    public KeyValueStore store() {
+        return mStore;
+    }
+
+    public boolean isMultiProcess() {
+        return mMultiProcess;
+    }
+
+    /**
+     * 开启解码后对象的缓存，{@link #getObject(String, Type)} 与 {@link #getBinaryObject(String, Type)}
+     * 多次读取同一个键时不再重复解码
+     * <p>
+     * 缓存的对象会被多次返回，调用方不要修改；修改后请重新 {@link #putObject(String, Object)}。
+     * 通过本类的写入和删除会使缓存失效；多进程模式下每次读取仍会读出原始数据，与缓存时一致才返回缓存的对象。
+     *
+     * @param maxCount 缓存的最大计数
+     */
+    public void enableObjectCache(int maxCount) {
+        mObjectCache = new ObjectCache(maxCount);
+    }
+
+    public void disableObjectCache() {
+        mObjectCache = null;
+    }
+
+    /**
+     * @return 对象缓存的最大计数，未开启时返回 0
+     */
+    public int getObjectCacheMaxCount() {
+        ObjectCache objectCache = mObjectCache;
+        return objectCache == null ? 0 : objectCache.maxCount();
+    }
+
+    public boolean isAsyncWrite() {
+        return mWriteQueue != null;
+    }
+
+    /**
+     * 监听通过本类对 key 的写入和删除，在主线程回调；直接通过 {@link #mmkv()} 或其他进程的写入不会回调
+     */
+    public void observe(@NonNull String key, @NonNull OnKeyChangedListener listener) {
+        observe(key, listener, null);
+    }
+
+    /**
+     * @param executor 回调所在的线程池，为 {@code null} 时在主线程回调
+     */
+    public void observe(@NonNull String key, @NonNull OnKeyChangedListener listener, @Nullable Executor executor) {
+        mObservers.add(key, false, listener, executor);
+    }
+
+    /**
+     * 监听以 prefix 开头的所有键，在主线程回调
+     */
+    public void observePrefix(@NonNull String prefix, @NonNull OnKeyChangedListener listener) {
+        observePrefix(prefix, listener, null);
+    }
+
+    /**
+     * @param executor 回调所在的线程池，为 {@code null} 时在主线程回调
+     */
+    public void observePrefix(@NonNull String prefix, @NonNull OnKeyChangedListener listener, @Nullable Executor executor) {
+        mObservers.add(prefix, true, listener, executor);
+    }
+
+    /**
+     * 移除 listener 的所有订阅，尚未执行的回调不再调用
+     */
+    public void removeObserver(@NonNull OnKeyChangedListener listener) {
+        mObservers.remove(listener);
+    }
+
+    public void put(String key, boolean value) {
+        beforeWrite(key);
+        storeValue(key, value);
+        changed(key, true);
+    }
+
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof Boolean ? (Boolean) value : defaultValue;
+        }
+        return mStore.decodeBool(key, defaultValue);
+    }
+
+    public void put(String key, int value) {
+        beforeWrite(key);
+        storeValue(key, value);
+        changed(key, true);
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof Integer ? (Integer) value : defaultValue;
+        }
+        return mStore.decodeInt(key, defaultValue);
+    }
+
+    public void put(String key, long value) {
+        beforeWrite(key);
+        storeValue(key, value);
+        changed(key, true);
+    }
+
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof Long ? (Long) value : defaultValue;
+        }
+        return mStore.decodeLong(key, defaultValue);
+    }
+
+    public void put(String key, float value) {
+        beforeWrite(key);
+        storeValue(key, value);
+        changed(key, true);
+    }
+
+    public float getFloat(String key) {
+        return getFloat(key, 0.0F);
+    }
+
+    public float getFloat(String key, float defaultValue) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof Float ? (Float) value : defaultValue;
+        }
+        return mStore.decodeFloat(key, defaultValue);
+    }
+
+    public void put(String key, double value) {
+        beforeWrite(key);
+        storeValue(key, value);
+        changed(key, true);
+    }
+
+    public double getDouble(String key) {
+        return getDouble(key, 0.0D);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof Double ? (Double) value : defaultValue;
+        }
+        return mStore.decodeDouble(key, defaultValue);
+    }
+
+    public void put(String key, String value) {
+        beforeWrite(key);
+        storeString(key, value);
+    }
+
+    /**
+     * 不经过版本迁移的写入
+     */
+    void storeString(String key, String value) {
+        LargeValues largeValues = mLargeValues;
+        if (largeValues != null || hasLargeValue(key)) {
+            putLarge(key, value, largeValues);
+            return;
+        }
+        WriteQueue queue = mWriteQueue;
+        if (queue != null) {
+            queue.put(key, value);
+        } else {
+            mStore.encode(key, value);
+        }
+        changed(key, value != null);
+    }
+
+    public void putObject(String key, Object obj) {
+        if (obj == null) {
+            return;
+        }
+        put(key, MMKVUtil.getObjectCodec().encode(obj));
+    }
+
+    @Nullable
+    public String getString(String key) {
+        return getString(key, (String) null);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T getObject(String key, Type type) {
+        ObjectCache objectCache = mObjectCache;
+        if (objectCache == null) {
+            String cache = getString(key, null);
+            if (cache == null) return null;
+            return MMKVUtil.getObjectCodec().decode(cache, type);
+        }
+        boolean multiProcess = mMultiProcess;
+        long generation = objectCache.generation();
+        if (!multiProcess) {
+            Object hit = objectCache.get(key, type, false, null);
+            if (hit != null) return (T) hit;
+        }
+        String cache = getString(key, null);
+        if (cache == null) return null;
+        if (multiProcess) {
+            Object hit = objectCache.get(key, type, false, cache);
+            if (hit != null) return (T) hit;
+        }
+        T value = MMKVUtil.getObjectCodec().decode(cache, type);
+        objectCache.put(key, type, false, multiProcess ? cache : null, value, generation);
+        return value;
+    }
+
+    /**
+     * 以二进制写入对象，比 {@link #putObject(String, Object)} 的 JSON 更小、读取更快；
+     * 两者的数据格式不同，需用 {@link #getBinaryObject(String, Type)} 读取
+     */
+    public void putBinaryObject(String key, Object obj) {
+        if (obj == null) {
+            return;
+        }
+        put(key, MMKVUtil.getBinaryCodec().encode(obj));
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T getBinaryObject(String key, Type type) {
+        ObjectCache objectCache = mObjectCache;
+        if (objectCache == null) {
+            byte[] cache = decodeBytes(key);
+            if (cache == null) return null;
+            return MMKVUtil.getBinaryCodec().decode(cache, type);
+        }
+        boolean multiProcess = mMultiProcess;
+        long generation = objectCache.generation();
+        if (!multiProcess) {
+            Object hit = objectCache.get(key, type, true, null);
+            if (hit != null) return (T) hit;
+        }
+        byte[] cache = decodeBytes(key);
+        if (cache == null) return null;
+        if (multiProcess) {
+            Object hit = objectCache.get(key, type, true, cache);
+            if (hit != null) return (T) hit;
+        }
+        T value = MMKVUtil.getBinaryCodec().decode(cache, type);
+        objectCache.put(key, type, true, multiProcess ? cache : null, value, generation);
+        return value;
+    }
+
+    @Nullable
+    public String getString(String key, String defaultValue) {
+        SchemaMigrator migrator = mMigrator;
+        if (migrator != null && migrator.isActive()) migrator.migrateOnRead(key);
+        return loadString(key, defaultValue);
+    }
+
+    /**
+     * 不经过版本迁移的读取，大值时还原完整的字符串
+     */
+    String loadString(String key, String defaultValue) {
+        String value = readString(key, defaultValue);
+        if (!LargeValues.isDescriptor(value)) return value;
+        try {
+            return LargeValues.readString(LargeValues.Descriptor.parse(value), chunks(key, value));
+        } catch (IOException | RuntimeException e) {
+            // 读取期间被覆盖，旧块已删除时重读一次
+            value = readString(key, defaultValue);
+            if (!LargeValues.isDescriptor(value)) return value;
+            try {
+                return LargeValues.readString(LargeValues.Descriptor.parse(value), chunks(key, value));
+            } catch (IOException | RuntimeException retry) {
+                LogUtils.e("MMKV read large value failed: " + key, retry);
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * 以流的形式读取字符串的 UTF-8 字节，大值逐块读取并解压，不需要一次载入整个值
+     *
+     * @return 键不存在时返回 {@code null}
+     */
+    @Nullable
+    public InputStream openStream(String key) {
+        String value = readString(key, null);
+        if (value == null) return null;
+        if (!LargeValues.isDescriptor(value)) return new ByteArrayInputStream(value.getBytes(UTF_8));
+        return LargeValues.open(LargeValues.Descriptor.parse(value), chunks(key, value));
+    }
+
+    /**
+     * 设置数据的版本和迁移步骤，需在读写之前调用，每次启动都要设置
+     * <p>
+     * 命名空间记录的版本低于 version 时，{@link #getString(String)} 与 {@link #getObject(String, Type)}
+     * 第一次读取尚未迁移的键时，在当前线程依次执行该键需要的步骤；调用 {@link #migrateInBackground(int, long)}
+     * 在后台分批迁移其余的键。没有记录版本的命名空间，为空时直接是 version，已有数据时视为版本 0。
+     *
+     * @param version    当前的数据版本
+     * @param migrations 各版本的迁移步骤，版本不能重复，不能大于 version
+     */
+    public void setSchema(int version, @NonNull Migration... migrations) {
+        SchemaMigrator migrator = new SchemaMigrator(this, version, migrations);
+        SchemaMigrator old;
+        synchronized (this) {
+            old = mMigrator;
+            mMigrator = migrator;
+        }
+        // 后台的一批持有迁移器的锁时可能在构建键索引、需要本对象的锁，close 不能在本对象的锁内调用
+        if (old != null) old.close();
+    }
+
+    /**
+     * @return 所有键至少已升级到的版本，未调用 {@link #setSchema(int, Migration...)} 时返回 0
+     */
+    public int getSchemaVersion() {
+        SchemaMigrator migrator = mMigrator;
+        return migrator == null ? 0 : migrator.getVersion();
+    }
+
+    /**
+     * 在后台线程每隔 intervalMillis 迁移 batchSize 个键，每批之后保存进度，进程被杀后下次从中断处继续；
+     * 没有需要迁移的数据时无操作
+     */
+    public void migrateInBackground(int batchSize, long intervalMillis) {
+        SchemaMigrator migrator = mMigrator;
+        if (migrator != null) migrator.migrateInBackground(batchSize, intervalMillis);
+    }
+
+    /**
+     * 开启大值模式：通过 {@link #put(String, String)} 与 {@link #putObject(String, Object)} 写入、
+     * 字符数达到 threshold 的字符串先压缩，再按 chunkSize 字节分块保存，读取时透明地还原；
+     * 小于阈值的字符串仍直接写入
+     * <p>
+     * 分块保存在以 {@code key + '\0'} 开头的键中，会出现在 {@link #getAllKeys()} 与 {@link #getCount()} 中，
+     * 不会出现在 {@link #keysWithPrefix(String)} 中；用户的键不要包含 {@code '\0'}。
+     *
+     * @param threshold 按大值保存的最小字符数
+     * @param chunkSize 每块最多的字节数
+     */
+    public void enableLargeValues(int threshold, int chunkSize) {
+        mLargeValues = new LargeValues(threshold, chunkSize);
+    }
+
+    /**
+     * 关闭大值模式，之后的写入不再压缩；已保存的大值仍可读取，覆盖或删除时同时删除其分块
+     */
+    public void disableLargeValues() {
+        mLargeValues = null;
+    }
+
+    /**
+     * 读取保存的原始字符串，大值时为描述；也用于读取保留键
+     */
+    String readString(String key, String defaultValue) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof String ? (String) value : defaultValue;
+        }
+        return mStore.decodeString(key, defaultValue);
+    }
+
+    private LargeValues.ChunkSource chunks(final String key, String descriptor) {
+        final LargeValues.Descriptor parsed = LargeValues.Descriptor.parse(descriptor);
+        return new LargeValues.ChunkSource() {
+            @Override
+            public byte[] chunk(int index) {
+                return decodeBytes(parsed.chunkKey(key, index));
+            }
+        };
+    }
+
+    /**
+     * 先写新块和描述，再删除被覆盖的旧块；同一个键的写入与删除持有同一把分段锁。
+     * 写入或覆盖大值时绕过异步队列，见 {@link #writeNow(String, Object)}
+     *
+     * @param largeValues 为 {@code null} 时表示已关闭大值模式，只删除被覆盖的旧块
+     */
+    private void putLarge(String key, String value, LargeValues largeValues) {
+        // 压缩放在锁外，锁内只有读取旧描述和写入
+        LargeValues.Encoded encoded = largeValues != null && value != null
+                && value.length() >= largeValues.threshold ? largeValues.encode(value, 0) : null;
+        synchronized (largeValueLock(key)) {
+            LargeValues.Descriptor old = LargeValues.Descriptor.parse(readString(key, null));
+            if (encoded != null) {
+                long generation = LARGE_VALUE_GENERATION.incrementAndGet();
+                if (old != null && old.generation >= generation) generation = old.generation + 1;
+                LargeValues.Descriptor descriptor = encoded.descriptor.withGeneration(generation);
+                for (int i = 0; i < encoded.chunks.size(); i++) {
+                    writeNow(descriptor.chunkKey(key, i), encoded.chunks.get(i));
+                }
+                writeNow(key, descriptor.encode());
+            } else if (old != null) {
+                writeNow(key, value);
+            } else {
+                encode(key, value);
+            }
+            if (old != null) removeChunks(key, old);
+            changed(key, value != null);
+        }
+    }
+
+    /**
+     * 删除 key，若保存的是大值同时删除其分块
+     */
+    private void removeLarge(String key) {
+        synchronized (largeValueLock(key)) {
+            LargeValues.Descriptor old = LargeValues.Descriptor.parse(readString(key, null));
+            if (old == null) {
+                encode(key, null);
+            } else {
+                // 先删除描述再删除分块，进程被杀时只会留下无主的分块
+                writeNow(key, null);
+                removeChunks(key, old);
+            }
+            changed(key, false);
+        }
+    }
+
+    /**
+     * 写入字符串以外的值；覆盖的是大值时在分段锁内写入，再删除其分块
+     */
+    private void storeValue(String key, Object value) {
+        if (mLargeValues == null && !hasLargeValue(key)) {
+            encode(key, value);
+            return;
+        }
+        synchronized (largeValueLock(key)) {
+            LargeValues.Descriptor old = LargeValues.Descriptor.parse(readString(key, null));
+            if (old == null) {
+                encode(key, value);
+            } else {
+                writeNow(key, value);
+                removeChunks(key, old);
+            }
+        }
+    }
+
+    private void encode(String key, Object value) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null) {
+            queue.put(key, value);
+        } else {
+            encodeToStore(key, value);
+        }
+    }
+
+    /**
+     * 开启异步写入时也立即写入存储；大值的分块、描述和旧块的删除需要按顺序落盘，
+     * 否则进程在队列写到一半时被杀，可能只留下描述而缺少分块
+     */
+    private void writeNow(String key, Object value) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null) {
+            queue.putNow(key, value);
+        } else {
+            encodeToStore(key, value);
+        }
+    }
+
+    private void encodeToStore(String key, Object value) {
+        if (value == null) {
+            mStore.removeValueForKey(key);
+        } else if (value instanceof Boolean) {
+            mStore.encode(key, (boolean) (Boolean) value);
+        } else if (value instanceof Integer) {
+            mStore.encode(key, (int) (Integer) value);
+        } else if (value instanceof Long) {
+            mStore.encode(key, (long) (Long) value);
+        } else if (value instanceof Float) {
+            mStore.encode(key, (float) (Float) value);
+        } else if (value instanceof Double) {
+            mStore.encode(key, (double) (Double) value);
+        } else if (value instanceof String) {
+            mStore.encode(key, (String) value);
+        } else if (value instanceof byte[]) {
+            mStore.encode(key, (byte[]) value);
+        } else {
+            //noinspection unchecked
+            mStore.encode(key, (Set<String>) value);
+        }
+    }
+
+    /**
+     * 关闭大值模式后，已保存的大值在覆盖或删除时仍需删除其分块
+     *
+     * @return key 当前保存的是否为大值的描述
+     */
+    private boolean hasLargeValue(String key) {
+        return LargeValues.isDescriptor(readString(key, null));
+    }
+
+    private Object largeValueLock(String key) {
+        int h = key.hashCode();
+        return mLargeValueLocks[(h ^ (h >>> 16)) & (LARGE_VALUE_LOCKS - 1)];
+    }
+
+    private void removeChunks(String key, LargeValues.Descriptor descriptor) {
+        for (int i = 0; i < descriptor.chunkCount; i++) {
+            writeNow(descriptor.chunkKey(key, i), null);
+        }
+    }
+
+    /**
+     * 不经过对象缓存、键索引和监听的写入，也用于写入保留键
+     *
+     * @param value String 或 byte[]，为 {@code null} 时删除
+     */
+    void write(String key, Object value) {
+        encode(key, value);
+    }
+
+    public void put(String key, Set<String> value) {
+        beforeWrite(key);
+        storeValue(key, value);
+        changed(key, value != null);
+    }
+
+    @Nullable
+    public Set<String> getStringSet(String key) {
+        return getStringSet(key, (Set) null);
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defaultValue) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof Set ? (Set<String>) value : defaultValue;
+        }
+        return mStore.decodeStringSet(key, defaultValue);
+    }
+
+    public void put(String key, byte[] value) {
+        beforeWrite(key);
+        storeValue(key, value);
+        changed(key, value != null);
+    }
+
+    @Nullable
+    public byte[] decodeBytes(String key) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) {
+            Object value = queue.peek(key);
+            return value instanceof byte[] ? (byte[]) value : null;
+        }
+        return mStore.decodeBytes(key);
+    }
+
+    public String[] getAllKeys() {
+        flush();
+        return mStore.allKeys();
+    }
+
+    public long getCount() {
+        flush();
+        return mStore.count();
+    }
+
+    /**
+     * @return 文件占用的大小（字节）
+     */
+    public long getTotalSize() {
+        flush();
+        return mStore.totalSize();
+    }
+
+    /**
+     * @return 有效数据的大小（字节），与 {@link #getTotalSize()} 相差较大时可调用 {@link #trim()}
+     */
+    public long getActualSize() {
+        flush();
+        return mStore.actualSize();
+    }
+
+    /**
+     * 回收文件中未使用的空间，大量删除后调用
+     */
+    public void trim() {
+        flush();
+        mStore.trim();
+    }
+
+    public void clearAll() {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null) {
+            queue.clearAll();
+        } else {
+            mStore.clearAll();
+        }
+        KeyIndex keyIndex = mKeyIndex;
+        if (keyIndex != null) keyIndex.clear();
+        SchemaMigrator migrator = mMigrator;
+        if (migrator != null) migrator.onCleared();
+        invalidateObjectCache();
+        mObservers.onAllChanged();
+    }
+
+    /**
+     * 开启异步写入：put 和删除先放入队列，同一个键的多次写入合并，约 100 毫秒后在后台线程批量写入 MMKV；
+     * 读取时优先返回队列中的值。应用进入后台时会自动 {@link #flush()}
+     * <p>
+     * 进程在写入前被杀死时，队列中的修改会丢失；直接通过 {@link #mmkv()} 读写不经过队列。
+     */
+    public synchronized void enableAsyncWrite() {
+        if (mWriteQueue != null) return;
+        mWriteQueue = new WriteQueue(mStore);
+        registerFlushOnBackground(this);
+    }
+
+    /**
+     * 关闭异步写入，队列中的修改立即写入
+     */
+    public synchronized void disableAsyncWrite() {
+        WriteQueue queue = mWriteQueue;
+        if (queue == null) return;
+        mWriteQueue = null;
+        ASYNC_NAMESPACES.remove(this);
+        queue.flush();
+    }
+
+    /**
+     * 在当前线程把异步队列中的修改写入 MMKV，返回后之前的写入对读取和其他进程都可见；未开启异步写入时无操作
+     */
+    public void flush() {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null) queue.flush();
+    }
+
+    /**
+     * {@link #flush()} 后把 MMKV 的内存映射同步写入磁盘
+     */
+    public void sync() {
+        flush();
+        mStore.sync();
+    }
+
+    public boolean containsKey(String key) {
+        WriteQueue queue = mWriteQueue;
+        if (queue != null && queue.isPending(key)) return queue.peek(key) != null;
+        return mStore.containsKey(key);
+    }
+
+    public void removeValueForKey(String key) {
+        beforeWrite(key);
+        if (mLargeValues != null || hasLargeValue(key)) {
+            removeLarge(key);
+            return;
+        }
+        WriteQueue queue = mWriteQueue;
+        if (queue != null) {
+            queue.remove(key);
+        } else {
+            mStore.removeValueForKey(key);
+        }
+        changed(key, false);
+    }
+
+    /**
+     * 在后台构建有序的键索引，之后通过本类的写入和删除都会更新索引；
+     * 不调用时第一次 {@link #keysWithPrefix(String)} 等会在当前线程构建。
+     * 直接通过 {@link #mmkv()} 或其他进程的写入不会反映在索引中
+     */
+    public synchronized void enableKeyIndex() {
+        if (mKeyIndex != null) return;
+        newKeyIndex().buildInBackground();
+    }
+
+    /**
+     * @return 以 prefix 开头的键，按字典序排列
+     */
+    @NonNull
+    public List<String> keysWithPrefix(@NonNull String prefix) {
+        return new ArrayList<>(keyIndex().withPrefix(prefix));
+    }
+
+    /**
+     * 分页遍历以 prefix 开头的键，只复制当前页
+     *
+     * @param startAfter 上一页的最后一个键，第一页传 {@code null}
+     * @param limit      每页最多的数量
+     * @return 按字典序排列的一页键，不足 limit 个时表示已遍历完
+     */
+    @NonNull
+    public List<String> keysWithPrefix(@NonNull String prefix, @Nullable String startAfter, int limit) {
+        NavigableSet<String> keys = keyIndex().withPrefix(prefix);
+        return keysAfter(startAfter == null ? keys : keys.tailSet(startAfter, false), limit);
+    }
+
+    /**
+     * 删除以 prefix 开头的所有键
+     *
+     * @return 删除的数量
+     */
+    public int removeByPrefix(@NonNull String prefix) {
+        List<String> keys = keysWithPrefix(prefix);
+        if (!keys.isEmpty()) removeValuesForKeys(keys.toArray(new String[0]));
+        return keys.size();
+    }
+
+    public void removeValuesForKeys(String[] keys) {
+        for (String key : keys) {
+            beforeWrite(key);
+        }
+        // 大值连同分块逐个删除，其余的批量删除
+        boolean largeValues = mLargeValues != null;
+        List<String> plain = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            if (largeValues || hasLargeValue(key)) {
+                removeLarge(key);
+            } else {
+                plain.add(key);
+            }
+        }
+        if (plain.isEmpty()) return;
+        WriteQueue queue = mWriteQueue;
+        if (queue != null) {
+            for (String key : plain) {
+                queue.remove(key);
+            }
+        } else {
+            mStore.removeValuesForKeys(plain.toArray(new String[0]));
+        }
+        for (String key : plain) {
+            changed(key, false);
+        }
+    }
+
+    public void importFromSP(SharedPreferences sharedPreferences) {
+        flush();
+        mStore.importFromSharedPreferences(sharedPreferences);
+        if (mKeyIndex != null) newKeyIndex();
+        invalidateObjectCache();
+        mObservers.onAllChanged();
+    }
+
+    /**
+     * 写入或删除 key 之后调用，使缓存的对象失效、更新键索引并通知监听
+     *
+     * @param present 写入后键是否存在，写入 {@code null} 等同删除
+     */
+    private void changed(String key, boolean present) {
+        ObjectCache objectCache = mObjectCache;
+        if (objectCache != null) objectCache.invalidate(key);
+        KeyIndex keyIndex = mKeyIndex;
+        if (keyIndex != null) {
+            if (present) {
+                keyIndex.add(key);
+            } else {
+                keyIndex.remove(key);
+            }
+        }
+        mObservers.onChanged(key);
+    }
+
+    private void beforeWrite(String key) {
+        SchemaMigrator migrator = mMigrator;
+        if (migrator != null && migrator.isActive()) migrator.beforeWrite(key);
+    }
+
+    /**
+     * @param after 从该键之后开始，为 {@code null} 时从头开始
+     * @return 按字典序排列的最多 limit 个键，不含保留键
+     */
+    List<String> sortedKeysAfter(String after, int limit) {
+        NavigableSet<String> keys = keyIndex().withPrefix("");
+        return keysAfter(after == null ? keys : keys.tailSet(after, false), limit);
+    }
+
+    private static List<String> keysAfter(NavigableSet<String> keys, int limit) {
+        List<String> page = new ArrayList<>(Math.min(limit, 64));
+        for (String key : keys) {
+            if (page.size() >= limit) break;
+            page.add(key);
+        }
+        return page;
+    }
+
+    private KeyIndex keyIndex() {
+        KeyIndex keyIndex = mKeyIndex;
+        if (keyIndex != null && keyIndex.isStarted()) return keyIndex;
+        synchronized (this) {
+            if (mKeyIndex == null) newKeyIndex();
+            return mKeyIndex;
+        }
+    }
+
+    /**
+     * 先发布索引再读取全部的键，两者之间的写入也会进入索引
+     */
+    private synchronized KeyIndex newKeyIndex() {
+        KeyIndex keyIndex = new KeyIndex();
+        mKeyIndex = keyIndex;
+        keyIndex.start(getAllKeys());
+        return keyIndex;
+    }
+
+    /**
+     * 使缓存的所有对象失效，编解码替换后由 {@link MMKVUtil} 调用
+     */
+    public void invalidateObjectCache() {
+        ObjectCache objectCache = mObjectCache;
+        if (objectCache != null) objectCache.invalidateAll();
+    }
+
+    private static synchronized void registerFlushOnBackground(MMKVNamespace namespace) {
+        ASYNC_NAMESPACES.add(namespace);
+        if (sFlushOnBackground) return;
+        sFlushOnBackground = true;
+        TopActivityManager.getInstance().addListener(new TopActivityManager.OnAppStatusChangedListener() {
+            @Override
+            public void onForeground() {
+            }
+
+            @Override
+            public void onBackground() {
+                if (ASYNC_NAMESPACES.isEmpty()) return;
+                CacheExecutors.writer().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (MMKVNamespace namespace : ASYNC_NAMESPACES) {
+                            namespace.flush();
+                        }
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.dale.utils.mmkv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 一步数据迁移，把匹配的键从上一个版本升级到 {@link #version}，见 {@link MMKVNamespace#setSchema(int, Migration...)}
+ * <p>
+ * 只处理字符串保存的值（{@code put(String, String)} 与 {@code putObject}），通过 {@link #appliesTo(String)}
+ * 声明涉及的键，其他类型的键不要匹配。
+ */
+public abstract class Migration {
+
+    /** 迁移后的版本，从 1 开始 */
+    public final int version;
+
+    protected Migration(int version) {
+        if (version <= 0) throw new IllegalArgumentException("version <= 0");
+        this.version = version;
+    }
+
+    /**
+     * @return 该步骤是否处理 key
+     */
+    public abstract boolean appliesTo(@NonNull String key);
+
+    /**
+     * 在后台线程或第一次读取 key 的线程调用
+     *
+     * @param value 上一个版本保存的字符串
+     * @return 新版本的字符串，返回 {@code null} 时删除该键
+     */
+    @Nullable
+    public abstract String migrate(@NonNull String key, @NonNull String value);
+}
@@ -0,0 +1,88 @@
+package com.dale.utils.mmkv;
+
+import androidx.collection.LruCache;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+/**
+ * {@link com.dale.utils.MMKVUtil} 中解码后对象的缓存，每个键只缓存最近一次读取的类型
+ * <p>
+ * 写入和删除时由 MMKVUtil 使对应的键失效。失效会使代数加一，读取开始后发生过失效的结果不会写入缓存，
+ * 避免并发读写时旧对象被放回缓存。多进程模式下其他进程的写入不经过这里，缓存条目同时保存原始数据，
+ * 读取时与当前原始数据比较，一致才返回缓存的对象。
+ */
+public final class ObjectCache {
+
+    private final LruCache<String, Entry> mCache;
+    private long mGeneration;
+
+    /**
+     * @param maxCount 缓存的最大计数
+     */
+    public ObjectCache(int maxCount) {
+        mCache = new LruCache<>(maxCount);
+    }
+
+    public int maxCount() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * @return 当前代数，传给 {@link #put(String, Type, boolean, Object, Object, long)}
+     */
+    public synchronized long generation() {
+        return mGeneration;
+    }
+
+    /**
+     * @param key    MMKV 的键
+     * @param type   对象类型
+     * @param binary 是否为 {@link BinaryCodec} 编码的数据
+     * @param raw    当前的原始数据（String 或 byte[]），为 {@code null} 时不比较
+     * @return 缓存的对象，未命中时返回 {@code null}
+     */
+    public Object get(String key, Type type, boolean binary, Object raw) {
+        Entry entry = mCache.get(key);
+        if (entry == null || entry.binary != binary || !entry.type.equals(type)) return null;
+        if (raw != null && !sameRaw(entry.raw, raw)) return null;
+        return entry.value;
+    }
+
+    /**
+     * @param generation 读取原始数据之前的 {@link #generation()}
+     */
+    public synchronized void put(String key, Type type, boolean binary, Object raw, Object value, long generation) {
+        if (value == null || generation != mGeneration) return;
+        mCache.put(key, new Entry(type, binary, raw, value));
+    }
+
+    public synchronized void invalidate(String key) {
+        mGeneration++;
+        mCache.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        mGeneration++;
+        mCache.evictAll();
+    }
+
+    private static boolean sameRaw(Object cached, Object raw) {
+        if (cached instanceof byte[] && raw instanceof byte[]) return Arrays.equals((byte[]) cached, (byte[]) raw);
+        return raw.equals(cached);
+    }
+
+    private static final class Entry {
+        final Type type;
+        final boolean binary;
+        final Object raw;
+        final Object value;
+
+        Entry(Type type, boolean binary, Object raw, Object value) {
+            this.type = type;
+            this.binary = binary;
+            this.raw = raw;
+            this.value = value;
+        }
+    }
+}
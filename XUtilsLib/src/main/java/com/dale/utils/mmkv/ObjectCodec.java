@@ -0,0 +1,31 @@
+package com.dale.utils.mmkv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.reflect.Type;
+
+/**
+ * {@link com.dale.utils.MMKVUtil#putObject(String, Object)} 与 {@link com.dale.utils.MMKVUtil#getObject(String, Type)}
+ * 使用的对象编解码，默认为 {@link GsonCodec}，可通过 {@link com.dale.utils.MMKVUtil#setObjectCodec(ObjectCodec)} 替换
+ * <p>
+ * 实现需要线程安全。
+ */
+public interface ObjectCodec {
+
+    /**
+     * @param value 要保存的对象
+     * @return 写入 MMKV 的字符串
+     */
+    @NonNull
+    String encode(@NonNull Object value);
+
+    /**
+     * @param data 从 MMKV 读出的字符串
+     * @param type 对象类型
+     * @param <T>  对象类型
+     * @return 解码后的对象
+     */
+    @Nullable
+    <T> T decode(@NonNull String data, @NonNull Type type);
+}
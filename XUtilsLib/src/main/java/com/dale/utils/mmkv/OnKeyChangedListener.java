@@ -0,0 +1,19 @@
+package com.dale.utils.mmkv;
+
+import androidx.annotation.NonNull;
+
+import java.util.Set;
+
+/**
+ * 键变化的监听，见 {@link MMKVNamespace#observe(String, OnKeyChangedListener)}
+ */
+public interface OnKeyChangedListener {
+
+    /**
+     * 同一帧内的多次写入合并为一次回调
+     *
+     * @param namespace 发生变化的命名空间
+     * @param keys      变化的键，只包含与订阅匹配的键；为空时表示整个命名空间被清空或导入
+     */
+    void onKeysChanged(@NonNull MMKVNamespace namespace, @NonNull Set<String> keys);
+}
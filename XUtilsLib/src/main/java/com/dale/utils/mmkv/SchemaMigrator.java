@@ -0,0 +1,267 @@
+package com.dale.utils.mmkv;
+
+import com.dale.utils.LogUtils;
+import com.dale.utils.cache.CacheExecutors;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个命名空间的版本迁移
+ * <p>
+ * 命名空间的版本保存在保留键中。需要迁移时，后台按键的字典序分批迁移，每批之后把最后一个键作为检查点保存，
+ * 进程被杀后从检查点继续；检查点之前的键已升级到本轮的目标版本。尚未轮到的键在第一次读取时单独迁移，
+ * 并写入该键的版本标记；迁移期间写入的键也写入标记，表示已是最新版本，后台不会再用旧的步骤处理它。
+ * 单个键的迁移和写入标记都持有本对象的锁，后台迁移不会覆盖同时发生的写入；读取时先在锁外检查标记和检查点，
+ * 已迁移的键不必等待后台进行中的一批。
+ */
+final class SchemaMigrator {
+
+    private static final String VERSION_KEY = "\0schema.version";
+    private static final String TARGET_KEY = "\0schema.target";
+    private static final String CURSOR_KEY = "\0schema.cursor";
+    private static final String MARKER_SUFFIX = "\0schema";
+
+    private final MMKVNamespace mNamespace;
+    private final int mLatest;
+    private final Migration[] mMigrations;
+    /** 所有键至少已是该版本 */
+    private int mVersion;
+    /** 本轮后台迁移的目标版本，先于 mCursor 读取 */
+    private volatile int mPassTarget;
+    /** 本轮已迁移的最后一个键，换下一轮时先置空再修改 mPassTarget */
+    private volatile String mCursor;
+    private volatile boolean mActive;
+    private boolean mBackgroundRunning;
+
+    SchemaMigrator(MMKVNamespace namespace, int latest, Migration[] migrations) {
+        mNamespace = namespace;
+        mLatest = latest;
+        mMigrations = migrations.clone();
+        Arrays.sort(mMigrations, new Comparator<Migration>() {
+            @Override
+            public int compare(Migration o1, Migration o2) {
+                return o1.version < o2.version ? -1 : (o1.version == o2.version ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < mMigrations.length; i++) {
+            if (mMigrations[i].version > latest) {
+                throw new IllegalArgumentException("migration version " + mMigrations[i].version + " > " + latest);
+            }
+            if (i > 0 && mMigrations[i].version == mMigrations[i - 1].version) {
+                throw new IllegalArgumentException("duplicate migration version " + mMigrations[i].version);
+            }
+        }
+        load();
+    }
+
+    private synchronized void load() {
+        String version = mNamespace.readString(VERSION_KEY, null);
+        if (version == null) {
+            // 没有记录版本：空的命名空间直接是最新版本，已有数据视为版本 0
+            mVersion = mNamespace.getCount() == 0 ? mLatest : 0;
+            mNamespace.write(VERSION_KEY, String.valueOf(mVersion));
+        } else {
+            mVersion = parse(version, 0);
+        }
+        if (mVersion >= mLatest) {
+            mActive = false;
+            return;
+        }
+        String target = mNamespace.readString(TARGET_KEY, null);
+        mPassTarget = target == null ? mLatest : Math.min(parse(target, mLatest), mLatest);
+        mCursor = target == null ? null : mNamespace.readString(CURSOR_KEY, null);
+        if (target == null) mNamespace.write(TARGET_KEY, String.valueOf(mPassTarget));
+        mActive = true;
+    }
+
+    /**
+     * @return 所有键至少已升级到的版本
+     */
+    synchronized int getVersion() {
+        return mVersion;
+    }
+
+    boolean isActive() {
+        return mActive;
+    }
+
+    /**
+     * 通过命名空间写入或删除 key 之前调用
+     */
+    synchronized void beforeWrite(String key) {
+        if (!mActive) return;
+        mNamespace.write(markerKey(key), String.valueOf(mLatest));
+    }
+
+    /**
+     * 读取 key 之前调用，尚未迁移时在当前线程迁移到最新版本
+     */
+    void migrateOnRead(String key) {
+        if (!mActive || isMigrated(key)) return;
+        synchronized (this) {
+            migrateKey(key);
+        }
+    }
+
+    /**
+     * 不持有锁，用于跳过已迁移到最新版本的键；返回 {@code false} 时需要加锁后再判断
+     */
+    private boolean isMigrated(String key) {
+        if (parse(mNamespace.readString(markerKey(key), null), -1) >= mLatest) return true;
+        int passTarget = mPassTarget;
+        String cursor = mCursor;
+        return passTarget >= mLatest && cursor != null && key.compareTo(cursor) <= 0;
+    }
+
+    private void migrateKey(String key) {
+        if (!mActive) return;
+        int keyVersion = keyVersion(key);
+        if (keyVersion >= mLatest || !applies(key, keyVersion, mLatest)) return;
+        String value = mNamespace.loadString(key, null);
+        if (value == null) return;
+        String migrated = migrate(key, value, keyVersion, mLatest);
+        if (migrated != value) mNamespace.storeString(key, migrated);
+        mNamespace.write(markerKey(key), String.valueOf(mLatest));
+    }
+
+    /**
+     * 被新的设置替换时调用，等待进行中的一批完成，之后不再迁移
+     */
+    synchronized void close() {
+        mActive = false;
+    }
+
+    /**
+     * 命名空间被清空后调用
+     */
+    synchronized void onCleared() {
+        mVersion = mLatest;
+        mCursor = null;
+        mActive = false;
+        mNamespace.write(VERSION_KEY, String.valueOf(mVersion));
+    }
+
+    /**
+     * 在后台每隔 intervalMillis 迁移 batchSize 个键，直到完成
+     */
+    synchronized void migrateInBackground(final int batchSize, final long intervalMillis) {
+        if (!mActive || mBackgroundRunning) return;
+        mBackgroundRunning = true;
+        final Runnable batch = new Runnable() {
+            @Override
+            public void run() {
+                boolean more;
+                try {
+                    more = migrateBatch(batchSize);
+                } catch (RuntimeException e) {
+                    LogUtils.e("MMKV migration failed: " + mNamespace.getName(), e);
+                    more = false;
+                }
+                if (more) {
+                    schedule(this, intervalMillis);
+                } else {
+                    synchronized (SchemaMigrator.this) {
+                        mBackgroundRunning = false;
+                    }
+                }
+            }
+        };
+        schedule(batch, 0);
+    }
+
+    private static void schedule(final Runnable batch, long delayMillis) {
+        CacheExecutors.scheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                CacheExecutors.writer().execute(batch);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 是否还需要继续
+     */
+    synchronized boolean migrateBatch(int batchSize) {
+        if (!mActive) return false;
+        List<String> keys = mNamespace.sortedKeysAfter(mCursor, batchSize);
+        if (keys.isEmpty()) {
+            completePass();
+            return mActive;
+        }
+        for (String key : keys) {
+            int keyVersion = keyVersion(key);
+            if (keyVersion < mPassTarget && applies(key, keyVersion, mPassTarget)) {
+                String value = mNamespace.loadString(key, null);
+                if (value != null) {
+                    String migrated = migrate(key, value, keyVersion, mPassTarget);
+                    if (migrated != value) mNamespace.storeString(key, migrated);
+                }
+                keyVersion = mPassTarget;
+            }
+            // 检查点越过该键后由检查点表示版本，标记只在版本更高时保留
+            if (keyVersion <= mPassTarget) mNamespace.write(markerKey(key), null);
+        }
+        mCursor = keys.get(keys.size() - 1);
+        mNamespace.write(CURSOR_KEY, mCursor);
+        return true;
+    }
+
+    private void completePass() {
+        mVersion = mPassTarget;
+        mNamespace.write(VERSION_KEY, String.valueOf(mVersion));
+        for (String key : mNamespace.getAllKeys()) {
+            if (key.endsWith(MARKER_SUFFIX) && parse(mNamespace.readString(key, null), 0) <= mVersion) {
+                mNamespace.write(key, null);
+            }
+        }
+        mCursor = null;
+        mNamespace.write(CURSOR_KEY, null);
+        if (mVersion < mLatest) {
+            // 迁移期间又升级了版本，开始下一轮
+            mPassTarget = mLatest;
+            mNamespace.write(TARGET_KEY, String.valueOf(mPassTarget));
+        } else {
+            mNamespace.write(TARGET_KEY, null);
+            mActive = false;
+        }
+    }
+
+    private int keyVersion(String key) {
+        String marker = mNamespace.readString(markerKey(key), null);
+        if (marker != null) return parse(marker, mVersion);
+        if (mCursor != null && key.compareTo(mCursor) <= 0) return mPassTarget;
+        return mVersion;
+    }
+
+    private boolean applies(String key, int from, int to) {
+        for (Migration migration : mMigrations) {
+            if (migration.version > from && migration.version <= to && migration.appliesTo(key)) return true;
+        }
+        return false;
+    }
+
+    private String migrate(String key, String value, int from, int to) {
+        for (Migration migration : mMigrations) {
+            if (migration.version <= from || migration.version > to || !migration.appliesTo(key)) continue;
+            value = migration.migrate(key, value);
+            if (value == null) break;
+        }
+        return value;
+    }
+
+    private static String markerKey(String key) {
+        return key + MARKER_SUFFIX;
+    }
+
+    private static int parse(String value, int defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
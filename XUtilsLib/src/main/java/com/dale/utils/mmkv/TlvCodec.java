@@ -0,0 +1,1064 @@
+package com.dale.utils.mmkv;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的 tag-length-value 二进制编解码
+ * <p>
+ * 每个类的字段结构只反射一次并缓存。对象编码为 长度 + 若干（字段键, 值），字段键为 {@code tag << 3 | 线路类型}，
+ * tag 默认取字段名的哈希，也可以用 {@link Tag} 指定较小的值以节省空间。整数使用 zigzag 变长编码，
+ * 字符串直接按 UTF-8 写入缓冲区。读取时直接从字节数组解码，遇到未知或类型已变化的字段按线路类型跳过，
+ * 因此增删字段后旧数据仍可读取。
+ * <p>
+ * 支持基本类型及其包装类、String、byte[]、枚举、数组、Collection、Map 和由这些类型组成的普通对象；
+ * 为 {@code null} 的字段不写入，读取后保持构造函数中的默认值。
+ */
+public final class TlvCodec implements BinaryCodec {
+
+    /**
+     * 指定字段的 tag，取值 1 ~ 16383，同一个类中不能重复；小于 16 时字段键只占一个字节
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    public @interface Tag {
+        int value();
+    }
+
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    private static final int MAX_TAG = 0x3FFF;
+    /** 按字段名哈希得到的 tag 放在 {@link Tag} 之上的区间，字段键固定为三个字节 */
+    private static final int HASHED_TAG_BASE = 0x4000;
+    private static final int MAX_HASHED_TAG = 0x3FFFF;
+
+    private final ConcurrentHashMap<Type, ValueCodec> mCodecs = new ConcurrentHashMap<>();
+
+    @NonNull
+    @Override
+    public byte[] encode(@NonNull Object value) {
+        Writer writer = new Writer();
+        writer.writeByte(VERSION);
+        codecFor(value.getClass()).write(writer, value);
+        return writer.toByteArray();
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T decode(@NonNull byte[] data, @NonNull Type type) {
+        Reader reader = new Reader(data);
+        int version = reader.readByte();
+        if (version != VERSION) throw new IllegalArgumentException("Unsupported TLV version: " + version);
+        return (T) codecFor(type).read(reader);
+    }
+
+    /**
+     * 提前反射类型的字段结构，可放在后台线程执行
+     *
+     * @param types 热点类型
+     */
+    public void warmUp(@NonNull Type... types) {
+        for (Type type : types) {
+            ValueCodec codec = codecFor(type);
+            if (codec instanceof ObjectValueCodec) ((ObjectValueCodec) codec).bindings();
+        }
+    }
+
+    private ValueCodec codecFor(Type type) {
+        ValueCodec codec = mCodecs.get(type);
+        if (codec != null) return codec;
+        codec = createCodec(type);
+        ValueCodec existing = mCodecs.putIfAbsent(type, codec);
+        return existing != null ? existing : codec;
+    }
+
+    private ValueCodec createCodec(Type type) {
+        if (type instanceof WildcardType) return codecFor(((WildcardType) type).getUpperBounds()[0]);
+        if (type instanceof GenericArrayType) {
+            Type component = ((GenericArrayType) type).getGenericComponentType();
+            return new ArrayValueCodec(rawType(component), codecFor(component));
+        }
+        Class<?> raw = rawType(type);
+        if (raw == boolean.class || raw == Boolean.class) return PrimitiveCodec.BOOLEAN;
+        if (raw == byte.class || raw == Byte.class) return PrimitiveCodec.BYTE;
+        if (raw == short.class || raw == Short.class) return PrimitiveCodec.SHORT;
+        if (raw == char.class || raw == Character.class) return PrimitiveCodec.CHAR;
+        if (raw == int.class || raw == Integer.class) return PrimitiveCodec.INT;
+        if (raw == long.class || raw == Long.class) return PrimitiveCodec.LONG;
+        if (raw == float.class || raw == Float.class) return PrimitiveCodec.FLOAT;
+        if (raw == double.class || raw == Double.class) return PrimitiveCodec.DOUBLE;
+        if (raw == String.class) return StringCodec.INSTANCE;
+        if (raw == byte[].class) return BytesCodec.INSTANCE;
+        if (Enum.class.isAssignableFrom(raw)) {
+            // 带类体的枚举常量是枚举类的匿名子类
+            return new EnumCodec(raw.isEnum() ? raw : raw.getSuperclass());
+        }
+        if (raw.isArray()) return new ArrayValueCodec(raw.getComponentType(), codecFor(raw.getComponentType()));
+        if (Collection.class.isAssignableFrom(raw)) {
+            return new CollectionCodec(raw, elementCodec(type, 0));
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            return new MapCodec(raw, elementCodec(type, 0), elementCodec(type, 1));
+        }
+        if (raw == Object.class || raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+            throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+        return new ObjectValueCodec(raw);
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) return (Class<?>) type;
+        if (type instanceof ParameterizedType) return (Class<?>) ((ParameterizedType) type).getRawType();
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        if (type instanceof WildcardType) return rawType(((WildcardType) type).getUpperBounds()[0]);
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    /**
+     * 没有泛型参数时（如直接编码一个 ArrayList）按元素的实际类型写入，读取时仍需要传入完整的泛型类型
+     */
+    private ValueCodec elementCodec(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            return codecFor(((ParameterizedType) type).getActualTypeArguments()[index]);
+        }
+        return new RuntimeTypeCodec();
+    }
+
+    /**
+     * @return 类型中是否有缺少泛型参数的 Collection 或 Map，如 {@code List}、{@code Map<String, List>}
+     */
+    private static boolean hasRawContainer(Type type) {
+        if (type instanceof Class) {
+            Class<?> c = (Class<?>) type;
+            if (c.isArray()) return hasRawContainer(c.getComponentType());
+            return Collection.class.isAssignableFrom(c) || Map.class.isAssignableFrom(c);
+        }
+        if (type instanceof ParameterizedType) {
+            Class<?> raw = rawType(type);
+            if (!Collection.class.isAssignableFrom(raw) && !Map.class.isAssignableFrom(raw)) return false;
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                if (hasRawContainer(argument)) return true;
+            }
+            return false;
+        }
+        if (type instanceof GenericArrayType) return hasRawContainer(((GenericArrayType) type).getGenericComponentType());
+        if (type instanceof WildcardType) return hasRawContainer(((WildcardType) type).getUpperBounds()[0]);
+        return false;
+    }
+
+    private static int zigzag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    private static int unzigzag(int n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * 某一类型的值的编解码，长度类型的值自带长度前缀
+     */
+    private abstract static class ValueCodec {
+        abstract int wireType();
+
+        abstract void write(Writer writer, Object value);
+
+        abstract Object read(Reader reader);
+    }
+
+    private static final class PrimitiveCodec extends ValueCodec {
+        static final PrimitiveCodec BOOLEAN = new PrimitiveCodec('Z', WIRE_VARINT);
+        static final PrimitiveCodec BYTE = new PrimitiveCodec('B', WIRE_VARINT);
+        static final PrimitiveCodec SHORT = new PrimitiveCodec('S', WIRE_VARINT);
+        static final PrimitiveCodec CHAR = new PrimitiveCodec('C', WIRE_VARINT);
+        static final PrimitiveCodec INT = new PrimitiveCodec('I', WIRE_VARINT);
+        static final PrimitiveCodec LONG = new PrimitiveCodec('J', WIRE_VARINT);
+        static final PrimitiveCodec FLOAT = new PrimitiveCodec('F', WIRE_FIXED32);
+        static final PrimitiveCodec DOUBLE = new PrimitiveCodec('D', WIRE_FIXED64);
+
+        /** JVM 类型描述符 */
+        final char kind;
+        private final int mWireType;
+
+        private PrimitiveCodec(char kind, int wireType) {
+            this.kind = kind;
+            mWireType = wireType;
+        }
+
+        @Override
+        int wireType() {
+            return mWireType;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            switch (kind) {
+                case 'Z':
+                    writer.writeVarint32((Boolean) value ? 1 : 0);
+                    break;
+                case 'C':
+                    writer.writeVarint32((Character) value);
+                    break;
+                case 'J':
+                    writer.writeVarint64(zigzag((Long) value));
+                    break;
+                case 'F':
+                    writer.writeFixed32(Float.floatToIntBits((Float) value));
+                    break;
+                case 'D':
+                    writer.writeFixed64(Double.doubleToLongBits((Double) value));
+                    break;
+                default:
+                    writer.writeVarint32(zigzag(((Number) value).intValue()));
+                    break;
+            }
+        }
+
+        @Override
+        Object read(Reader reader) {
+            switch (kind) {
+                case 'Z':
+                    return reader.readVarint32() != 0;
+                case 'B':
+                    return (byte) unzigzag(reader.readVarint32());
+                case 'S':
+                    return (short) unzigzag(reader.readVarint32());
+                case 'C':
+                    return (char) reader.readVarint32();
+                case 'J':
+                    return unzigzag(reader.readVarint64());
+                case 'F':
+                    return Float.intBitsToFloat(reader.readFixed32());
+                case 'D':
+                    return Double.longBitsToDouble(reader.readFixed64());
+                default:
+                    return unzigzag(reader.readVarint32());
+            }
+        }
+
+        /**
+         * 基本类型字段直接读写，不装箱
+         */
+        void writeField(Writer writer, Field field, Object target) throws IllegalAccessException {
+            switch (kind) {
+                case 'Z':
+                    writer.writeVarint32(field.getBoolean(target) ? 1 : 0);
+                    break;
+                case 'C':
+                    writer.writeVarint32(field.getChar(target));
+                    break;
+                case 'J':
+                    writer.writeVarint64(zigzag(field.getLong(target)));
+                    break;
+                case 'F':
+                    writer.writeFixed32(Float.floatToIntBits(field.getFloat(target)));
+                    break;
+                case 'D':
+                    writer.writeFixed64(Double.doubleToLongBits(field.getDouble(target)));
+                    break;
+                default:
+                    writer.writeVarint32(zigzag(field.getInt(target)));
+                    break;
+            }
+        }
+
+        void readField(Reader reader, Field field, Object target) throws IllegalAccessException {
+            switch (kind) {
+                case 'Z':
+                    field.setBoolean(target, reader.readVarint32() != 0);
+                    break;
+                case 'B':
+                    field.setByte(target, (byte) unzigzag(reader.readVarint32()));
+                    break;
+                case 'S':
+                    field.setShort(target, (short) unzigzag(reader.readVarint32()));
+                    break;
+                case 'C':
+                    field.setChar(target, (char) reader.readVarint32());
+                    break;
+                case 'J':
+                    field.setLong(target, unzigzag(reader.readVarint64()));
+                    break;
+                case 'F':
+                    field.setFloat(target, Float.intBitsToFloat(reader.readFixed32()));
+                    break;
+                case 'D':
+                    field.setDouble(target, Double.longBitsToDouble(reader.readFixed64()));
+                    break;
+                default:
+                    field.setInt(target, unzigzag(reader.readVarint32()));
+                    break;
+            }
+        }
+    }
+
+    private final class RuntimeTypeCodec extends ValueCodec {
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            codecFor(value.getClass()).write(writer, value);
+        }
+
+        @Override
+        Object read(Reader reader) {
+            throw new IllegalArgumentException("Missing type arguments, decode with a ParameterizedType");
+        }
+    }
+
+    private static final class StringCodec extends ValueCodec {
+        static final StringCodec INSTANCE = new StringCodec();
+
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            writer.writeString((String) value);
+        }
+
+        @Override
+        Object read(Reader reader) {
+            return reader.readString();
+        }
+    }
+
+    private static final class BytesCodec extends ValueCodec {
+        static final BytesCodec INSTANCE = new BytesCodec();
+
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            byte[] bytes = (byte[]) value;
+            writer.writeVarint32(bytes.length);
+            writer.writeBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        Object read(Reader reader) {
+            int length = reader.readVarint32();
+            return reader.readBytes(length);
+        }
+    }
+
+    /**
+     * 按名称保存，调整枚举顺序不影响旧数据，不存在的名称读取为 {@code null}
+     */
+    private static final class EnumCodec extends ValueCodec {
+        private final Map<String, Object> mConstants = new HashMap<>();
+
+        EnumCodec(Class<?> enumType) {
+            for (Object constant : enumType.getEnumConstants()) {
+                mConstants.put(((Enum<?>) constant).name(), constant);
+            }
+        }
+
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            writer.writeString(((Enum<?>) value).name());
+        }
+
+        @Override
+        Object read(Reader reader) {
+            return mConstants.get(reader.readString());
+        }
+    }
+
+    /**
+     * 长度 + 元素个数 + 元素，每个元素前有一个字节标记是否为 {@code null}
+     */
+    private static final class CollectionCodec extends ValueCodec {
+        private final Class<?> mRawType;
+        private final ValueCodec mElementCodec;
+        private final Constructor<?> mConstructor;
+
+        CollectionCodec(Class<?> rawType, ValueCodec elementCodec) {
+            mRawType = rawType;
+            mElementCodec = elementCodec;
+            mConstructor = concreteConstructor(rawType);
+        }
+
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            Collection<?> collection = (Collection<?>) value;
+            int start = writer.beginLength();
+            writer.writeVarint32(collection.size());
+            for (Object element : collection) {
+                writeNullable(writer, mElementCodec, element);
+            }
+            writer.endLength(start);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object read(Reader reader) {
+            int end = reader.readLimit();
+            int size = reader.readCount(end);
+            Collection<Object> collection;
+            if (mConstructor != null) {
+                collection = (Collection<Object>) newInstance(mConstructor);
+            } else if (SortedSet.class.isAssignableFrom(mRawType)) {
+                collection = new TreeSet<>();
+            } else if (Set.class.isAssignableFrom(mRawType)) {
+                collection = new LinkedHashSet<>();
+            } else {
+                collection = new ArrayList<>(size);
+            }
+            for (int i = 0; i < size; i++) {
+                collection.add(readNullable(reader, mElementCodec));
+            }
+            reader.skipTo(end);
+            return collection;
+        }
+    }
+
+    private static final class MapCodec extends ValueCodec {
+        private final Class<?> mRawType;
+        private final ValueCodec mKeyCodec;
+        private final ValueCodec mValueCodec;
+        private final Constructor<?> mConstructor;
+
+        MapCodec(Class<?> rawType, ValueCodec keyCodec, ValueCodec valueCodec) {
+            mRawType = rawType;
+            mKeyCodec = keyCodec;
+            mValueCodec = valueCodec;
+            mConstructor = concreteConstructor(rawType);
+        }
+
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int start = writer.beginLength();
+            writer.writeVarint32(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeNullable(writer, mKeyCodec, entry.getKey());
+                writeNullable(writer, mValueCodec, entry.getValue());
+            }
+            writer.endLength(start);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object read(Reader reader) {
+            int end = reader.readLimit();
+            int size = reader.readCount(end);
+            Map<Object, Object> map;
+            if (mConstructor != null) {
+                map = (Map<Object, Object>) newInstance(mConstructor);
+            } else if (SortedMap.class.isAssignableFrom(mRawType)) {
+                map = new TreeMap<>();
+            } else {
+                map = new LinkedHashMap<>();
+            }
+            for (int i = 0; i < size; i++) {
+                Object key = readNullable(reader, mKeyCodec);
+                map.put(key, readNullable(reader, mValueCodec));
+            }
+            reader.skipTo(end);
+            return map;
+        }
+    }
+
+    private static final class ArrayValueCodec extends ValueCodec {
+        private final Class<?> mComponentType;
+        private final ValueCodec mComponentCodec;
+
+        ArrayValueCodec(Class<?> componentType, ValueCodec componentCodec) {
+            mComponentType = componentType;
+            mComponentCodec = componentCodec;
+        }
+
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            int length = Array.getLength(value);
+            int start = writer.beginLength();
+            writer.writeVarint32(length);
+            boolean primitive = mComponentType.isPrimitive();
+            for (int i = 0; i < length; i++) {
+                if (primitive) {
+                    mComponentCodec.write(writer, Array.get(value, i));
+                } else {
+                    writeNullable(writer, mComponentCodec, Array.get(value, i));
+                }
+            }
+            writer.endLength(start);
+        }
+
+        @Override
+        Object read(Reader reader) {
+            int end = reader.readLimit();
+            int length = reader.readCount(end);
+            Object array = Array.newInstance(mComponentType, length);
+            boolean primitive = mComponentType.isPrimitive();
+            for (int i = 0; i < length; i++) {
+                Array.set(array, i, primitive ? mComponentCodec.read(reader) : readNullable(reader, mComponentCodec));
+            }
+            reader.skipTo(end);
+            return array;
+        }
+    }
+
+    /**
+     * 普通对象，字段结构在第一次使用时反射，允许类型引用自身
+     */
+    private final class ObjectValueCodec extends ValueCodec {
+        private final Class<?> mType;
+        private volatile FieldBinding[] mBindings;
+        /** 按 tag 排序，二分查找 */
+        private volatile int[] mTags;
+        private Constructor<?> mConstructor;
+
+        ObjectValueCodec(Class<?> type) {
+            mType = type;
+        }
+
+        @Override
+        int wireType() {
+            return WIRE_LENGTH;
+        }
+
+        FieldBinding[] bindings() {
+            FieldBinding[] bindings = mBindings;
+            if (bindings != null) return bindings;
+            synchronized (this) {
+                if (mBindings == null) bind();
+                return mBindings;
+            }
+        }
+
+        private void bind() {
+            List<FieldBinding> list = new ArrayList<>();
+            for (Class<?> c = mType; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) continue;
+                    if (hasRawContainer(field.getGenericType())) {
+                        // 能按元素的实际类型写入，但读取时没有泛型参数，写入的数据永远读不回来
+                        throw new IllegalArgumentException("Missing type arguments: " + c.getName() + "." + field.getName());
+                    }
+                    field.setAccessible(true);
+                    list.add(new FieldBinding(field, tagOf(field), codecFor(field.getGenericType())));
+                }
+            }
+            FieldBinding[] bindings = list.toArray(new FieldBinding[0]);
+            Arrays.sort(bindings, new Comparator<FieldBinding>() {
+                @Override
+                public int compare(FieldBinding o1, FieldBinding o2) {
+                    return o1.tag < o2.tag ? -1 : (o1.tag == o2.tag ? 0 : 1);
+                }
+            });
+            int[] tags = new int[bindings.length];
+            for (int i = 0; i < bindings.length; i++) {
+                tags[i] = bindings[i].tag;
+                if (i > 0 && tags[i] == tags[i - 1]) {
+                    // 字段名哈希冲突时需要用 @Tag 为其中一个字段指定 tag
+                    throw new IllegalStateException("Duplicate tag " + tags[i] + " in " + mType.getName()
+                            + ": " + bindings[i - 1].field.getName() + ", " + bindings[i].field.getName());
+                }
+            }
+            mConstructor = declaredConstructor(mType);
+            mTags = tags;
+            mBindings = bindings;
+        }
+
+        @Override
+        void write(Writer writer, Object value) {
+            FieldBinding[] bindings = bindings();
+            int start = writer.beginLength();
+            try {
+                for (FieldBinding binding : bindings) {
+                    binding.write(writer, value);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            writer.endLength(start);
+        }
+
+        @Override
+        Object read(Reader reader) {
+            bindings();
+            int end = reader.readLimit();
+            Object instance = mConstructor != null ? newInstance(mConstructor) : UnsafeAllocator.allocate(mType);
+            FieldBinding[] bindings = mBindings;
+            int[] tags = mTags;
+            try {
+                while (reader.position() < end) {
+                    int key = reader.readVarint32();
+                    int wireType = key & 7;
+                    int index = Arrays.binarySearch(tags, key >>> 3);
+                    if (index < 0 || bindings[index].codec.wireType() != wireType) {
+                        // 已删除或改了类型的字段
+                        reader.skip(wireType);
+                    } else {
+                        bindings[index].read(reader, instance);
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            reader.skipTo(end);
+            return instance;
+        }
+    }
+
+    private static final class FieldBinding {
+        final Field field;
+        final int tag;
+        final ValueCodec codec;
+        final int key;
+        /** 基本类型字段的编解码，引用类型为 {@code null} */
+        final PrimitiveCodec primitive;
+
+        FieldBinding(Field field, int tag, ValueCodec codec) {
+            this.field = field;
+            this.tag = tag;
+            this.codec = codec;
+            this.key = (tag << 3) | codec.wireType();
+            this.primitive = field.getType().isPrimitive() ? (PrimitiveCodec) codec : null;
+        }
+
+        void write(Writer writer, Object target) throws IllegalAccessException {
+            if (primitive != null) {
+                writer.writeVarint32(key);
+                primitive.writeField(writer, field, target);
+                return;
+            }
+            Object value = field.get(target);
+            if (value == null) return;
+            writer.writeVarint32(key);
+            codec.write(writer, value);
+        }
+
+        void read(Reader reader, Object target) throws IllegalAccessException {
+            if (primitive != null) {
+                primitive.readField(reader, field, target);
+            } else {
+                field.set(target, codec.read(reader));
+            }
+        }
+    }
+
+    private static int tagOf(Field field) {
+        Tag tag = field.getAnnotation(Tag.class);
+        if (tag != null) {
+            if (tag.value() < 1 || tag.value() > MAX_TAG) {
+                throw new IllegalArgumentException("Tag out of range: " + field);
+            }
+            return tag.value();
+        }
+        int h = field.getName().hashCode();
+        h = (h ^ (h >>> 18)) & MAX_HASHED_TAG;
+        return h < HASHED_TAG_BASE ? h | HASHED_TAG_BASE : h;
+    }
+
+    private static void writeNullable(Writer writer, ValueCodec codec, Object value) {
+        if (value == null) {
+            writer.writeByte(0);
+        } else {
+            writer.writeByte(1);
+            codec.write(writer, value);
+        }
+    }
+
+    private static Object readNullable(Reader reader, ValueCodec codec) {
+        return reader.readByte() == 0 ? null : codec.read(reader);
+    }
+
+    /**
+     * @return 非抽象集合类型的无参构造函数，接口或抽象类返回 {@code null}
+     */
+    private static Constructor<?> concreteConstructor(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) return null;
+        return declaredConstructor(type);
+    }
+
+    private static Constructor<?> declaredConstructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object newInstance(Constructor<?> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to create " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    /**
+     * 没有无参构造函数的类与 Gson 一样通过 Unsafe 创建，字段均为默认值
+     */
+    private static final class UnsafeAllocator {
+        private static final Object UNSAFE;
+        private static final Method ALLOCATE;
+
+        static {
+            Object unsafe = null;
+            Method allocate = null;
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field f = unsafeClass.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                unsafe = f.get(null);
+                allocate = unsafeClass.getMethod("allocateInstance", Class.class);
+            } catch (Exception ignored) {
+            }
+            UNSAFE = unsafe;
+            ALLOCATE = allocate;
+        }
+
+        static Object allocate(Class<?> type) {
+            if (ALLOCATE == null) throw new IllegalStateException("No no-args constructor: " + type.getName());
+            try {
+                return ALLOCATE.invoke(UNSAFE, type);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 可增长的写缓冲区
+     */
+    private static final class Writer {
+        private byte[] mBuffer = new byte[256];
+        private int mPosition;
+
+        void writeByte(int b) {
+            ensure(1);
+            mBuffer[mPosition++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, mBuffer, mPosition, length);
+            mPosition += length;
+        }
+
+        void writeVarint32(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                mBuffer[mPosition++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            mBuffer[mPosition++] = (byte) value;
+        }
+
+        void writeVarint64(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                mBuffer[mPosition++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            mBuffer[mPosition++] = (byte) value;
+        }
+
+        void writeFixed32(int value) {
+            ensure(4);
+            mBuffer[mPosition++] = (byte) value;
+            mBuffer[mPosition++] = (byte) (value >> 8);
+            mBuffer[mPosition++] = (byte) (value >> 16);
+            mBuffer[mPosition++] = (byte) (value >> 24);
+        }
+
+        void writeFixed64(long value) {
+            writeFixed32((int) value);
+            writeFixed32((int) (value >> 32));
+        }
+
+        /**
+         * 长度 + UTF-8，直接编码到缓冲区，不经过中间的 byte[]
+         */
+        void writeString(String s) {
+            int length = s.length();
+            int utf8Length = 0;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    utf8Length++;
+                } else if (c < 0x800) {
+                    utf8Length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    utf8Length += 4;
+                    i++;
+                } else {
+                    utf8Length += Character.isSurrogate(c) ? 1 : 3;
+                }
+            }
+            writeVarint32(utf8Length);
+            ensure(utf8Length);
+            byte[] buffer = mBuffer;
+            int p = mPosition;
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buffer[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[p++] = (byte) (0xC0 | (c >> 6));
+                    buffer[p++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buffer[p++] = (byte) (0xF0 | (cp >> 18));
+                    buffer[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buffer[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buffer[p++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    // 落单的代理字符与 String.getBytes 一样写为一个 '?'
+                    if (Character.isSurrogate(c)) {
+                        buffer[p++] = '?';
+                        continue;
+                    }
+                    buffer[p++] = (byte) (0xE0 | (c >> 12));
+                    buffer[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[p++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            mPosition = p;
+        }
+
+        /**
+         * 先预留一个字节的长度，写完内容后由 {@link #endLength(int)} 回填
+         *
+         * @return 长度字段的位置
+         */
+        int beginLength() {
+            ensure(1);
+            return mPosition++;
+        }
+
+        void endLength(int start) {
+            int length = mPosition - start - 1;
+            int size = varintSize(length);
+            if (size > 1) {
+                // 内容超过 127 字节，长度需要多个字节，把内容整体后移
+                ensure(size - 1);
+                System.arraycopy(mBuffer, start + 1, mBuffer, start + size, length);
+                mPosition += size - 1;
+            }
+            int p = start;
+            while ((length & ~0x7F) != 0) {
+                mBuffer[p++] = (byte) ((length & 0x7F) | 0x80);
+                length >>>= 7;
+            }
+            mBuffer[p] = (byte) length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBuffer, mPosition);
+        }
+
+        private static int varintSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0) {
+                size++;
+                value >>>= 7;
+            }
+            return size;
+        }
+
+        private void ensure(int extra) {
+            if (mPosition + extra <= mBuffer.length) return;
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mPosition + extra));
+        }
+    }
+
+    /**
+     * 直接在字节数组上读取，越界时抛出 {@link IllegalArgumentException}
+     */
+    private static final class Reader {
+        private final byte[] mData;
+        private int mPosition;
+
+        Reader(byte[] data) {
+            mData = data;
+        }
+
+        int position() {
+            return mPosition;
+        }
+
+        int readByte() {
+            check(1);
+            return mData[mPosition++] & 0xFF;
+        }
+
+        byte[] readBytes(int length) {
+            check(length);
+            byte[] bytes = Arrays.copyOfRange(mData, mPosition, mPosition + length);
+            mPosition += length;
+            return bytes;
+        }
+
+        int readVarint32() {
+            return (int) readVarint64();
+        }
+
+        long readVarint64() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        int readFixed32() {
+            check(4);
+            byte[] d = mData;
+            int p = mPosition;
+            mPosition += 4;
+            return (d[p] & 0xFF) | (d[p + 1] & 0xFF) << 8 | (d[p + 2] & 0xFF) << 16 | (d[p + 3] & 0xFF) << 24;
+        }
+
+        long readFixed64() {
+            long low = readFixed32() & 0xFFFFFFFFL;
+            return low | (long) readFixed32() << 32;
+        }
+
+        String readString() {
+            int length = readVarint32();
+            check(length);
+            String s = new String(mData, mPosition, length, UTF_8);
+            mPosition += length;
+            return s;
+        }
+
+        /**
+         * 读取长度前缀
+         *
+         * @return 该值结束的位置
+         */
+        int readLimit() {
+            int length = readVarint32();
+            check(length);
+            return mPosition + length;
+        }
+
+        /**
+         * 读取元素个数，每个元素至少占一个字节
+         *
+         * @param end 所在值结束的位置
+         */
+        int readCount(int end) {
+            int count = readVarint32();
+            if (count < 0 || count > end - mPosition) {
+                throw new IllegalArgumentException("Bad element count: " + count);
+            }
+            return count;
+        }
+
+        void skipTo(int position) {
+            mPosition = position;
+        }
+
+        void skip(int wireType) {
+            switch (wireType) {
+                case WIRE_VARINT:
+                    readVarint64();
+                    break;
+                case WIRE_FIXED64:
+                    check(8);
+                    mPosition += 8;
+                    break;
+                case WIRE_LENGTH:
+                    mPosition = readLimit();
+                    break;
+                case WIRE_FIXED32:
+                    check(4);
+                    mPosition += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown wire type: " + wireType);
+            }
+        }
+
+        private void check(int length) {
+            // 不用 mPosition + length，变长编码的长度很大时会溢出
+            if (length < 0 || length > mData.length - mPosition) {
+                throw new IllegalArgumentException("Truncated TLV data");
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.dale.utils.mmkv;
+
+import androidx.annotation.Nullable;
+
+import com.dale.utils.LogUtils;
+import com.dale.utils.cache.CacheExecutors;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MMKV 的异步批量写入队列
+ * <p>
+ * 写入先放入待写表，同一个键的多次写入只保留最后一次；第一次写入后约 {@link #BATCH_DELAY_MILLIS} 毫秒，
+ * 在 {@link CacheExecutors#writer()} 中把待写表整体写入存储。条目写入 MMKV 之后才从待写表移除，
+ * 读取时先查待写表，任何时刻都能读到最新的值。
+ */
+public final class WriteQueue {
+
+    private static final long BATCH_DELAY_MILLIS = 100;
+
+    /** 待写表中表示删除 */
+    private static final Object REMOVED = new Object();
+
+    private final KeyValueStore mStore;
+    private final ConcurrentHashMap<String, Object> mPending = new ConcurrentHashMap<>();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    /** 写入 MMKV 和清空时持有，保证二者不交错 */
+    private final Object mApplyLock = new Object();
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LogUtils.e("MMKV async write failed", e);
+            }
+        }
+    };
+
+    private final Runnable mSchedule = new Runnable() {
+        @Override
+        public void run() {
+            CacheExecutors.writer().execute(mDrain);
+        }
+    };
+
+    public WriteQueue(KeyValueStore store) {
+        mStore = store;
+    }
+
+    /**
+     * @param value Boolean、Integer、Long、Float、Double、String、Set&lt;String&gt; 或 byte[]，
+     *              为 {@code null} 时删除；Set 和 byte[] 会被复制
+     */
+    public void put(String key, @Nullable Object value) {
+        if (value == null) {
+            value = REMOVED;
+        } else if (value instanceof byte[]) {
+            value = ((byte[]) value).clone();
+        } else if (value instanceof Set) {
+            value = new HashSet<>(asStringSet(value));
+        }
+        mPending.put(key, value);
+        schedule();
+    }
+
+    public void remove(String key) {
+        mPending.put(key, REMOVED);
+        schedule();
+    }
+
+    /**
+     * 绕过队列立即写入存储，并丢弃该键尚未写入的修改，用于需要按顺序落盘的写入
+     *
+     * @param value 同 {@link #put(String, Object)}
+     */
+    public void putNow(String key, @Nullable Object value) {
+        synchronized (mApplyLock) {
+            mPending.remove(key);
+            apply(key, value == null ? REMOVED : value);
+        }
+    }
+
+    /**
+     * @return 是否有尚未写入的修改，有时用 {@link #peek(String)} 取值
+     */
+    public boolean isPending(String key) {
+        return mPending.containsKey(key);
+    }
+
+    /**
+     * @return 尚未写入的值，Set 和 byte[] 返回副本；没有待写的修改或待删除时返回 {@code null}，
+     * 两者用 {@link #isPending(String)} 区分
+     */
+    @Nullable
+    public Object peek(String key) {
+        Object value = mPending.get(key);
+        if (value == null || value == REMOVED) return null;
+        if (value instanceof byte[]) return ((byte[]) value).clone();
+        if (value instanceof Set) return new HashSet<>(asStringSet(value));
+        return value;
+    }
+
+    /**
+     * 丢弃所有待写的修改并清空 MMKV
+     */
+    public void clearAll() {
+        synchronized (mApplyLock) {
+            mPending.clear();
+            mStore.clearAll();
+        }
+    }
+
+    /**
+     * 在当前线程把所有待写的修改写入 MMKV，返回后之前的写入都已生效
+     */
+    public void flush() {
+        mScheduled.set(false);
+        if (mPending.isEmpty()) return;
+        synchronized (mApplyLock) {
+            for (Map.Entry<String, Object> entry : mPending.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                apply(key, value);
+                // 写入期间同一个键又被修改时保留新的值
+                mPending.remove(key, value);
+            }
+        }
+    }
+
+    private void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            CacheExecutors.scheduler().schedule(mSchedule, BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void apply(String key, Object value) {
+        if (value == REMOVED) {
+            mStore.removeValueForKey(key);
+        } else if (value instanceof Boolean) {
+            mStore.encode(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            mStore.encode(key, (Integer) value);
+        } else if (value instanceof Long) {
+            mStore.encode(key, (Long) value);
+        } else if (value instanceof Float) {
+            mStore.encode(key, (Float) value);
+        } else if (value instanceof Double) {
+            mStore.encode(key, (Double) value);
+        } else if (value instanceof String) {
+            mStore.encode(key, (String) value);
+        } else if (value instanceof byte[]) {
+            mStore.encode(key, (byte[]) value);
+        } else {
+            mStore.encode(key, asStringSet(value));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> asStringSet(Object value) {
+        return (Set<String>) value;
+    }
+}
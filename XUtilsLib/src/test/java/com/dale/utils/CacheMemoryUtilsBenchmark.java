@@ -0,0 +1,88 @@
+package com.dale.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CacheMemoryUtils 多线程吞吐量对比：单锁 LruCache 与分段并发缓存
+ * <p>
+ * 用 {@code -Dbenchmark=true} 运行，结果输出到标准输出
+ */
+public class CacheMemoryUtilsBenchmark {
+
+    private static final int MAX_COUNT = 1024;
+    private static final int KEY_SPACE = 4096;
+    private static final int OPS_PER_THREAD = 200_000;
+    private static final int[] THREADS = {1, 4, 8};
+
+    private final String[] mKeys = new String[KEY_SPACE];
+
+    public CacheMemoryUtilsBenchmark() {
+        for (int i = 0; i < KEY_SPACE; i++) {
+            mKeys[i] = "key_" + i;
+        }
+    }
+
+    @Test
+    public void throughput() throws InterruptedException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        for (int threads : THREADS) {
+            CacheMemoryUtils lru = CacheMemoryUtils.getInstance("bench_lru_" + threads, MAX_COUNT);
+            CacheMemoryUtils concurrent = CacheMemoryUtils.getConcurrentInstance("bench_concurrent_" + threads, MAX_COUNT, 16);
+            // 预热 JIT
+            run(lru, threads);
+            run(concurrent, threads);
+            long lruOps = run(lru, threads);
+            long concurrentOps = run(concurrent, threads);
+            System.out.println(String.format("threads=%d  LruCache=%,d ops/s  concurrent=%,d ops/s",
+                    threads, lruOps, concurrentOps));
+        }
+    }
+
+    /**
+     * 90% 读、10% 写，键按偏斜分布访问
+     *
+     * @return 每秒操作数
+     */
+    private long run(final CacheMemoryUtils cache, int threads) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicLong hits = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            final long seed = t * 31L + 7;
+            new Thread() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    long localHits = 0;
+                    try {
+                        start.await();
+                        for (int i = 0; i < OPS_PER_THREAD; i++) {
+                            // 两个均匀分布取最小值，得到偏向小下标的热点分布
+                            int index = Math.min(random.nextInt(KEY_SPACE), random.nextInt(KEY_SPACE));
+                            String key = mKeys[index];
+                            if (random.nextInt(10) == 0) {
+                                cache.put(key, key, CacheMemoryUtils.MIN);
+                            } else if (cache.get(key) != null) {
+                                localHits++;
+                            }
+                        }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        hits.addAndGet(localHits);
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return (long) threads * OPS_PER_THREAD * 1_000_000_000L / Math.max(1, elapsed);
+    }
+}
@@ -0,0 +1,191 @@
+package com.dale.utils;
+
+import com.dale.utils.cache.CacheExecutors;
+import com.dale.utils.cache.FakeTicker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheMemoryUtilsTest {
+
+    private final FakeTicker mTicker = new FakeTicker();
+    private final List<String> mExpired = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        CacheMemoryUtils.setTicker(mTicker);
+    }
+
+    @After
+    public void tearDown() {
+        CacheMemoryUtils.setTicker(null);
+    }
+
+    @Test
+    public void expiresOnRead() {
+        CacheMemoryUtils cache = newCache("test_expires_on_read");
+        cache.put("a", "1", 2);
+        cache.put("b", "2");
+        mTicker.advance(2000);
+        assertEquals("1", cache.get("a"));
+        mTicker.advance(1);
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals(1, mExpired.size());
+        assertEquals("a", mExpired.get(0));
+    }
+
+    @Test
+    public void sweeperRemovesWithoutRead() {
+        CacheMemoryUtils cache = newCache("test_sweeper");
+        cache.startExpirySweeper();
+        try {
+            cache.put("short", "1", 1);
+            cache.put("long", "2", 10);
+            cache.put("replaced", "3", 1);
+            cache.put("replaced", "4");
+            cache.put("removed", "5", 1);
+            cache.remove("removed");
+
+            mTicker.advance(2000);
+            cache.sweep();
+            assertEquals(2, cache.getCacheCount());
+            assertEquals(1, mExpired.size());
+            assertEquals("short", mExpired.get(0));
+
+            mTicker.advance(9000);
+            cache.sweep();
+            assertEquals(1, cache.getCacheCount());
+            assertEquals("4", cache.get("replaced"));
+            assertEquals(2, mExpired.size());
+        } finally {
+            cache.stopExpirySweeper();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void removeDuringLoadDropsResult() throws Exception {
+        CacheMemoryUtils cache = newCache("test_remove_during_load");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            BlockingLoader loader = new BlockingLoader("stale");
+            Future<String> future = cache.getAsync("key", -1, loader, executor);
+            loader.mStarted.await();
+            cache.remove("key");
+            loader.mRelease.countDown();
+            // 等待中的调用方仍得到加载结果，但结果不再写入缓存
+            assertEquals("stale", future.get());
+            assertNull(cache.get("key"));
+            assertEquals("fresh", cache.getOrLoad("key", new BlockingLoader("fresh", 0)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void clearDuringRefreshDropsResult() throws Exception {
+        CacheMemoryUtils cache = newCache("test_clear_during_refresh");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            cache.setRefreshAfterWrite(1);
+            cache.put("key", "old");
+            mTicker.advance(1000);
+            BlockingLoader loader = new BlockingLoader("refreshed");
+            // 超过刷新时间，返回旧值并在后台刷新
+            assertEquals("old", cache.getAsync("key", -1, loader, executor).get());
+            loader.mStarted.await();
+            cache.clear();
+            loader.mRelease.countDown();
+            loader.mFinished.await();
+            // 刷新任务在 load 返回之后才写入缓存，等加载线程空闲
+            ThreadPoolExecutor refresher = (ThreadPoolExecutor) CacheExecutors.loader();
+            while (refresher.getActiveCount() > 0) {
+                Thread.sleep(1);
+            }
+            assertNull(cache.get("key"));
+        } finally {
+            cache.setRefreshAfterWrite(-1);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000, expected = IllegalStateException.class)
+    public void recursiveLoadThrows() {
+        final CacheMemoryUtils cache = newCache("test_recursive_load");
+        cache.getOrLoad("key", new CacheMemoryUtils.Loader<String>() {
+            @Override
+            public String load(String key) {
+                return cache.getOrLoad(key, this);
+            }
+        });
+    }
+
+    @Test
+    public void concurrentInstanceHoldsMaxCount() {
+        CacheMemoryUtils cache = CacheMemoryUtils.getConcurrentInstance("test_concurrent_max_count", 5, 8);
+        cache.clear();
+        for (int i = 0; i < 5; i++) {
+            cache.put("key" + i, i);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), cache.<Integer>get("key" + i));
+        }
+        for (int i = 5; i < 100; i++) {
+            cache.put("key" + i, i);
+            assertTrue(cache.getCacheCount() <= 5);
+        }
+        assertEquals(Integer.valueOf(99), cache.<Integer>get("key99"));
+    }
+
+    private CacheMemoryUtils newCache(String cacheKey) {
+        CacheMemoryUtils cache = CacheMemoryUtils.getInstance(cacheKey, 16);
+        cache.clear();
+        cache.setOnExpiredListener(new CacheMemoryUtils.OnExpiredListener() {
+            @Override
+            public void onExpired(String key, Object value) {
+                synchronized (mExpired) {
+                    mExpired.add(key);
+                }
+            }
+        });
+        return cache;
+    }
+
+    private static final class BlockingLoader implements CacheMemoryUtils.Loader<String> {
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mRelease;
+        final CountDownLatch mFinished = new CountDownLatch(1);
+        private final String mValue;
+
+        BlockingLoader(String value) {
+            this(value, 1);
+        }
+
+        BlockingLoader(String value, int blocks) {
+            mValue = value;
+            mRelease = new CountDownLatch(blocks);
+        }
+
+        @Override
+        public String load(String key) throws InterruptedException {
+            mStarted.countDown();
+            assertTrue(mRelease.await(5, TimeUnit.SECONDS));
+            mFinished.countDown();
+            return mValue;
+        }
+    }
+}
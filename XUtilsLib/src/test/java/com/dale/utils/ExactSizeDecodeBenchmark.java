@@ -0,0 +1,107 @@
+package com.dale.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * 精确尺寸解码与 2 的幂采样后再 {@link ImageUtils#scale} 的位图内存对比；
+ * 解码耗时需要真实的解码器，可在设备上调用 {@link #run(String, int, int)}。
+ * 用 {@code -Dbenchmark=true} 运行，结果输出到标准输出，尺寸的正确性见 ImageUtilsTest
+ */
+public class ExactSizeDecodeBenchmark {
+
+    static final int[][] SOURCES = {{4032, 3024}, {4000, 3000}, {3264, 2448}, {1920, 1080}, {1080, 2400}, {8000, 6000}};
+    static final int[][] TARGETS = {{1080, 1080}, {720, 1280}, {300, 300}, {1920, 1080}};
+
+    @Test
+    public void sizes() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        long sampledTotal = 0;
+        long exactTotal = 0;
+        for (int[] source : SOURCES) {
+            for (int[] target : TARGETS) {
+                BitmapFactory.Options options = bounds(source[0], source[1]);
+                int sampleSize = ImageUtils.calculateInSampleSize(options, target[0], target[1]);
+                int[] fit = fit(source[0], source[1], target[0], target[1]);
+                // 2 的幂采样的结果，再缩放到目标尺寸时两份同时存在
+                long sampled = (long) (source[0] / sampleSize) * (source[1] / sampleSize);
+                boolean sameSize = source[0] / sampleSize == fit[0] && source[1] / sampleSize == fit[1];
+                long sampledPeak = sampled + (sameSize ? 0 : (long) fit[0] * fit[1]);
+
+                options = bounds(source[0], source[1]);
+                ImageUtils.setExactSize(options, target[0], target[1]);
+                int[] exact = output(options);
+                long exactPixels = (long) exact[0] * exact[1];
+                System.out.println(String.format("%5dx%-5d -> %4dx%-4d  sample=%d: %5dx%-5d + scale  peak=%6.2f MB  |  exact sample=%d density=%d/%d: %4dx%-4d  peak=%6.2f MB",
+                        source[0], source[1], target[0], target[1], sampleSize,
+                        source[0] / sampleSize, source[1] / sampleSize, sampledPeak * 4 / 1048576.0,
+                        options.inSampleSize, options.inTargetDensity, options.inDensity,
+                        exact[0], exact[1], exactPixels * 4 / 1048576.0));
+
+                sampledTotal += sampledPeak * 4;
+                exactTotal += exactPixels * 4;
+            }
+        }
+        System.out.println(String.format("ARGB_8888 total: sample + scale=%.1f MB  exact=%.1f MB  exact RGB_565=%.1f MB",
+                sampledTotal / 1048576.0, exactTotal / 1048576.0, exactTotal / 2 / 1048576.0));
+    }
+
+    /**
+     * 在设备上对比两种方式的耗时和内存
+     */
+    public static void run(String filePath, int maxWidth, int maxHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filePath, options);
+        int[] fit = fit(options.outWidth, options.outHeight, maxWidth, maxHeight);
+        // 预热
+        ImageUtils.getScaledBitmap(filePath, maxWidth, maxHeight, null);
+
+        long begin = System.nanoTime();
+        Bitmap sampled = ImageUtils.getBitmap(filePath, maxWidth, maxHeight);
+        Bitmap scaled = ImageUtils.scale(sampled, fit[0], fit[1]);
+        long sampledNanos = System.nanoTime() - begin;
+        long sampledBytes = sampled.getAllocationByteCount() + (scaled == sampled ? 0 : scaled.getAllocationByteCount());
+
+        begin = System.nanoTime();
+        Bitmap exact = ImageUtils.getScaledBitmap(filePath, maxWidth, maxHeight, null);
+        long exactNanos = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        Bitmap exact565 = ImageUtils.getScaledBitmap(filePath, maxWidth, maxHeight, Bitmap.Config.RGB_565);
+        long exact565Nanos = System.nanoTime() - begin;
+
+        System.out.println(String.format("sample + scale: %dx%d %.1f ms %d B  |  exact: %dx%d %.1f ms %d B  |  exact RGB_565: %.1f ms %d B",
+                scaled.getWidth(), scaled.getHeight(), sampledNanos / 1e6, sampledBytes,
+                exact.getWidth(), exact.getHeight(), exactNanos / 1e6, exact.getAllocationByteCount(),
+                exact565Nanos / 1e6, exact565.getAllocationByteCount()));
+    }
+
+    static BitmapFactory.Options bounds(int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.outWidth = width;
+        options.outHeight = height;
+        return options;
+    }
+
+    /**
+     * 与解码器相同：先按采样率向下取整，再按密度比例四舍五入
+     */
+    static int[] output(BitmapFactory.Options options) {
+        int width = options.outWidth / options.inSampleSize;
+        int height = options.outHeight / options.inSampleSize;
+        if (options.inScaled && options.inDensity > 0) {
+            float scale = (float) options.inTargetDensity / options.inDensity;
+            width = (int) (width * scale + 0.5f);
+            height = (int) (height * scale + 0.5f);
+        }
+        return new int[]{width, height};
+    }
+
+    static int[] fit(int width, int height, int maxWidth, int maxHeight) {
+        float scale = Math.min(1f, Math.min((float) maxWidth / width, (float) maxHeight / height));
+        return new int[]{Math.round(width * scale), Math.round(height * scale)};
+    }
+}
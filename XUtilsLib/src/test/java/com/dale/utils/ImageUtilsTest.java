@@ -0,0 +1,37 @@
+package com.dale.utils;
+
+import android.graphics.BitmapFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class ImageUtilsTest {
+
+    @Test
+    public void setExactSizeFitsTarget() {
+        long sampledTotal = 0;
+        long exactTotal = 0;
+        for (int[] source : ExactSizeDecodeBenchmark.SOURCES) {
+            for (int[] target : ExactSizeDecodeBenchmark.TARGETS) {
+                BitmapFactory.Options options = ExactSizeDecodeBenchmark.bounds(source[0], source[1]);
+                int sampleSize = ImageUtils.calculateInSampleSize(options, target[0], target[1]);
+                int[] fit = ExactSizeDecodeBenchmark.fit(source[0], source[1], target[0], target[1]);
+
+                options = ExactSizeDecodeBenchmark.bounds(source[0], source[1]);
+                ImageUtils.setExactSize(options, target[0], target[1]);
+                int[] exact = ExactSizeDecodeBenchmark.output(options);
+                String message = source[0] + "x" + source[1] + " -> " + target[0] + "x" + target[1]
+                        + ": " + exact[0] + "x" + exact[1];
+                assertTrue(message, exact[0] <= target[0] + 1 && exact[1] <= target[1] + 1);
+                assertTrue(message, Math.abs(exact[0] - fit[0]) <= 1 && Math.abs(exact[1] - fit[1]) <= 1);
+                // 2 的幂采样后再缩放时两份位图同时存在
+                long sampled = (long) (source[0] / sampleSize) * (source[1] / sampleSize);
+                boolean sameSize = source[0] / sampleSize == fit[0] && source[1] / sampleSize == fit[1];
+                sampledTotal += sampled + (sameSize ? 0 : (long) fit[0] * fit[1]);
+                exactTotal += (long) exact[0] * exact[1];
+            }
+        }
+        assertTrue(exactTotal <= sampledTotal);
+    }
+}
@@ -0,0 +1,50 @@
+package com.dale.utils.cache;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheSnapshotTest {
+
+    @Test
+    public void skipsOversizedKeysAndUnsupportedValues() throws IOException {
+        char[] chars = new char[22000];
+        // 每个字符 3 字节，超过 writeUTF 的 64 KB
+        Arrays.fill(chars, '缓');
+        String longKey = new String(chars);
+        List<CacheSnapshot.Entry> entries = new ArrayList<>();
+        entries.add(new CacheSnapshot.Entry("string", "value", -1));
+        entries.add(new CacheSnapshot.Entry(longKey, "dropped", -1));
+        entries.add(new CacheSnapshot.Entry("object", new Object(), -1));
+        entries.add(new CacheSnapshot.Entry("int", 42, 60000));
+
+        File file = File.createTempFile("snapshot", null);
+        try {
+            assertEquals(2, CacheSnapshot.write(file, entries));
+            CacheSnapshot.Reader reader = CacheSnapshot.open(file);
+            try {
+                CacheSnapshot.Entry first = reader.next();
+                assertEquals("string", first.key);
+                assertEquals("value", first.value);
+                assertEquals(-1, first.ttlMillis);
+                CacheSnapshot.Entry second = reader.next();
+                assertEquals("int", second.key);
+                assertEquals(42, second.value);
+                assertTrue(second.ttlMillis > 0 && second.ttlMillis <= 60000);
+                assertNull(reader.next());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
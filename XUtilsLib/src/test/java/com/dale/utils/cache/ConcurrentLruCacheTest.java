@@ -0,0 +1,81 @@
+package com.dale.utils.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentLruCacheTest {
+
+    @Test
+    public void segmentCountNeverExceedsMaxWeight() {
+        assertEquals(2, new ConcurrentLruCache<String, String>(3, 4).getSegmentCount());
+        assertEquals(4, new ConcurrentLruCache<String, String>(5, 8).getSegmentCount());
+        assertEquals(1, new ConcurrentLruCache<String, String>(1, 16).getSegmentCount());
+        assertEquals(16, new ConcurrentLruCache<String, String>(1000, 16).getSegmentCount());
+    }
+
+    @Test
+    public void holdsMaxCountKeys() {
+        int[][] cases = {{1, 16}, {3, 4}, {5, 8}, {16, 16}, {100, 16}, {1000, 64}};
+        for (int[] c : cases) {
+            int maxCount = c[0];
+            ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<>(maxCount, c[1]);
+            // 键在各段之间分布不均时也不能提前淘汰
+            for (int i = 0; i < maxCount; i++) {
+                cache.put("key" + i, i);
+            }
+            assertEquals(maxCount, cache.count());
+            for (int i = 0; i < maxCount; i++) {
+                assertEquals("maxCount=" + maxCount + " key" + i, Integer.valueOf(i), cache.get("key" + i));
+            }
+        }
+    }
+
+    @Test
+    public void evictsToMaxCount() {
+        final List<String> evicted = new ArrayList<>();
+        ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<>(10, 4);
+        cache.setEvictionListener(new MemoryCache.EvictionListener<String, Integer>() {
+            @Override
+            public void onEvicted(String key, Integer value) {
+                evicted.add(key);
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, i);
+            assertTrue(cache.count() <= 10);
+        }
+        assertEquals(10, cache.count());
+        assertEquals(10, cache.weightedSize());
+        assertEquals(90, evicted.size());
+        // 刚写入的条目不会被淘汰
+        assertEquals(Integer.valueOf(99), cache.get("key99"));
+
+        cache.trimToWeight(4);
+        assertEquals(4, cache.weightedSize());
+        cache.clear();
+        assertEquals(0, cache.weightedSize());
+        assertNull(cache.get("key99"));
+    }
+
+    @Test
+    public void oversizedEntryIsEvictedAlone() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<>(10, 4, new Weigher<String>() {
+            @Override
+            public int weigh(String value) {
+                return value.length();
+            }
+        });
+        cache.put("a", "aaa");
+        cache.put("b", "bbb");
+        assertEquals("bbb", cache.put("b", "bbbbbbbbbbbb"));
+        assertNull(cache.get("b"));
+        assertEquals("aaa", cache.get("a"));
+        assertEquals(3, cache.weightedSize());
+    }
+}
@@ -0,0 +1,143 @@
+package com.dale.utils.cache;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 按访问轨迹回放，对比 LRU 与 W-TinyLFU 的命中率和吞吐量
+ * <p>
+ * 用 {@code -Dbenchmark=true} 运行，结果输出到标准输出。默认使用生成的轨迹：Zipf 分布的热点访问中穿插一次性扫描。
+ * 回放录制的轨迹时用 {@code -Dcache.trace=/path/to/trace.txt} 指定文件，每行第一个字段为键，
+ * {@code -Dcache.size=} 指定缓存容量。命中率的正确性见 TinyLfuCacheTest。
+ */
+public class EvictionPolicySimulator {
+
+    private static final int CACHE_SIZE = 1000;
+    private static final int HOT_KEYS = 5000;
+    private static final int OPS = 1_000_000;
+    private static final int SCAN_INTERVAL = 20_000;
+    private static final int SCAN_LENGTH = 4000;
+
+    @Test
+    public void scanResistance() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        String tracePath = System.getProperty("cache.trace");
+        int cacheSize = Integer.getInteger("cache.size", CACHE_SIZE);
+        String[] trace = tracePath == null ? syntheticTrace() : readTrace(tracePath);
+
+        Result lru = replay(new LruMemoryCache<String, String>(cacheSize), trace);
+        Result tinyLfu = replay(new TinyLfuCache<String, String>(cacheSize), trace);
+        String result = String.format("trace=%s  size=%d  ops=%,d%nLRU       %s%nTINY_LFU  %s",
+                tracePath == null ? "synthetic" : tracePath, cacheSize, trace.length, lru, tinyLfu);
+        System.out.println(result);
+    }
+
+    /**
+     * 未命中时写入，与业务中 "get 不到就加载并 put" 的用法一致
+     */
+    static Result replay(MemoryCache<String, String> cache, String[] trace) {
+        // 预热一遍让 JIT 编译，再清空重新统计
+        for (String key : trace) {
+            if (cache.get(key) == null) cache.put(key, key);
+        }
+        cache.clear();
+        long hits = 0;
+        long begin = System.nanoTime();
+        for (String key : trace) {
+            if (cache.get(key) != null) {
+                hits++;
+            } else {
+                cache.put(key, key);
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+        return new Result(hits, trace.length, elapsed);
+    }
+
+    private static String[] syntheticTrace() {
+        return syntheticTrace(HOT_KEYS, OPS, SCAN_INTERVAL, SCAN_LENGTH);
+    }
+
+    /**
+     * @return Zipf 分布的热点访问，每 scanInterval 次插入 scanLength 个只出现一次的键
+     */
+    static String[] syntheticTrace(int hotKeyCount, int ops, int scanInterval, int scanLength) {
+        Random random = new Random(42);
+        double[] cdf = zipfCdf(hotKeyCount, 0.9);
+        String[] hotKeys = new String[hotKeyCount];
+        for (int i = 0; i < hotKeyCount; i++) {
+            hotKeys[i] = "hot_" + i;
+        }
+        List<String> trace = new ArrayList<>(ops + ops / scanInterval * scanLength);
+        int scanKey = 0;
+        for (int i = 0; i < ops; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            trace.add(hotKeys[index < 0 ? Math.min(-index - 1, hotKeyCount - 1) : index]);
+            if (i % scanInterval == 0) {
+                for (int j = 0; j < scanLength; j++) {
+                    trace.add("scan_" + scanKey++);
+                }
+            }
+        }
+        return trace.toArray(new String[0]);
+    }
+
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static String[] readTrace(String path) throws IOException {
+        List<String> trace = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(path));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                int split = line.indexOf(' ');
+                trace.add(split < 0 ? line : line.substring(0, split));
+            }
+        } finally {
+            reader.close();
+        }
+        return trace.toArray(new String[0]);
+    }
+
+    static final class Result {
+        final long hits;
+        final long ops;
+        final long elapsedNanos;
+
+        Result(long hits, long ops, long elapsedNanos) {
+            this.hits = hits;
+            this.ops = ops;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double hitRatio() {
+            return (double) hits / ops;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hitRatio=%.2f%%  %,d ops/s", hitRatio() * 100, ops * 1_000_000_000L / Math.max(1, elapsedNanos));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.dale.utils.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 手动推进的时钟
+ */
+public class FakeTicker implements Ticker {
+
+    private final AtomicLong mNow = new AtomicLong(1000);
+
+    @Override
+    public long read() {
+        return mNow.get();
+    }
+
+    public void advance(long millis) {
+        mNow.addAndGet(millis);
+    }
+}
@@ -0,0 +1,79 @@
+package com.dale.utils.cache;
+
+import com.dale.utils.CacheMemoryUtils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 按数字 id 命中时每次读取分配的字节数：转成 String 后查 CacheMemoryUtils 与直接查 LongKeyMemoryCache
+ * <p>
+ * 需要 HotSpot 的 {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}，
+ * 用 {@code -Dbenchmark=true} 运行，结果输出到标准输出
+ */
+public class LongKeyMemoryCacheBenchmark {
+
+    private static final int MAX_COUNT = 1024;
+    private static final int ROUNDS = 200;
+
+    @Test
+    public void allocationPerHit() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        CacheMemoryUtils stringCache = CacheMemoryUtils.getInstance("bench_string_key", MAX_COUNT);
+        LongKeyMemoryCache longCache = new LongKeyMemoryCache(MAX_COUNT);
+        Object value = new Object();
+        for (long id = 0; id < MAX_COUNT; id++) {
+            stringCache.put(String.valueOf(id), value);
+            longCache.put(id, value);
+        }
+        // 预热 JIT
+        scanString(stringCache);
+        scanLong(longCache);
+
+        long stringBytes = allocatedBytes();
+        long stringHits = scanString(stringCache);
+        stringBytes = allocatedBytes() - stringBytes;
+
+        long longBytes = allocatedBytes();
+        long longHits = scanLong(longCache);
+        longBytes = allocatedBytes() - longBytes;
+
+        assertEquals((long) ROUNDS * MAX_COUNT, stringHits);
+        assertEquals((long) ROUNDS * MAX_COUNT, longHits);
+        double stringPerHit = (double) stringBytes / stringHits;
+        double longPerHit = (double) longBytes / longHits;
+        System.out.println(String.format("String key=%.1f B/hit  long key=%.3f B/hit", stringPerHit, longPerHit));
+    }
+
+    /**
+     * 模拟滚动列表按 id 反复读取
+     */
+    private static long scanString(CacheMemoryUtils cache) {
+        long hits = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (long id = 0; id < MAX_COUNT; id++) {
+                if (cache.get(String.valueOf(id)) != null) hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static long scanLong(LongKeyMemoryCache cache) {
+        long hits = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (long id = 0; id < MAX_COUNT; id++) {
+                if (cache.get(id) != null) hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
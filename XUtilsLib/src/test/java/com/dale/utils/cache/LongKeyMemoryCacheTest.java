@@ -0,0 +1,103 @@
+package com.dale.utils.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LongKeyMemoryCacheTest {
+
+    @Test
+    public void deleteShiftsCollidingKeys() {
+        LongKeyMemoryCache cache = new LongKeyMemoryCache(64);
+        // 128 个槽，找出落在同一个槽上的一串键，删除中间的键后其余的仍能找到
+        List<Long> keys = collidingKeys(127, 8);
+        for (long key : keys) {
+            cache.put(key, key);
+        }
+        for (int i = 1; i < keys.size(); i += 2) {
+            assertEquals(keys.get(i), cache.remove(keys.get(i)));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            Long expected = i % 2 == 0 ? keys.get(i) : null;
+            assertEquals(expected, cache.get(keys.get(i)));
+        }
+        assertEquals(keys.size() / 2, cache.getCacheCount());
+    }
+
+    @Test
+    public void matchesLinkedHashMapLru() {
+        final int maxCount = 50;
+        LongKeyMemoryCache cache = new LongKeyMemoryCache(maxCount);
+        Map<Long, Long> model = new LinkedHashMap<>(16, 0.75f, true);
+        Random random = new Random(7);
+        for (int op = 0; op < 200000; op++) {
+            // 键的范围略大于容量，淘汰、删除和探测链移动都会频繁发生
+            long key = random.nextInt(120) - 60;
+            switch (random.nextInt(3)) {
+                case 0:
+                    long value = random.nextLong();
+                    cache.put(key, value);
+                    model.put(key, value);
+                    if (model.size() > maxCount) {
+                        Iterator<Long> eldest = model.keySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                    }
+                    break;
+                case 1:
+                    assertEquals(model.get(key), cache.get(key));
+                    break;
+                default:
+                    assertEquals(model.remove(key), cache.remove(key));
+                    break;
+            }
+            assertEquals(model.size(), cache.getCacheCount());
+        }
+        for (long key = -60; key < 60; key++) {
+            assertEquals(model.get(key), cache.get(key));
+        }
+        cache.trimToSize(10);
+        assertEquals(10, cache.getCacheCount());
+        cache.clear();
+        assertEquals(0, cache.getCacheCount());
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void expiresBySaveTime() {
+        FakeTicker ticker = new FakeTicker();
+        IntKeyMemoryCache cache = new IntKeyMemoryCache(4, ticker);
+        cache.put(1, "a", 1);
+        cache.put(2, "b");
+        ticker.advance(1000);
+        assertEquals("a", cache.get(1));
+        ticker.advance(1);
+        assertNull(cache.get(1));
+        assertEquals("default", cache.get(1, "default"));
+        assertEquals("b", cache.get(2));
+        assertEquals(1, cache.getCacheCount());
+    }
+
+    /**
+     * @return 哈希到同一个槽的 count 个键
+     */
+    private static List<Long> collidingKeys(int mask, int count) {
+        List<Long> keys = new ArrayList<>();
+        int target = -1;
+        for (long key = 0; keys.size() < count; key++) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            if (target == -1) target = slot;
+            if (slot == target) keys.add(key);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,60 @@
+package com.dale.utils.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class LruMemoryCacheTest {
+
+    @Test
+    public void weightFixedAtPut() {
+        LruMemoryCache<String, List<String>> cache = new LruMemoryCache<>(1 << 20, Weighers.AUTO);
+        List<String> list = new ArrayList<>();
+        list.add("a");
+        cache.put("list", list);
+        long weight = cache.weightedSize();
+        assertEquals(Weighers.AUTO.weigh(list), weight);
+
+        // 写入后值变重，删除时仍按写入时的权重扣减
+        for (int i = 0; i < 100; i++) {
+            list.add("item" + i);
+        }
+        assertEquals(weight, cache.weightedSize());
+        assertSame(list, cache.remove("list"));
+        assertEquals(0, cache.weightedSize());
+        assertEquals(0, cache.count());
+        cache.trimToWeight(0);
+    }
+
+    @Test
+    public void evictionUsesStoredWeight() {
+        LruMemoryCache<String, List<String>> cache = new LruMemoryCache<>(200, Weighers.AUTO);
+        List<String> first = new ArrayList<>();
+        cache.put("first", first);
+        // 变重后不会因重新计算而提前淘汰或扣减出错
+        for (int i = 0; i < 100; i++) {
+            first.add("item" + i);
+        }
+        cache.put("second", new ArrayList<String>());
+        assertSame(first, cache.get("first"));
+        cache.trimToWeight(0);
+        assertEquals(0, cache.weightedSize());
+        assertNull(cache.get("first"));
+        assertNull(cache.get("second"));
+    }
+
+    @Test
+    public void replaceAdjustsWeight() {
+        LruMemoryCache<String, String> cache = new LruMemoryCache<>(1 << 20, Weighers.AUTO);
+        cache.put("key", "ab");
+        assertEquals("ab", cache.put("key", "abcdef"));
+        assertEquals(Weighers.STRING.weigh("abcdef"), cache.weightedSize());
+        assertEquals(1, cache.count());
+        assertEquals("abcdef", cache.snapshot().get("key"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.dale.utils.cache;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TieredCacheTest {
+
+    @Test(timeout = 10000)
+    public void removeDuringStoreReadIsNotUndone() throws Exception {
+        BlockingStore store = new BlockingStore();
+        TieredCache cache = new TieredCache("remove_during_read", 16, store);
+        store.mData.put("key", "-1\n\"old\"");
+
+        store.block();
+        Future<String> read = cache.getAsync("key", String.class);
+        assertTrue(store.mReading.await(5, TimeUnit.SECONDS));
+        cache.remove("key");
+        store.release();
+        // 读取开始时的值仍可返回给调用方，但不能放入内存
+        assertEquals("old", read.get());
+        cache.flush();
+        assertNull(cache.get("key", String.class));
+        assertNull(store.mData.get("key"));
+    }
+
+    @Test(timeout = 10000)
+    public void putDuringStoreReadIsNotOverwritten() throws Exception {
+        BlockingStore store = new BlockingStore();
+        TieredCache cache = new TieredCache("put_during_read", 16, store);
+        store.mData.put("key", "-1\n\"old\"");
+
+        store.block();
+        Future<String> read = cache.getAsync("key", String.class);
+        assertTrue(store.mReading.await(5, TimeUnit.SECONDS));
+        cache.put("key", "new");
+        store.release();
+        read.get();
+        assertEquals("new", cache.get("key", String.class));
+        cache.flush();
+        assertEquals("new", cache.get("key", String.class));
+    }
+
+    @Test
+    public void storeHitIsPromoted() {
+        BlockingStore store = new BlockingStore();
+        TieredCache cache = new TieredCache("promote", 16, store);
+        store.mData.put("key", "-1\n\"stored\"");
+        assertEquals("stored", cache.get("key", String.class));
+        store.mData.clear();
+        assertEquals("stored", cache.get("key", String.class));
+    }
+
+    /**
+     * 内存中的二级存储，{@link #block()} 后读取在 {@link #release()} 前一直等待
+     */
+    private static final class BlockingStore implements PersistentStore {
+        final Map<String, String> mData = new ConcurrentHashMap<>();
+        final CountDownLatch mReading = new CountDownLatch(1);
+        private volatile CountDownLatch mGate;
+
+        void block() {
+            mGate = new CountDownLatch(1);
+        }
+
+        void release() {
+            mGate.countDown();
+        }
+
+        @Override
+        public String read(String key) {
+            String data = mData.get(key);
+            CountDownLatch gate = mGate;
+            if (gate != null) {
+                mReading.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return data;
+        }
+
+        @Override
+        public void write(String key, String data) {
+            mData.put(key, data);
+        }
+
+        @Override
+        public void remove(String key) {
+            mData.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            mData.clear();
+        }
+    }
+}
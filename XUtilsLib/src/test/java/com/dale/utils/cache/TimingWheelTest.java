@@ -0,0 +1,119 @@
+package com.dale.utils.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test(timeout = 10000)
+    public void expiresEachLevelOnTime() {
+        TimingWheel<Item> wheel = new TimingWheel<>(1, 0);
+        // 分别落在第 0~3 层
+        long[] dueTimes = {5, 64, 100, 4096, 5000, 262144, 300000, 16777215};
+        for (long dueTime : dueTimes) {
+            wheel.schedule(new Item(dueTime));
+        }
+        assertEquals(dueTimes.length, wheel.size());
+        for (long dueTime : dueTimes) {
+            assertTrue(wheel.advance(dueTime - 1).isEmpty());
+            List<Item> expired = wheel.advance(dueTime);
+            assertEquals(1, expired.size());
+            assertEquals(dueTime, expired.get(0).mDueTime);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test(timeout = 10000)
+    public void overflowIsRelinked() {
+        TimingWheel<Item> wheel = new TimingWheel<>(1, 0);
+        // 超出最高层跨度 64^4 - 1，先放在最高层，下沉时重新计算位置
+        Item far = new Item(40000000);
+        Item near = new Item(1);
+        wheel.schedule(far);
+        wheel.schedule(near);
+        assertEquals(1, wheel.advance(20000000).size());
+        assertTrue(wheel.advance(39999999).isEmpty());
+        assertEquals(1, wheel.size());
+        List<Item> expired = wheel.advance(40000000);
+        assertEquals(1, expired.size());
+        assertTrue(expired.get(0) == far);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void cancelAndReschedule() {
+        TimingWheel<Item> wheel = new TimingWheel<>(10, 0);
+        Item item = new Item(100);
+        wheel.schedule(item);
+        wheel.cancel(item);
+        wheel.cancel(item);
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(200).isEmpty());
+
+        item.mDueTime = 500;
+        wheel.schedule(item);
+        item.mDueTime = 1000;
+        wheel.schedule(item);
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(990).isEmpty());
+        assertEquals(1, wheel.advance(1000).size());
+    }
+
+    @Test(timeout = 10000)
+    public void randomScheduleNeverEarlyNorMissed() {
+        long tick = 7;
+        Random random = new Random(42);
+        TimingWheel<Item> wheel = new TimingWheel<>(tick, 0);
+        List<Item> pending = new ArrayList<>();
+        long now = 0;
+        for (int round = 0; round < 2000; round++) {
+            for (int i = random.nextInt(4); i > 0; i--) {
+                // 跨度覆盖所有层以及溢出
+                long delay = (long) Math.pow(2, random.nextInt(28)) + random.nextInt(1000);
+                Item item = new Item(now + delay);
+                wheel.schedule(item);
+                pending.add(item);
+            }
+            if (!pending.isEmpty() && random.nextInt(8) == 0) {
+                wheel.cancel(pending.remove(random.nextInt(pending.size())));
+            }
+            now += random.nextInt(1 << random.nextInt(20));
+            Set<Item> expired = new HashSet<>(wheel.advance(now));
+            for (Item item : expired) {
+                assertTrue("early: " + item.mDueTime + " at " + now, item.mDueTime <= now);
+            }
+            List<Item> remaining = new ArrayList<>();
+            for (Item item : pending) {
+                if (expired.contains(item)) continue;
+                // 到期时间向上取整到 tick，取整后已到的必须被取出
+                long dueTick = (item.mDueTime + tick - 1) / tick;
+                assertTrue("missed: " + item.mDueTime + " at " + now, dueTick * tick > now);
+                remaining.add(item);
+            }
+            assertEquals(pending.size() - expired.size(), remaining.size());
+            pending = remaining;
+            assertEquals(pending.size(), wheel.size());
+        }
+    }
+
+    private static final class Item extends TimingWheel.Node {
+        long mDueTime;
+
+        Item(long dueTime) {
+            mDueTime = dueTime;
+        }
+
+        @Override
+        protected long getDueTime() {
+            return mDueTime;
+        }
+    }
+}
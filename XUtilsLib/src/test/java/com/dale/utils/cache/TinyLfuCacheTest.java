@@ -0,0 +1,16 @@
+package com.dale.utils.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    public void beatsLruOnScanPollutedTrace() {
+        String[] trace = EvictionPolicySimulator.syntheticTrace(1000, 100_000, 2000, 400);
+        EvictionPolicySimulator.Result lru = EvictionPolicySimulator.replay(new LruMemoryCache<String, String>(200), trace);
+        EvictionPolicySimulator.Result tinyLfu = EvictionPolicySimulator.replay(new TinyLfuCache<String, String>(200), trace);
+        assertTrue("LRU " + lru + "  TINY_LFU " + tinyLfu, tinyLfu.hitRatio() > lru.hitRatio());
+    }
+}
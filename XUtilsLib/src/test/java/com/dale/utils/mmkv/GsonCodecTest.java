@@ -0,0 +1,40 @@
+package com.dale.utils.mmkv;
+
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GsonCodecTest {
+
+    @Test
+    public void warmedUpCodecRoundTrips() {
+        GsonCodec codec = GsonCodec.newBuilder().warmUp(ObjectCodecBenchmark.Profile.class).build();
+        for (int i = 0; i < 8; i++) {
+            ObjectCodecBenchmark.Profile profile = ObjectCodecBenchmark.Profile.sample(i);
+            String json = codec.encode(profile);
+            ObjectCodecBenchmark.Profile decoded = codec.decode(json, ObjectCodecBenchmark.Profile.class);
+            assertEquals(profile.id, decoded.id);
+            assertEquals(json, codec.encode(decoded));
+        }
+    }
+
+    @Test
+    public void decodesGenericType() {
+        GsonCodec codec = new GsonCodec();
+        List<ObjectCodecBenchmark.Profile> list = new ArrayList<>();
+        list.add(ObjectCodecBenchmark.Profile.sample(1));
+        list.add(ObjectCodecBenchmark.Profile.sample(2));
+        Type type = new TypeToken<List<ObjectCodecBenchmark.Profile>>() {
+        }.getType();
+        String json = codec.encode(list);
+        List<ObjectCodecBenchmark.Profile> decoded = codec.decode(json, type);
+        assertEquals(2, decoded.size());
+        assertEquals(json, codec.encode(decoded));
+    }
+}
@@ -0,0 +1,94 @@
+package com.dale.utils.mmkv;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyIndexTest {
+
+    @Test
+    public void removedDuringBuildIsNotAddedBack() {
+        String[] keys = keys(1000);
+        KeyIndex index = new KeyIndex();
+        index.start(keys);
+        // 两个键都在之后的批次中，构建时会被墓碑跳过
+        index.remove("k00900");
+        index.remove("k00901");
+        index.add("k00901");
+        index.add("new");
+
+        TreeSet<String> expected = new TreeSet<>(Arrays.asList(keys));
+        expected.remove("k00900");
+        expected.add("new");
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(index.withPrefix("")));
+    }
+
+    @Test
+    public void tombstonesAreDroppedAfterBuild() {
+        KeyIndex index = new KeyIndex();
+        index.start(keys(10));
+        index.remove("k00003");
+        assertFalse(index.withPrefix("").contains("k00003"));
+        // 构建完成后旧的键列表不再使用，删除后重新写入的键照常出现
+        index.add("k00003");
+        index.remove("k00004");
+        assertTrue(index.withPrefix("k").contains("k00003"));
+        assertFalse(index.withPrefix("k").contains("k00004"));
+    }
+
+    @Test(timeout = 10000)
+    public void concurrentRemovesDuringBackgroundBuild() throws InterruptedException {
+        String[] keys = keys(20000);
+        KeyIndex index = new KeyIndex();
+        index.start(keys);
+        index.buildInBackground();
+        for (int i = 0; i < keys.length; i += 2) {
+            index.remove(keys[i]);
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i < keys.length; i += 2) {
+            expected.add(keys[i]);
+        }
+        assertEquals(expected, new ArrayList<>(index.withPrefix("")));
+    }
+
+    @Test
+    public void prefixViewSkipsChunkKeys() {
+        KeyIndex index = new KeyIndex();
+        index.start(new String[]{"a", "ab", "ab" + LargeValues.CHUNK_SEPARATOR + "1", "abc", "b",
+                "a" + Character.MAX_VALUE, "a" + Character.MAX_VALUE + "x"});
+        assertEquals(Arrays.asList("ab", "abc"), new ArrayList<>(index.withPrefix("ab")));
+        assertEquals(Arrays.asList("a" + Character.MAX_VALUE, "a" + Character.MAX_VALUE + "x"),
+                new ArrayList<>(index.withPrefix("a" + Character.MAX_VALUE)));
+        assertEquals(Collections.<String>emptyList(), new ArrayList<>(index.withPrefix("c")));
+        // 视图不复制，之后的写入直接可见
+        index.add("abd");
+        assertTrue(index.withPrefix("ab").contains("abd"));
+    }
+
+    @Test
+    public void clearStopsPendingBuild() {
+        KeyIndex index = new KeyIndex();
+        index.start(keys(1000));
+        index.clear();
+        index.add("after");
+        assertEquals(Collections.singletonList("after"), new ArrayList<>(index.withPrefix("")));
+    }
+
+    private static String[] keys(int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = String.format(Locale.US, "k%05d", i);
+        }
+        return keys;
+    }
+}
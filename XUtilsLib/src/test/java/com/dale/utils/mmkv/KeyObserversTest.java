@@ -0,0 +1,125 @@
+package com.dale.utils.mmkv;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyObserversTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test(timeout = 10000)
+    public void prefixMatchesKeyAndItsAncestors() throws InterruptedException {
+        KeyObservers observers = new KeyObservers(null);
+        CountDownLatch latch = new CountDownLatch(4);
+        Recorder all = new Recorder(latch);
+        Recorder user = new Recorder(latch);
+        Recorder userA = new Recorder(latch);
+        Recorder exact = new Recorder(latch);
+        Recorder deeper = new Recorder(latch);
+        observers.add("", true, all, DIRECT);
+        observers.add("user.", true, user, DIRECT);
+        observers.add("user.a", true, userA, DIRECT);
+        observers.add("user.ab", false, exact, DIRECT);
+        observers.add("user.abc", true, deeper, DIRECT);
+
+        observers.onChanged("user.ab");
+        observers.onChanged("user.b");
+        observers.onChanged("other");
+        observers.onChanged("user.ab");
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        // 同一帧内的写入对每个订阅只回调一次
+        assertEquals(Collections.singletonList(keys("user.ab", "user.b", "other")), all.changes());
+        assertEquals(Collections.singletonList(keys("user.ab", "user.b")), user.changes());
+        assertEquals(Collections.singletonList(keys("user.ab")), userA.changes());
+        assertEquals(Collections.singletonList(keys("user.ab")), exact.changes());
+        assertEquals(Collections.<Set<String>>emptyList(), deeper.changes());
+    }
+
+    @Test(timeout = 10000)
+    public void removedListenerIsNotCalled() throws InterruptedException {
+        KeyObservers observers = new KeyObservers(null);
+        CountDownLatch latch = new CountDownLatch(1);
+        Recorder removed = new Recorder(latch);
+        Recorder kept = new Recorder(latch);
+        observers.add("a.b", true, removed, DIRECT);
+        observers.add("a.b.c", false, removed, DIRECT);
+        observers.add("a", true, kept, DIRECT);
+        observers.onChanged("a.b.c");
+        observers.remove(removed);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        assertEquals(Collections.<Set<String>>emptyList(), removed.changes());
+        assertEquals(Collections.singletonList(keys("a.b.c")), kept.changes());
+
+        // 前缀树中剪掉的节点可以重新订阅
+        latch = new CountDownLatch(1);
+        Recorder again = new Recorder(latch);
+        observers.add("a.b", true, again, DIRECT);
+        observers.onChanged("a.b.d");
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(keys("a.b.d")), again.changes());
+    }
+
+    @Test(timeout = 10000)
+    public void allChangedDeliversEmptySet() throws InterruptedException {
+        KeyObservers observers = new KeyObservers(null);
+        CountDownLatch latch = new CountDownLatch(2);
+        Recorder prefix = new Recorder(latch);
+        Recorder exact = new Recorder(latch);
+        observers.add("x.", true, prefix, DIRECT);
+        observers.add("y", false, exact, DIRECT);
+        observers.onChanged("x.1");
+        observers.onAllChanged();
+        observers.onChanged("x.2");
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+
+        assertEquals(Collections.singletonList(Collections.<String>emptySet()), prefix.changes());
+        assertEquals(Collections.singletonList(Collections.<String>emptySet()), exact.changes());
+    }
+
+    private static Set<String> keys(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    private static final class Recorder implements OnKeyChangedListener {
+        private final CountDownLatch mLatch;
+        private final List<Set<String>> mChanges = new ArrayList<>();
+
+        Recorder(CountDownLatch latch) {
+            mLatch = latch;
+        }
+
+        @Override
+        public void onKeysChanged(MMKVNamespace namespace, Set<String> keys) {
+            synchronized (this) {
+                mChanges.add(keys);
+            }
+            mLatch.countDown();
+        }
+
+        synchronized List<Set<String>> changes() {
+            return new ArrayList<>(mChanges);
+        }
+    }
+}
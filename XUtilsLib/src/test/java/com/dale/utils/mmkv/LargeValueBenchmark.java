@@ -0,0 +1,91 @@
+package com.dale.utils.mmkv;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * 大值模式在不同大小下的保存字节数、写入和读取耗时，与直接保存 UTF-8 字节对比
+ * <p>
+ * 用 {@code -Dbenchmark=true} 运行，结果输出到标准输出
+ */
+public class LargeValueBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int[] SIZES = {1 << 10, 16 << 10, 128 << 10, 512 << 10, 2 << 20};
+    private static final int CHUNK_SIZE = 64 << 10;
+
+    private static final GsonCodec GSON = new GsonCodec();
+    private final LargeValues mLargeValues = new LargeValues(1, CHUNK_SIZE);
+
+    @Test
+    public void sizes() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        for (int size : SIZES) {
+            String value = json(size);
+            int iterations = Math.max(3, (4 << 20) / size);
+            // 预热 JIT
+            LargeValues.Encoded encoded = encode(value, iterations);
+            decode(encoded, iterations);
+
+            long rawBegin = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                new String(value.getBytes(UTF_8), UTF_8);
+            }
+            long rawNanos = (System.nanoTime() - rawBegin) / iterations;
+            long encodeBegin = System.nanoTime();
+            encoded = encode(value, iterations);
+            long encodeNanos = (System.nanoTime() - encodeBegin) / iterations;
+            long decodeNanos = decode(encoded, iterations);
+
+            int stored = 0;
+            for (byte[] chunk : encoded.chunks) {
+                stored += chunk.length;
+            }
+            System.out.println(String.format("%7d B: stored=%7d B (%.1f%%) chunks=%d  raw copy=%.1f us  encode=%.1f us  decode=%.1f us",
+                    value.getBytes(UTF_8).length, stored, stored * 100.0 / value.getBytes(UTF_8).length,
+                    encoded.chunks.size(), rawNanos / 1000.0, encodeNanos / 1000.0, decodeNanos / 1000.0));
+        }
+    }
+
+    private LargeValues.Encoded encode(String value, int iterations) {
+        LargeValues.Encoded encoded = null;
+        for (int i = 0; i < iterations; i++) {
+            encoded = mLargeValues.encode(value, i);
+        }
+        return encoded;
+    }
+
+    private long decode(LargeValues.Encoded encoded, int iterations) throws IOException {
+        LargeValues.ChunkSource source = source(encoded.chunks);
+        long begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            LargeValues.readString(encoded.descriptor, source);
+        }
+        return (System.nanoTime() - begin) / iterations;
+    }
+
+    static LargeValues.ChunkSource source(final List<byte[]> chunks) {
+        return new LargeValues.ChunkSource() {
+            @Override
+            public byte[] chunk(int index) {
+                return index < chunks.size() ? chunks.get(index) : null;
+            }
+        };
+    }
+
+    /**
+     * @return 约 size 字节的 JSON 数组，与线上保存的列表数据相近
+     */
+    static String json(int size) {
+        StringBuilder json = new StringBuilder(size + 512).append('[');
+        for (int i = 0; json.length() < size; i++) {
+            if (i > 0) json.append(',');
+            json.append(GSON.encode(ObjectCodecBenchmark.Profile.sample(i)));
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,235 @@
+package com.dale.utils.mmkv;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LargeValuesTest {
+
+    private static final int THREADS = 4;
+    private static final int ROUNDS = 200;
+
+    private File mFile;
+    private LogKeyValueStore mStore;
+    private MMKVNamespace mNamespace;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("large_values", ".kvlog");
+        mStore = new LogKeyValueStore(mFile);
+        mNamespace = new MMKVNamespace("large", mStore, false);
+        mNamespace.enableLargeValues(64, 32);
+    }
+
+    @After
+    public void tearDown() {
+        mStore.close();
+        mFile.delete();
+    }
+
+    @Test
+    public void encodeRoundTrip() throws IOException {
+        LargeValues largeValues = new LargeValues(1, 64 << 10);
+        for (int size : new int[]{1 << 10, 16 << 10, 128 << 10, 512 << 10}) {
+            String value = LargeValueBenchmark.json(size);
+            LargeValues.Encoded encoded = largeValues.encode(value, 3);
+            LargeValues.Descriptor descriptor = LargeValues.Descriptor.parse(encoded.descriptor.encode());
+            assertEquals(3, descriptor.generation);
+            assertEquals(encoded.chunks.size(), descriptor.chunkCount);
+            assertEquals(value, LargeValues.readString(descriptor, LargeValueBenchmark.source(encoded.chunks)));
+            // 压缩没有变小时保存原始字节，不会比原始数据更大
+            int stored = 0;
+            for (byte[] chunk : encoded.chunks) {
+                stored += chunk.length;
+            }
+            assertTrue(stored > 0 && stored <= value.getBytes(Charset.forName("UTF-8")).length);
+        }
+        String unicode = "中文数据，" + LargeValueBenchmark.json(4 << 10);
+        LargeValues.Encoded encoded = largeValues.encode(unicode, 0);
+        assertEquals(unicode, LargeValues.readString(encoded.descriptor, LargeValueBenchmark.source(encoded.chunks)));
+    }
+
+    @Test
+    public void overwriteRemovesOldChunks() {
+        mNamespace.put("key", value(0, 1));
+        mNamespace.put("key", value(1, 1));
+        assertEquals(value(1, 1), mNamespace.getString("key", null));
+        assertChunksMatchDescriptor("key");
+        mNamespace.put("key", "small");
+        assertEquals("small", mNamespace.getString("key", null));
+        assertChunksMatchDescriptor("key");
+        mNamespace.removeValueForKey("key");
+        assertNull(mNamespace.getString("key", null));
+        assertChunksMatchDescriptor("key");
+    }
+
+    @Test
+    public void overwriteAfterDisableRemovesChunks() {
+        mNamespace.put("string", value(0, 1));
+        mNamespace.put("int", value(0, 2));
+        mNamespace.put("set", value(0, 3));
+        mNamespace.disableLargeValues();
+        assertEquals(value(0, 1), mNamespace.getString("string", null));
+
+        mNamespace.put("string", "small");
+        mNamespace.put("int", 7);
+        mNamespace.put("set", Collections.singleton("a"));
+        assertEquals("small", mNamespace.getString("string", null));
+        assertEquals(7, mNamespace.getInt("int", 0));
+        assertEquals(Collections.singleton("a"), mNamespace.getStringSet("set"));
+        assertNoChunks();
+    }
+
+    @Test
+    public void removeAfterDisableRemovesChunks() {
+        mNamespace.put("one", value(0, 1));
+        mNamespace.put("two", value(0, 2));
+        mNamespace.put("three", value(0, 3));
+        mNamespace.put("small", "small");
+        mNamespace.disableLargeValues();
+
+        mNamespace.removeValueForKey("one");
+        mNamespace.removeValuesForKeys(new String[]{"two", "three", "small"});
+        assertEquals(0, mStore.count());
+    }
+
+    @Test
+    public void asyncWriteStoresLargeValuesInOrder() {
+        mNamespace.enableAsyncWrite();
+        try {
+            mNamespace.put("key", value(0, 1));
+            // 分块和描述已直接写入存储，不依赖队列写入的顺序
+            assertEquals(value(0, 1), new MMKVNamespace("direct", mStore, false).getString("key", null));
+            assertChunksMatchDescriptor("key");
+            mNamespace.put("key", value(0, 2));
+            assertChunksMatchDescriptor("key");
+            mNamespace.put("small", "small");
+            assertNull(mStore.decodeString("small", null));
+            assertEquals("small", mNamespace.getString("small", null));
+        } finally {
+            mNamespace.disableAsyncWrite();
+        }
+        assertEquals(value(0, 2), mNamespace.getString("key", null));
+        assertEquals("small", mStore.decodeString("small", null));
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentPutAndRemoveLeaveNoOrphanChunks() throws Throwable {
+        final Set<String> written = new HashSet<>();
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < ROUNDS; i++) {
+                written.add(value(t, i));
+            }
+        }
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS + 1];
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < ROUNDS; i++) {
+                            if (id == 0 && i % 4 == 0) {
+                                mNamespace.removeValueForKey("key");
+                            } else {
+                                mNamespace.put("key", value(id, i));
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        final Thread[] writers = threads.clone();
+        threads[THREADS] = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    while (isAlive(writers)) {
+                        String value = mNamespace.getString("key", null);
+                        if (value != null && !written.contains(value)) {
+                            throw new AssertionError("read a value that was never written");
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }
+        });
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) throw error.get();
+
+        String value = mNamespace.getString("key", null);
+        assertTrue(value == null || written.contains(value));
+        assertChunksMatchDescriptor("key");
+    }
+
+    /**
+     * 存储中 key 的分块正好是当前描述引用的那些
+     */
+    private void assertChunksMatchDescriptor(String key) {
+        Set<String> chunks = new HashSet<>();
+        for (String stored : mStore.allKeys()) {
+            if (stored.startsWith(key + LargeValues.CHUNK_SEPARATOR)) chunks.add(stored);
+        }
+        Set<String> expected = new HashSet<>();
+        LargeValues.Descriptor descriptor = LargeValues.Descriptor.parse(mStore.decodeString(key, null));
+        if (descriptor != null) {
+            for (int i = 0; i < descriptor.chunkCount; i++) {
+                expected.add(descriptor.chunkKey(key, i));
+            }
+        }
+        assertEquals(expected, chunks);
+    }
+
+    private void assertNoChunks() {
+        for (String stored : mStore.allKeys()) {
+            assertFalse(stored, LargeValues.isChunkKey(stored));
+        }
+    }
+
+    private static boolean isAlive(Thread[] threads) {
+        for (int i = 0; i < THREADS; i++) {
+            if (threads[i] == null || threads[i].isAlive()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 每个 (thread, round) 不同、超过阈值且压缩后仍有多块的字符串
+     */
+    private static String value(int thread, int round) {
+        StringBuilder sb = new StringBuilder();
+        long seed = thread * 1000003L + round;
+        while (sb.length() < 400) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            sb.append(Long.toString(seed >>> 1, 36));
+        }
+        return thread + ":" + round + ":" + sb;
+    }
+}
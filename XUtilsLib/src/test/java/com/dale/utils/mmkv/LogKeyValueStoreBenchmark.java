@@ -0,0 +1,75 @@
+package com.dale.utils.mmkv;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link LogKeyValueStore} 的吞吐量；{@link #run(String, KeyValueStore)} 也可在设备上传入
+ * {@link MMKVKeyValueStore}，与 MMKV 对比。用 {@code -Dbenchmark=true} 运行，结果输出到标准输出，
+ * 读写、重放和压缩的正确性见 {@link LogKeyValueStoreTest}
+ */
+public class LogKeyValueStoreBenchmark {
+
+    private static final int KEY_COUNT = 2000;
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void throughput() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        File file = LogKeyValueStoreTest.newFile();
+        try {
+            LogKeyValueStore store = new LogKeyValueStore(file);
+            // 预热 JIT
+            run("warm-up", store);
+            store.clearAll();
+            String result = run("LogKeyValueStore", store);
+            System.out.println(result);
+            assertEquals(KEY_COUNT, store.count());
+            store.close();
+        } finally {
+            LogKeyValueStoreTest.delete(file);
+        }
+    }
+
+    /**
+     * 依次写入、读取、覆盖写入 {@link #KEY_COUNT} 个键
+     *
+     * @return 各操作的平均耗时和文件大小
+     */
+    public static String run(String label, KeyValueStore store) {
+        String[] keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "benchmark.key." + i;
+        }
+        String value = "{\"id\":1,\"name\":\"benchmark\",\"tags\":[\"a\",\"b\",\"c\"]}";
+
+        long begin = System.nanoTime();
+        for (String key : keys) {
+            store.encode(key, value);
+        }
+        long putNanos = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (String key : keys) {
+            store.decodeString(key, null);
+        }
+        long getNanos = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < KEY_COUNT; i++) {
+                store.encode(keys[i], i + round);
+            }
+        }
+        long overwriteNanos = System.nanoTime() - begin;
+
+        return String.format("%s: put=%.2f us  get=%.2f us  overwrite=%.2f us  size=%d/%d B",
+                label, putNanos / 1000.0 / KEY_COUNT, getNanos / 1000.0 / KEY_COUNT,
+                overwriteNanos / 1000.0 / KEY_COUNT / ROUNDS, store.actualSize(), store.totalSize());
+    }
+}
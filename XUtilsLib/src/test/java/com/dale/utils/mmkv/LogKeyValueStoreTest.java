@@ -0,0 +1,147 @@
+package com.dale.utils.mmkv;
+
+import com.tencent.mmkv.MMKV;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogKeyValueStoreTest {
+
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void roundTrip() throws IOException {
+        File file = newFile();
+        try {
+            LogKeyValueStore store = new LogKeyValueStore(file);
+            Set<String> set = new HashSet<>(Arrays.asList("a", "b", "中文"));
+            store.encode("bool", true);
+            store.encode("int", 42);
+            store.encode("long", Long.MAX_VALUE);
+            store.encode("float", 1.5f);
+            store.encode("double", Math.PI);
+            store.encode("string", "值");
+            store.encode("set", set);
+            store.encode("bytes", new byte[]{1, 2, 3});
+            store.encode("removed", "x");
+            store.removeValueForKey("removed");
+            store.close();
+
+            store = new LogKeyValueStore(file);
+            assertTrue(store.decodeBool("bool", false));
+            assertEquals(42, store.decodeInt("int", 0));
+            assertEquals(Long.MAX_VALUE, store.decodeLong("long", 0));
+            assertEquals(1.5f, store.decodeFloat("float", 0), 0);
+            assertEquals(Math.PI, store.decodeDouble("double", 0), 0);
+            assertEquals("值", store.decodeString("string", null));
+            assertEquals(set, store.decodeStringSet("set", null));
+            assertArrayEquals(new byte[]{1, 2, 3}, store.decodeBytes("bytes"));
+            assertFalse(store.containsKey("removed"));
+            assertEquals(8, store.count());
+            store.close();
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test
+    public void tornTail() throws IOException {
+        File file = newFile();
+        try {
+            LogKeyValueStore store = new LogKeyValueStore(file);
+            store.encode("kept", "1");
+            long end = store.actualSize();
+            store.encode("torn", "2");
+            store.close();
+            // 模拟写入最后一条记录时进程被杀：记录的内容被破坏
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            corrupt(raf, end);
+            raf.close();
+
+            store = new LogKeyValueStore(file);
+            assertEquals("1", store.decodeString("kept", null));
+            assertNull(store.decodeString("torn", null));
+            store.encode("after", "3");
+            store.close();
+            store = new LogKeyValueStore(file);
+            assertEquals("1", store.decodeString("kept", null));
+            assertEquals("3", store.decodeString("after", null));
+            store.close();
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test
+    public void compaction() throws IOException {
+        File file = newFile();
+        try {
+            LogKeyValueStore store = new LogKeyValueStore(file);
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < 100; i++) {
+                    store.encode("key" + i, "value" + round + "-" + i);
+                }
+            }
+            store.trim();
+            long trimmed = store.totalSize();
+            store.close();
+
+            store = new LogKeyValueStore(file);
+            assertEquals(100, store.count());
+            assertEquals(trimmed, store.totalSize());
+            for (int i = 0; i < 100; i++) {
+                assertEquals("value" + (ROUNDS - 1) + "-" + i, store.decodeString("key" + i, null));
+            }
+            store.clearAll();
+            assertEquals(0, store.count());
+            store.close();
+            store = new LogKeyValueStore(file);
+            assertEquals(0, store.allKeys().length);
+            store.close();
+        } finally {
+            delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void factoryRejectsMultiProcess() throws IOException {
+        File dir = newFile().getParentFile();
+        LogKeyValueStore.factory(dir).open("multi", MMKV.MULTI_PROCESS_MODE, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void factoryRejectsCryptKey() throws IOException {
+        File dir = newFile().getParentFile();
+        LogKeyValueStore.factory(dir).open("crypt", MMKV.SINGLE_PROCESS_MODE, "key");
+    }
+
+    private static void corrupt(RandomAccessFile raf, long offset) throws IOException {
+        raf.seek(offset + 8);
+        int b = raf.read();
+        raf.seek(offset + 8);
+        raf.write(b ^ 0xFF);
+    }
+
+    static File newFile() throws IOException {
+        File file = File.createTempFile("kvlog", ".kvlog");
+        delete(file);
+        return file;
+    }
+
+    static void delete(File file) {
+        file.delete();
+        new File(file.getPath() + ".compact").delete();
+    }
+}
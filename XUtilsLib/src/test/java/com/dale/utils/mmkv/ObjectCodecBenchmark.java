@@ -0,0 +1,114 @@
+package com.dale.utils.mmkv;
+
+import com.google.gson.Gson;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * putObject/getObject 的编解码开销：每次 {@code new Gson()} 与共用的 {@link GsonCodec}
+ * <p>
+ * MMKV 依赖 native 库，这里用 HashMap 代替 MMKV 保存编码后的字符串，只比较编解码部分。
+ * 用 {@code -Dbenchmark=true} 运行，结果输出到标准输出
+ */
+public class ObjectCodecBenchmark {
+
+    private static final int KEYS = 64;
+    private static final int ITERATIONS = 20_000;
+
+    @Test
+    public void putGetObject() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        final GsonCodec shared = GsonCodec.newBuilder().warmUp(Profile.class).build();
+        ObjectCodec perCall = new ObjectCodec() {
+            @Override
+            public String encode(Object value) {
+                return new Gson().toJson(value);
+            }
+
+            @Override
+            public <T> T decode(String data, Type type) {
+                return new Gson().fromJson(data, type);
+            }
+        };
+        List<Profile> profiles = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            profiles.add(Profile.sample(i));
+        }
+        // 预热 JIT
+        run(perCall, profiles);
+        run(shared, profiles);
+
+        long[] perCallResult = run(perCall, profiles);
+        long[] sharedResult = run(shared, profiles);
+        System.out.println(String.format("new Gson(): %,d ops/s %,d B/op  shared: %,d ops/s %,d B/op",
+                perCallResult[0], perCallResult[1], sharedResult[0], sharedResult[1]));
+    }
+
+    /**
+     * 每次迭代写入一个对象再读出
+     *
+     * @return {每秒操作数, 每次操作分配的字节数}
+     */
+    private static long[] run(ObjectCodec codec, List<Profile> profiles) {
+        Map<String, String> store = new HashMap<>();
+        long bytes = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Profile profile = profiles.get(i % KEYS);
+            String key = "profile_" + (i % KEYS);
+            store.put(key, codec.encode(profile));
+            Profile decoded = codec.decode(store.get(key), Profile.class);
+            assertEquals(profile.id, decoded.id);
+        }
+        long elapsed = System.nanoTime() - begin;
+        bytes = allocatedBytes() - bytes;
+        return new long[]{ITERATIONS * 1_000_000_000L / Math.max(1, elapsed), bytes / ITERATIONS};
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 设置页常见的用户资料
+     */
+    static final class Profile {
+        long id;
+        String nickname;
+        String avatar;
+        int level;
+        boolean vip;
+        double balance;
+        List<String> tags;
+        Map<String, Integer> counters;
+
+        static Profile sample(int i) {
+            Profile profile = new Profile();
+            profile.id = 10_000 + i;
+            profile.nickname = "user_" + i;
+            profile.avatar = "https://example.com/avatar/" + i + ".png";
+            profile.level = i % 30;
+            profile.vip = i % 3 == 0;
+            profile.balance = i * 1.25;
+            profile.tags = new ArrayList<>();
+            for (int t = 0; t < 5; t++) {
+                profile.tags.add("tag" + t);
+            }
+            profile.counters = new HashMap<>();
+            profile.counters.put("follow", i * 3);
+            profile.counters.put("fans", i * 7);
+            return profile;
+        }
+    }
+}
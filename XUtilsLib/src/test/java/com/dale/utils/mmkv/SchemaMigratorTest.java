@@ -0,0 +1,200 @@
+package com.dale.utils.mmkv;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaMigratorTest {
+
+    private static final int COUNT = 100;
+
+    private final ConcurrentHashMap<String, AtomicInteger> mCalls = new ConcurrentHashMap<>();
+    private File mFile;
+    private LogKeyValueStore mStore;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("schema", ".kvlog");
+        mStore = new LogKeyValueStore(mFile);
+        for (int i = 0; i < COUNT; i++) {
+            mStore.encode(key(i), "v");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mStore.close();
+        mFile.delete();
+    }
+
+    @Test
+    public void resumesFromCheckpointAfterRestart() {
+        SchemaMigrator migrator = new SchemaMigrator(namespace(), 2, migrations(2));
+        assertTrue(migrator.isActive());
+        assertEquals(0, migrator.getVersion());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(migrator.migrateBatch(10));
+        }
+        assertEquals("v|1|2", mStore.decodeString(key(29), null));
+        assertEquals("v", mStore.decodeString(key(30), null));
+
+        // 模拟进程被杀后重新打开
+        reopen();
+        migrator = new SchemaMigrator(namespace(), 2, migrations(2));
+        assertTrue(migrator.isActive());
+        while (migrator.migrateBatch(10)) {
+            assertTrue(migrator.isActive());
+        }
+        assertFalse(migrator.isActive());
+        assertEquals(2, migrator.getVersion());
+        assertAllMigratedOnce("v|1|2", 2);
+        assertOnlyVersionKeyLeft();
+    }
+
+    @Test
+    public void newVersionDuringPassFinishesOldPassFirst() {
+        SchemaMigrator migrator = new SchemaMigrator(namespace(), 1, migrations(1));
+        for (int i = 0; i < 3; i++) {
+            migrator.migrateBatch(10);
+        }
+        reopen();
+        migrator = new SchemaMigrator(namespace(), 2, migrations(2));
+        while (migrator.migrateBatch(7)) {
+        }
+        assertEquals(2, migrator.getVersion());
+        assertAllMigratedOnce("v|1|2", 2);
+        assertOnlyVersionKeyLeft();
+    }
+
+    @Test(timeout = 10000)
+    public void readAndWriteDuringBackgroundMigration() throws InterruptedException {
+        MMKVNamespace namespace = namespace();
+        namespace.setSchema(2, migrations(2));
+        assertEquals("v|1|2", namespace.getString(key(50), null));
+        namespace.put(key(60), "fresh");
+        namespace.migrateInBackground(7, 0);
+        while (namespace.getSchemaVersion() < 2) {
+            Thread.sleep(10);
+        }
+        assertEquals("fresh", namespace.getString(key(60), null));
+        // 迁移期间写入的键已是最新版本，不再迁移
+        assertNull(mCalls.get(key(60)));
+        for (int i = 0; i < COUNT; i++) {
+            if (i == 60) continue;
+            assertEquals(key(i), "v|1|2", mStore.decodeString(key(i), null));
+            assertEquals(key(i), 2, mCalls.get(key(i)).get());
+        }
+        assertOnlyVersionKeyLeft();
+    }
+
+    @Test(timeout = 10000)
+    public void migratedKeysAreReadWithoutTheLock() throws InterruptedException {
+        final SchemaMigrator migrator = new SchemaMigrator(namespace(), 2, migrations(2));
+        migrator.migrateBatch(10);
+        migrator.migrateOnRead(key(50));
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread batch = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // 模拟后台进行中的一批
+                synchronized (migrator) {
+                    locked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        });
+        batch.start();
+        locked.await();
+        try {
+            // 检查点之前的键和有标记的键都不需要等待
+            migrator.migrateOnRead(key(3));
+            migrator.migrateOnRead(key(50));
+        } finally {
+            release.countDown();
+            batch.join();
+        }
+        assertEquals("v|1|2", mStore.decodeString(key(3), null));
+        assertEquals("v|1|2", mStore.decodeString(key(50), null));
+        assertEquals(2, mCalls.get(key(50)).get());
+    }
+
+    private MMKVNamespace namespace() {
+        return new MMKVNamespace("schema", mStore, false);
+    }
+
+    private void reopen() {
+        mStore.close();
+        mStore = new LogKeyValueStore(mFile);
+    }
+
+    /**
+     * @return 版本 1 到 latest 的步骤，第 i 步在值后追加 "|i"
+     */
+    private Migration[] migrations(int latest) {
+        Migration[] migrations = new Migration[latest];
+        for (int i = 0; i < latest; i++) {
+            final int version = i + 1;
+            migrations[i] = new Migration(version) {
+                @Override
+                public boolean appliesTo(String key) {
+                    return key.startsWith("k");
+                }
+
+                @Override
+                public String migrate(String key, String value) {
+                    AtomicInteger calls = mCalls.get(key);
+                    if (calls == null) {
+                        calls = new AtomicInteger();
+                        AtomicInteger existing = mCalls.putIfAbsent(key, calls);
+                        if (existing != null) calls = existing;
+                    }
+                    calls.incrementAndGet();
+                    return value + "|" + version;
+                }
+            };
+        }
+        return migrations;
+    }
+
+    private void assertAllMigratedOnce(String expected, int steps) {
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(key(i), expected, mStore.decodeString(key(i), null));
+            assertEquals(key(i), steps, mCalls.get(key(i)).get());
+        }
+    }
+
+    /**
+     * 检查点、目标版本和各键的标记都已删除
+     */
+    private void assertOnlyVersionKeyLeft() {
+        Set<String> reserved = new HashSet<>();
+        for (String key : mStore.allKeys()) {
+            if (key.indexOf('\0') >= 0) reserved.add(key);
+        }
+        Set<String> expected = new HashSet<>();
+        expected.add("\0schema.version");
+        assertEquals(expected, reserved);
+    }
+
+    private static String key(int i) {
+        return String.format(Locale.US, "k%03d", i);
+    }
+}
@@ -0,0 +1,55 @@
+package com.dale.utils.mmkv;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+/**
+ * 二进制 TLV 与 Gson JSON 的编码大小和解码耗时对比
+ * <p>
+ * 用 {@code -Dbenchmark=true} 运行，结果输出到标准输出
+ */
+public class TlvCodecBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int ITERATIONS = 50_000;
+
+    private final GsonCodec mGson = new GsonCodec();
+    private final TlvCodec mTlv = new TlvCodec();
+
+    @Test
+    public void sizeAndDecodeTime() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+        ObjectCodecBenchmark.Profile profile = ObjectCodecBenchmark.Profile.sample(42);
+        String json = mGson.encode(profile);
+        byte[] tlv = mTlv.encode(profile);
+        int jsonSize = json.getBytes(UTF_8).length;
+
+        // 预热 JIT
+        decodeGson(json);
+        decodeTlv(tlv);
+        long gsonNanos = decodeGson(json);
+        long tlvNanos = decodeTlv(tlv);
+        System.out.println(String.format("size: json=%d B  tlv=%d B   decode: gson=%.2f us  tlv=%.2f us",
+                jsonSize, tlv.length, gsonNanos / 1000.0 / ITERATIONS, tlvNanos / 1000.0 / ITERATIONS));
+    }
+
+    private long decodeGson(String json) {
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            ObjectCodecBenchmark.Profile p = mGson.decode(json, ObjectCodecBenchmark.Profile.class);
+            if (p == null) throw new AssertionError();
+        }
+        return System.nanoTime() - begin;
+    }
+
+    private long decodeTlv(byte[] tlv) {
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            ObjectCodecBenchmark.Profile p = mTlv.decode(tlv, ObjectCodecBenchmark.Profile.class);
+            if (p == null) throw new AssertionError();
+        }
+        return System.nanoTime() - begin;
+    }
+}
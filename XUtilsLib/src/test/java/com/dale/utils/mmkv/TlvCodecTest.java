@@ -0,0 +1,140 @@
+package com.dale.utils.mmkv;
+
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TlvCodecTest {
+
+    private final TlvCodec mTlv = new TlvCodec();
+    private final GsonCodec mGson = new GsonCodec();
+
+    @Test
+    public void roundTrip() {
+        ObjectCodecBenchmark.Profile profile = ObjectCodecBenchmark.Profile.sample(7);
+        ObjectCodecBenchmark.Profile decoded = mTlv.decode(mTlv.encode(profile), ObjectCodecBenchmark.Profile.class);
+        assertEquals(mGson.encode(profile), mGson.encode(decoded));
+
+        List<ObjectCodecBenchmark.Profile> list = new ArrayList<>();
+        list.add(profile);
+        list.add(null);
+        Type listType = new TypeToken<List<ObjectCodecBenchmark.Profile>>() {
+        }.getType();
+        List<ObjectCodecBenchmark.Profile> decodedList = mTlv.decode(mTlv.encode(list), listType);
+        assertEquals(mGson.encode(list), mGson.encode(decodedList));
+    }
+
+    @Test
+    public void smallerThanJson() {
+        ObjectCodecBenchmark.Profile profile = ObjectCodecBenchmark.Profile.sample(42);
+        assertTrue(mTlv.encode(profile).length < mGson.encode(profile).getBytes(Charset.forName("UTF-8")).length);
+    }
+
+    @Test
+    public void truncatedDataThrowsIllegalArgument() {
+        byte[] data = mTlv.encode(ObjectCodecBenchmark.Profile.sample(3));
+        for (int length = 0; length < data.length; length++) {
+            assertRejected(Arrays.copyOf(data, length));
+        }
+    }
+
+    @Test
+    public void corruptDataThrowsIllegalArgumentOrDecodes() {
+        byte[] data = mTlv.encode(ObjectCodecBenchmark.Profile.sample(5));
+        Random random = new Random(11);
+        for (int round = 0; round < 20000; round++) {
+            byte[] corrupt = data.clone();
+            for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                corrupt[1 + random.nextInt(corrupt.length - 1)] = (byte) random.nextInt(256);
+            }
+            try {
+                mTlv.decode(corrupt, ObjectCodecBenchmark.Profile.class);
+            } catch (IllegalArgumentException expected) {
+                // 损坏的数据只允许抛出 IllegalArgumentException
+            }
+        }
+    }
+
+    @Test
+    public void hugeLengthDoesNotOverflow() {
+        // 版本 + 长度 0x7FFFFFFF 的对象
+        assertRejected(new byte[]{1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        // 长度正常、元素个数 0x7FFFFFFF 的 String[]
+        try {
+            mTlv.decode(new byte[]{1, 5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}, String[].class);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rawCollectionFieldRejectedOnEncode() {
+        RawHolder holder = new RawHolder();
+        holder.items = new ArrayList<>();
+        mTlv.encode(holder);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nestedRawMapFieldRejectedOnEncode() {
+        mTlv.encode(new NestedRawHolder());
+    }
+
+    @Test
+    public void parameterizedFieldsRoundTrip() {
+        ObjectCodecBenchmark.Profile profile = ObjectCodecBenchmark.Profile.sample(9);
+        ObjectCodecBenchmark.Profile decoded = mTlv.decode(mTlv.encode(profile), ObjectCodecBenchmark.Profile.class);
+        assertEquals(profile.tags, decoded.tags);
+        assertEquals(profile.counters, decoded.counters);
+    }
+
+    @Test
+    public void loneSurrogateEncodedLikeGetBytes() {
+        String[] values = {"\uD83D", "a\uDE00b", "\uDE00\uD83D", "x\uD83D\uDE00\uD83Dy", "中\uD800"};
+        for (String value : values) {
+            String expected = new String(value.getBytes(Charset.forName("UTF-8")), Charset.forName("UTF-8"));
+            assertEquals(expected, mTlv.decode(mTlv.encode(value), String.class));
+            // 整个对象的编码长度与 getBytes 一致，后续字段不会错位
+            StringHolder holder = new StringHolder();
+            holder.text = value;
+            holder.after = 7;
+            StringHolder decoded = mTlv.decode(mTlv.encode(holder), StringHolder.class);
+            assertEquals(expected, decoded.text);
+            assertEquals(7, decoded.after);
+        }
+    }
+
+    private void assertRejected(byte[] data) {
+        try {
+            mTlv.decode(data, ObjectCodecBenchmark.Profile.class);
+            fail("decoded " + data.length + " bytes");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    static final class StringHolder {
+        String text;
+        int after;
+    }
+
+    static final class RawHolder {
+        @SuppressWarnings("rawtypes")
+        List items;
+    }
+
+    static final class NestedRawHolder {
+        @SuppressWarnings("rawtypes")
+        Map<String, List> groups;
+    }
+}
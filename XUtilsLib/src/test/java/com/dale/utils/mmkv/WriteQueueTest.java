@@ -0,0 +1,134 @@
+package com.dale.utils.mmkv;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WriteQueueTest {
+
+    private File mFile;
+    private LogKeyValueStore mStore;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("write_queue", ".kvlog");
+        mStore = new LogKeyValueStore(mFile);
+    }
+
+    @After
+    public void tearDown() {
+        mStore.close();
+        mFile.delete();
+    }
+
+    @Test
+    public void pendingVisibleUntilFlushed() {
+        WriteQueue queue = new WriteQueue(mStore);
+        mStore.encode("removed", "old");
+        queue.put("int", 1);
+        queue.put("int", 2);
+        queue.remove("removed");
+
+        assertTrue(queue.isPending("int"));
+        assertEquals(2, queue.peek("int"));
+        assertTrue(queue.isPending("removed"));
+        assertNull(queue.peek("removed"));
+        assertFalse(queue.isPending("other"));
+        // 尚未写入存储
+        assertEquals(0, mStore.decodeInt("int", 0));
+        assertEquals("old", mStore.decodeString("removed", null));
+
+        queue.flush();
+        assertFalse(queue.isPending("int"));
+        assertFalse(queue.isPending("removed"));
+        assertEquals(2, mStore.decodeInt("int", 0));
+        assertFalse(mStore.containsKey("removed"));
+    }
+
+    @Test
+    public void mutableValuesAreCopied() {
+        WriteQueue queue = new WriteQueue(mStore);
+        byte[] bytes = {1, 2, 3};
+        Set<String> set = new HashSet<>(Collections.singleton("a"));
+        queue.put("bytes", bytes);
+        queue.put("set", set);
+        bytes[0] = 9;
+        set.add("b");
+        ((byte[]) queue.peek("bytes"))[1] = 9;
+
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) queue.peek("bytes"));
+        assertEquals(Collections.singleton("a"), queue.peek("set"));
+        queue.flush();
+        assertArrayEquals(new byte[]{1, 2, 3}, mStore.decodeBytes("bytes"));
+        assertEquals(Collections.singleton("a"), mStore.decodeStringSet("set", null));
+    }
+
+    @Test
+    public void writeDuringFlushIsKept() {
+        final WriteQueue[] queue = new WriteQueue[1];
+        // 写入存储时同一个键又被修改，模拟另一个线程在 flush 期间写入
+        KeyValueStore store = (KeyValueStore) Proxy.newProxyInstance(KeyValueStore.class.getClassLoader(),
+                new Class<?>[]{KeyValueStore.class}, new InvocationHandler() {
+                    private boolean mRaced;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("encode") && !mRaced) {
+                            mRaced = true;
+                            queue[0].put((String) args[0], "newer");
+                        }
+                        try {
+                            return method.invoke(mStore, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+        queue[0] = new WriteQueue(store);
+        queue[0].put("key", "older");
+        queue[0].flush();
+        assertEquals("older", mStore.decodeString("key", null));
+        assertTrue(queue[0].isPending("key"));
+        assertEquals("newer", queue[0].peek("key"));
+        queue[0].flush();
+        assertFalse(queue[0].isPending("key"));
+        assertEquals("newer", mStore.decodeString("key", null));
+    }
+
+    @Test(timeout = 10000)
+    public void drainsInBackground() throws InterruptedException {
+        WriteQueue queue = new WriteQueue(mStore);
+        queue.put("key", 42L);
+        while (queue.isPending("key")) {
+            Thread.sleep(10);
+        }
+        assertEquals(42L, mStore.decodeLong("key", 0));
+    }
+
+    @Test
+    public void clearAllDropsPending() {
+        WriteQueue queue = new WriteQueue(mStore);
+        mStore.encode("stored", true);
+        queue.put("pending", "value");
+        queue.clearAll();
+        assertFalse(queue.isPending("pending"));
+        queue.flush();
+        assertEquals(0, mStore.count());
+    }
+}